@@ -3,6 +3,7 @@ import MonacoCodeEditor from './components/MonacoCodeEditor';
 import DiagramViewer from './components/DiagramViewer';
 import HistoryPanel from './components/HistoryPanel';
 import { PlantUMLService } from './services/plantuml';
+import { LivePreviewClient } from './services/livePreview';
 import { HistoryService } from './services/historyService';
 
 const DEFAULT_PLANTUML = `@startuml
@@ -28,6 +29,7 @@ function App() {
   const [isHistoryOpen, setIsHistoryOpen] = useState(false);
   const hasInitialized = useRef(false);
   const containerRef = useRef<HTMLDivElement>(null);
+  const livePreviewRef = useRef<LivePreviewClient | null>(null);
 
   const checkServerStatus = useCallback(async () => {
     try {
@@ -59,6 +61,11 @@ function App() {
       return;
     }
 
+    // Live preview sends only the edit and gets back an SVG patch; falls back to HTTP while not connected
+    if (livePreviewRef.current?.update(code)) {
+      return;
+    }
+
     // Don't start a new request if already loading
     if (isLoading) {
       return;
@@ -68,13 +75,8 @@ function App() {
     setError(null);
 
     try {
-      // Add timeout and retry logic for API call
-      const response = await Promise.race([
-        PlantUMLService.generateSVG(code),
-        new Promise((_, reject) => 
-          setTimeout(() => reject(new Error('Request timeout')), 10000)
-        )
-      ]) as any;
+      // 10 second timeout; on timeout the server-side render is cancelled too
+      const response = await PlantUMLService.generateSVG(code, 10000);
       
       setSvgContent(response.svg);
     } catch (err) {
@@ -149,6 +151,22 @@ function App() {
     };
   }, []);
 
+  // Open the live preview channel once the server is reachable
+  useEffect(() => {
+    if (serverStatus !== 'online' || livePreviewRef.current) return;
+    const client = new LivePreviewClient(
+      (update) => {
+        setSvgContent(update.svgs[0] ?? '');
+        setError(update.errors[0] ?? null);
+      },
+      (message) => setError(message),
+    );
+    client.connect();
+    livePreviewRef.current = client;
+  }, [serverStatus]);
+
+  useEffect(() => () => livePreviewRef.current?.close(), []);
+
   // Separate effect to handle server status changes (but not initial load)
   useEffect(() => {
     // Only run if already initialized and server comes online
@@ -0,0 +1,163 @@
+import { API_BASE_URL } from './plantuml';
+
+// [start, end, text]: replace old[start, end) with text
+type Edit = [number, number, string];
+
+interface DiagramUpdate {
+  index: number;
+  svg?: string;
+  patch?: Edit[];
+  unchanged?: boolean;
+  error?: string;
+}
+
+interface ServerMessage {
+  type: 'render' | 'resync' | 'error';
+  rev: number;
+  base?: number;
+  count?: number;
+  renderMs?: number;
+  diagrams?: DiagramUpdate[];
+  error?: string;
+}
+
+export interface LivePreviewUpdate {
+  rev: number;
+  svgs: (string | null)[];
+  errors: (string | null)[];
+  renderMs: number;
+}
+
+const getLiveUrl = (): string => {
+  const url = new URL(`${API_BASE_URL}/api/plantuml/live`, window.location.href);
+  url.protocol = url.protocol === 'https:' ? 'wss:' : 'ws:';
+  return url.toString();
+};
+
+/**
+ * Live preview channel: sends source edits, receives SVG patches against the previous render.
+ * update() returns false while the socket is not open, so callers can fall back to HTTP;
+ * it also reconnects lazily after the server closed an idle session.
+ */
+export class LivePreviewClient {
+  private socket: WebSocket | null = null;
+  private open = false;
+  private source = '';
+  private rev = 0;
+  private sourceSent = false;
+  private appliedRev = -1;
+  private svgs: (string | null)[] = [];
+
+  constructor(
+    private readonly onUpdate: (update: LivePreviewUpdate) => void,
+    private readonly onError: (message: string) => void,
+  ) {}
+
+  connect(): void {
+    if (this.socket) return;
+    const socket = new WebSocket(getLiveUrl());
+    this.socket = socket;
+    socket.onopen = () => {
+      this.open = true;
+    };
+    socket.onmessage = (event) => this.handleMessage(JSON.parse(event.data) as ServerMessage);
+    socket.onclose = () => {
+      this.socket = null;
+      this.open = false;
+      this.sourceSent = false;
+      this.appliedRev = -1;
+      this.svgs = [];
+    };
+  }
+
+  close(): void {
+    this.socket?.close();
+  }
+
+  update(text: string): boolean {
+    if (!this.open || !this.socket) {
+      this.connect();
+      return false;
+    }
+    if (this.sourceSent && text === this.source) {
+      return true;
+    }
+
+    const base = this.rev;
+    this.rev++;
+    if (this.sourceSent) {
+      this.send({ type: 'edit', base, rev: this.rev, edits: [LivePreviewClient.edit(this.source, text)] });
+    } else {
+      this.send({ type: 'source', rev: this.rev, text });
+      this.sourceSent = true;
+    }
+    this.source = text;
+    return true;
+  }
+
+  /**
+   * Single replacement covering everything between the common prefix and suffix
+   */
+  private static edit(before: string, after: string): Edit {
+    let prefix = 0;
+    const max = Math.min(before.length, after.length);
+    while (prefix < max && before.charCodeAt(prefix) === after.charCodeAt(prefix)) prefix++;
+    let suffix = 0;
+    while (suffix < max - prefix
+      && before.charCodeAt(before.length - 1 - suffix) === after.charCodeAt(after.length - 1 - suffix)) suffix++;
+    return [prefix, before.length - suffix, after.slice(prefix, after.length - suffix)];
+  }
+
+  private handleMessage(message: ServerMessage): void {
+    if (message.type === 'resync') {
+      // Server lost track of our revision: send the whole source again
+      this.rev++;
+      this.send({ type: 'source', rev: this.rev, text: this.source });
+      return;
+    }
+    if (message.type === 'error') {
+      this.onError(message.error || 'Live preview error');
+      return;
+    }
+
+    const diagrams = message.diagrams || [];
+    const needsBase = diagrams.some((d) => d.patch || d.unchanged);
+    if (needsBase && message.base !== this.appliedRev) {
+      this.send({ type: 'resync' });
+      return;
+    }
+
+    const svgs: (string | null)[] = [];
+    const errors: (string | null)[] = [];
+    for (const diagram of diagrams) {
+      let svg: string | null = null;
+      if (diagram.svg !== undefined) {
+        svg = diagram.svg;
+      } else if (diagram.unchanged) {
+        svg = this.svgs[diagram.index] ?? null;
+      } else if (diagram.patch) {
+        svg = LivePreviewClient.applyPatch(this.svgs[diagram.index] ?? '', diagram.patch);
+      }
+      svgs[diagram.index] = svg;
+      errors[diagram.index] = diagram.error ?? null;
+    }
+
+    this.svgs = svgs;
+    this.appliedRev = message.rev;
+    this.onUpdate({ rev: message.rev, svgs, errors, renderMs: message.renderMs ?? 0 });
+  }
+
+  private static applyPatch(svg: string, patch: Edit[]): string {
+    // Hunks are in document order with offsets into the old SVG, so apply from the end
+    let result = svg;
+    for (let i = patch.length - 1; i >= 0; i--) {
+      const [start, end, text] = patch[i];
+      result = result.slice(0, start) + text + result.slice(end);
+    }
+    return result;
+  }
+
+  private send(message: object): void {
+    this.socket?.send(JSON.stringify(message));
+  }
+}
@@ -17,20 +17,33 @@ const getApiBaseUrl = (): string => {
   return 'http://localhost:8090';
 };
 
-const API_BASE_URL = getApiBaseUrl();
+export const API_BASE_URL = getApiBaseUrl();
+
+// Identifies this editor tab so the server can drop a queued preview once a newer revision arrives
+const CLIENT_ID = Math.random().toString(36).slice(2) + Date.now().toString(36);
+
+let renderCounter = 0;
 
 export class PlantUMLService {
-  static async generateSVG(plantumlText: string): Promise<PlantUMLResponse> {
+  static async generateSVG(plantumlText: string, timeoutMs = 15000): Promise<PlantUMLResponse> {
+    // Lets the server stop rendering once we have given up on this request
+    const renderToken = `${CLIENT_ID}-${++renderCounter}`;
     try {
       const response = await axios.post<PlantUMLResponse>(`${API_BASE_URL}/api/plantuml/svg`, {
         plantumlText
       }, {
-        timeout: 15000, // 15 second timeout
+        timeout: timeoutMs,
+        headers: {
+          'X-Render-Priority': 'interactive',
+          'X-Client-Id': CLIENT_ID,
+          'X-Render-Token': renderToken,
+        },
       });
       return response.data;
     } catch (error) {
       if (axios.isAxiosError(error)) {
         if (error.code === 'ECONNABORTED') {
+          PlantUMLService.cancelRender(renderToken);
           throw new Error('Request timeout - server may be busy');
         }
         if (error.response) {
@@ -45,6 +58,12 @@ export class PlantUMLService {
     }
   }
 
+  static cancelRender(renderToken: string): void {
+    // Fire and forget: 404 just means the render already finished
+    axios.delete(`${API_BASE_URL}/api/plantuml/render/${encodeURIComponent(renderToken)}`, { timeout: 2000 })
+      .catch(() => undefined);
+  }
+
   static async healthCheck(): Promise<HealthCheckResponse> {
     const response = await axios.get<HealthCheckResponse>(`${API_BASE_URL}/api/plantuml/health`, {
       timeout: 5000, // 5 second timeout for health check
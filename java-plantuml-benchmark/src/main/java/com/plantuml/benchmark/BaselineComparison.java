@@ -0,0 +1,150 @@
+package com.plantuml.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files and prints a Markdown report
+ *
+ * Usage: BaselineComparison baseline.json current.json [threshold-percent]
+ * A change counts as faster/slower only when it exceeds both the threshold (default 5%)
+ * and the combined score error of the two runs.
+ */
+public final class BaselineComparison {
+
+    private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <current.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+
+        Map<String, JsonNode> baseline = load(args[0]);
+        Map<String, JsonNode> current = load(args[1]);
+
+        System.out.println("# Benchmark comparison");
+        System.out.println();
+        System.out.println("Baseline: `" + args[0] + "`  ");
+        System.out.println("Current: `" + args[1] + "`");
+        System.out.println();
+        System.out.println("| Benchmark | Params | Mode | Baseline | Current | Change | p99 baseline | p99 current | Alloc B/op baseline | Alloc B/op current | Verdict |");
+        System.out.println("|---|---|---|---|---|---|---|---|---|---|---|");
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode now = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            String verdict = "new";
+            String change = "-";
+            String baseScore = "-";
+            String baseP99 = "-";
+            String baseAlloc = "-";
+
+            if (before != null) {
+                double oldScore = score(before);
+                double newScore = score(now);
+                double deltaPercent = oldScore == 0 ? 0 : (newScore - oldScore) / oldScore * 100.0;
+                boolean higherIsBetter = "thrpt".equals(now.path("mode").asText());
+                double noise = error(before) + error(now);
+                boolean significant = Math.abs(deltaPercent) >= threshold && Math.abs(newScore - oldScore) > noise;
+
+                if (!significant) {
+                    verdict = "same";
+                } else if ((deltaPercent > 0) == higherIsBetter) {
+                    verdict = "faster";
+                } else {
+                    verdict = "**slower**";
+                    regressions++;
+                }
+                change = String.format(Locale.ROOT, "%+.1f%%", deltaPercent);
+                baseScore = formatScore(before);
+                baseP99 = percentile(before, "99.0");
+                baseAlloc = allocation(before);
+            }
+
+            System.out.println("| " + now.path("benchmark").asText().replaceAll(".*\\.", "")
+                + " | " + params(now)
+                + " | " + now.path("mode").asText()
+                + " | " + baseScore
+                + " | " + formatScore(now)
+                + " | " + change
+                + " | " + baseP99
+                + " | " + percentile(now, "99.0")
+                + " | " + baseAlloc
+                + " | " + allocation(now)
+                + " | " + verdict + " |");
+        }
+
+        System.out.println();
+        System.out.println(regressions == 0 ? "No regressions." : regressions + " regression(s).");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Index JMH results by benchmark name, parameters and mode
+     */
+    private static Map<String, JsonNode> load(String file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        try (InputStream in = Files.newInputStream(Paths.get(file))) {
+            for (JsonNode result : new ObjectMapper().readTree(in)) {
+                String key = result.path("benchmark").asText() + " " + params(result) + " " + result.path("mode").asText();
+                results.put(key, result);
+            }
+        }
+        return results;
+    }
+
+    private static String params(JsonNode result) {
+        Map<String, String> sorted = new TreeMap<>();
+        JsonNode params = result.path("params");
+        Iterator<String> names = params.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            sorted.put(name, params.path(name).asText());
+        }
+        return sorted.toString();
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static double error(JsonNode result) {
+        double error = result.path("primaryMetric").path("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static String formatScore(JsonNode result) {
+        JsonNode metric = result.path("primaryMetric");
+        return String.format(Locale.ROOT, "%.3f %s", metric.path("score").asDouble(), metric.path("scoreUnit").asText());
+    }
+
+    private static String percentile(JsonNode result, String percentile) {
+        JsonNode value = result.path("primaryMetric").path("scorePercentiles").path(percentile);
+        return value.isMissingNode() || !"sample".equals(result.path("mode").asText())
+            ? "-"
+            : String.format(Locale.ROOT, "%.3f", value.asDouble());
+    }
+
+    private static String allocation(JsonNode result) {
+        JsonNode value = result.path("secondaryMetrics").path(ALLOC_METRIC).path("score");
+        return value.isMissingNode() ? "-" : String.format(Locale.ROOT, "%.0f", value.asDouble());
+    }
+}
@@ -0,0 +1,87 @@
+package com.plantuml.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Benchmark diagram corpus
+ * Named entries resolve to examples/*.puml (directory from -Dcorpus.dir, default ../examples)
+ * or to synthetic large diagrams: synthetic-class-N and synthetic-sequence-N
+ */
+public final class BenchmarkCorpus {
+
+    private static final String CLASS_PREFIX = "synthetic-class-";
+    private static final String SEQUENCE_PREFIX = "synthetic-sequence-";
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Load a corpus entry by name
+     * @param name example file name without .puml, or a synthetic-* name
+     * @return PlantUML source
+     */
+    public static String load(String name) {
+        if (name.startsWith(CLASS_PREFIX)) {
+            return classDiagram(Integer.parseInt(name.substring(CLASS_PREFIX.length())));
+        }
+        if (name.startsWith(SEQUENCE_PREFIX)) {
+            return sequenceDiagram(Integer.parseInt(name.substring(SEQUENCE_PREFIX.length())));
+        }
+
+        Path file = Paths.get(System.getProperty("corpus.dir", "../examples"), name + ".puml");
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read corpus file " + file.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Class diagram with the given number of classes spread over packages,
+     * each with fields, methods, an inheritance edge and an association
+     */
+    public static String classDiagram(int classes) {
+        StringBuilder uml = new StringBuilder("@startuml\n");
+        int packages = Math.max(1, classes / 20);
+        for (int p = 0; p < packages; p++) {
+            uml.append("package pkg").append(p).append(" {\n");
+            for (int c = p; c < classes; c += packages) {
+                uml.append("  class Class").append(c).append(" {\n")
+                   .append("    -id: long\n")
+                   .append("    -name: String\n")
+                   .append("    +process(input: String): boolean\n")
+                   .append("    +toString(): String\n")
+                   .append("  }\n");
+            }
+            uml.append("}\n");
+        }
+        for (int c = 1; c < classes; c++) {
+            if (c % 5 == 0) {
+                uml.append("Class").append(c / 5).append(" <|-- Class").append(c).append('\n');
+            } else {
+                uml.append("Class").append(c - 1).append(" --> Class").append(c).append(" : uses\n");
+            }
+        }
+        return uml.append("@enduml\n").toString();
+    }
+
+    /**
+     * Sequence diagram with the given number of participants and two messages per participant
+     */
+    public static String sequenceDiagram(int participants) {
+        StringBuilder uml = new StringBuilder("@startuml\n");
+        for (int p = 0; p < participants; p++) {
+            uml.append("participant P").append(p).append('\n');
+        }
+        for (int p = 1; p < participants; p++) {
+            uml.append("P").append(p - 1).append(" -> P").append(p).append(" : request ").append(p).append('\n');
+            uml.append("P").append(p).append(" --> P").append(p - 1).append(" : response ").append(p).append('\n');
+        }
+        return uml.append("@enduml\n").toString();
+    }
+}
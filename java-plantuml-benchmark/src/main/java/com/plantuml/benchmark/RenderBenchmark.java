@@ -0,0 +1,95 @@
+package com.plantuml.benchmark;
+
+import com.plantuml.server.PlantUMLServerApplication;
+import com.plantuml.server.service.PlantUMLService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render pipeline benchmarks
+ * Runs the real PlantUMLService (scheduler, layout engine, metrics) in a Spring context without
+ * the web server. The render cache is off by default so every invocation renders; pass
+ * -p cache=true to measure the cached path.
+ *
+ * Throughput and SampleTime (latency percentiles) modes; add -prof gc for allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g", "-XX:+UseG1GC"})
+public class RenderBenchmark {
+
+    @Param({
+        "sequence-diagram",
+        "class-diagram",
+        "state-diagram",
+        "synthetic-class-200",
+        "synthetic-sequence-300"
+    })
+    public String diagram;
+
+    @Param({"false"})
+    public boolean cache;
+
+    private ConfigurableApplicationContext context;
+    private PlantUMLService service;
+    private String source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = BenchmarkCorpus.load(diagram);
+        context = new SpringApplicationBuilder(PlantUMLServerApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "plantuml.cache.enabled=" + cache,
+                "plantuml.cache.disk.enabled=false",
+                "logging.level.com.plantuml.server=WARN",
+                // Benchmark threads should wait for the pool, never be rejected
+                "plantuml.render.queue-capacity=1024",
+                // JMH warm-up iterations do this job
+                "plantuml.warmup.enabled=false"
+            )
+            .run();
+        service = context.getBean(PlantUMLService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String generateSVG() throws IOException {
+        return service.generateSVG(source);
+    }
+
+    @Benchmark
+    public byte[] generatePNG() throws IOException {
+        return service.generatePNG(source);
+    }
+
+    @Benchmark
+    public boolean validateSyntax() {
+        return service.validateSyntax(source);
+    }
+}
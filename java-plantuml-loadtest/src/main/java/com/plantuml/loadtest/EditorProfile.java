@@ -0,0 +1,145 @@
+package com.plantuml.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic traffic of editor users, for servers without a recording
+ *
+ * Each virtual user keeps a document and its history. Per request, weighted by how the web editor
+ * behaves (preview after every debounced edit, history panel reloads, occasional pastes of whole
+ * diagrams, status polling) plus exports from pages embedding diagrams:
+ *   70% edit      a few characters changed, interactive preview (/svg or live WebSocket)
+ *    6% repeat    same source again (reconnect, undo to the previous state, page refresh)
+ *    6% history   an earlier version of the document
+ *    4% paste     a new document, log-normal size around 40 lines, a few up to ~2000
+ *    6% export    PNG/SVG of the current document through the cacheable GET endpoints
+ *    3% health    /api/plantuml/health
+ *    5% validate  parse-only check
+ */
+public final class EditorProfile implements Workload {
+
+    private static final String[] KINDS = {"sequence", "class", "activity", "state", "component", "usecase"};
+    private static final int HISTORY = 10;
+
+    private final Random random;
+    private final boolean live;
+    private final List<User> users = new ArrayList<>();
+    private long documents;
+
+    /**
+     * @param users virtual users, each with its own client id and document
+     * @param live send edits over the live preview WebSocket instead of POST /svg
+     */
+    public EditorProfile(int users, boolean live, long seed) {
+        this.random = new Random(seed);
+        this.live = live;
+        for (int i = 0; i < users; i++) {
+            User user = new User("user-" + i);
+            this.users.add(user);
+            newDocument(user);
+        }
+    }
+
+    @Override
+    public TrafficRecord next() {
+        User user = users.get(random.nextInt(users.size()));
+        int roll = random.nextInt(100);
+        if (roll < 70) {
+            return edit(user);
+        }
+        if (roll < 76) {
+            return preview(user, user.current, 0);
+        }
+        if (roll < 82) {
+            Document earlier = user.history.get(random.nextInt(user.history.size()));
+            return preview(user, earlier, -1);
+        }
+        if (roll < 86) {
+            return preview(user, newDocument(user), -1);
+        }
+        if (roll < 92) {
+            String format = random.nextInt(3) == 0 ? "svg" : "png";
+            return shape("get-" + format, format, "export", null, user.current, -1);
+        }
+        if (roll < 95) {
+            return new TrafficRecord(0, "health", "none", "interactive", null, null, 0, 0, 0, "none", "none", -1, 1);
+        }
+        return shape("validate", "none", "interactive", user.id, user.current, -1);
+    }
+
+    private TrafficRecord edit(User user) {
+        Document previous = user.current;
+        int delta = 1 + (int) Math.min(60, Math.abs(random.nextGaussian() * 8));
+        // Typing mostly adds text; the line count grows by one every few edits
+        int lines = previous.lines + (random.nextInt(4) == 0 ? 1 : 0);
+        Document edited = new Document(previous.kind, "doc-" + (documents++), previous.chars + delta / 2 + 1, lines);
+        user.push(edited);
+        return preview(user, edited, delta);
+    }
+
+    private TrafficRecord preview(User user, Document document, int delta) {
+        return shape(live ? "live" : "svg", "svg", "interactive", user.id, document, delta);
+    }
+
+    private static TrafficRecord shape(String endpoint, String format, String priority, String client,
+                                       Document document, int delta) {
+        return new TrafficRecord(0, endpoint, format, priority, client, document.hash, document.chars,
+                                 document.lines, 1, "uml", document.kind, delta, 1);
+    }
+
+    private Document newDocument(User user) {
+        int lines = (int) Math.max(5, Math.min(2000, Math.exp(Math.log(40) + random.nextGaussian() * 0.8)));
+        Document document = new Document(KINDS[random.nextInt(KINDS.length)], "doc-" + (documents++), lines * 24, lines);
+        user.push(document);
+        return document;
+    }
+
+    @Override
+    public long recordedGapMillis() {
+        return -1;
+    }
+
+    @Override
+    public double recordedRate() {
+        return 0;
+    }
+
+    @Override
+    public String describe() {
+        return "editor profile (" + users.size() + " users, " + (live ? "live WebSocket" : "POST /svg") + " previews)";
+    }
+
+    private static final class User {
+        private final String id;
+        private final List<Document> history = new ArrayList<>();
+        private Document current;
+
+        User(String id) {
+            this.id = id;
+        }
+
+        void push(Document document) {
+            current = document;
+            history.add(document);
+            if (history.size() > HISTORY) {
+                history.remove(0);
+            }
+        }
+    }
+
+    private static final class Document {
+        private final String kind;
+        private final String hash;
+        private final int chars;
+        private final int lines;
+
+        Document(String kind, String hash, int chars, int lines) {
+            this.kind = kind;
+            this.hash = hash;
+            this.chars = chars;
+            this.lines = lines;
+        }
+    }
+}
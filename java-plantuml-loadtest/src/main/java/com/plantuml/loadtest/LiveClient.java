@@ -0,0 +1,193 @@
+package com.plantuml.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Live preview sessions (/api/plantuml/live) for replaying live traffic
+ *
+ * Recorded clients are spread over a fixed number of WebSocket sessions. Every replayed edit is sent
+ * as a full "source" message with the next revision; the server renders block by block through its
+ * cache either way, and coalesces revisions that arrive while a render runs. A "render" message for
+ * revision n therefore answers every pending revision up to n, as the editor sees it.
+ */
+public final class LiveClient {
+
+    private final HttpClient client;
+    private final URI uri;
+    private final ObjectMapper mapper;
+    private final Session[] sessions;
+
+    public LiveClient(HttpClient client, URI baseUrl, ObjectMapper mapper, int sessionCount) {
+        this.client = client;
+        String base = baseUrl.toString().replaceFirst("^http", "ws").replaceAll("/+$", "");
+        this.uri = URI.create(base + "/api/plantuml/live");
+        this.mapper = mapper;
+        this.sessions = new Session[Math.max(1, sessionCount)];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new Session();
+        }
+    }
+
+    /**
+     * Send a client's source; completes with an HTTP-like status when a render covering it arrives
+     */
+    public CompletableFuture<Integer> send(String clientKey, String source) {
+        int index = clientKey == null ? 0 : Math.floorMod(clientKey.hashCode(), sessions.length);
+        return sessions[index].send(source);
+    }
+
+    public void close() {
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    private final class Session implements WebSocket.Listener {
+        private final NavigableMap<Integer, CompletableFuture<Integer>> pending = new TreeMap<>();
+        private final StringBuilder partial = new StringBuilder();
+        private CompletableFuture<WebSocket> socket;
+        // One outstanding send per WebSocket: each send waits for the previous one
+        private CompletableFuture<WebSocket> sends;
+        private int revision;
+
+        synchronized CompletableFuture<Integer> send(String source) {
+            if (socket == null || socket.isCompletedExceptionally()) {
+                socket = client.newWebSocketBuilder().buildAsync(uri, this);
+                sends = socket;
+            }
+            int rev = ++revision;
+            CompletableFuture<Integer> answer = new CompletableFuture<>();
+            pending.put(rev, answer);
+
+            String message;
+            try {
+                Map<String, Object> body = new HashMap<>();
+                body.put("type", "source");
+                body.put("rev", rev);
+                body.put("text", source);
+                message = mapper.writeValueAsString(body);
+            } catch (IOException e) {
+                pending.remove(rev);
+                answer.completeExceptionally(e);
+                return answer;
+            }
+            sends = sends.thenCompose(webSocket -> webSocket.sendText(message, true));
+            sends.whenComplete((webSocket, failure) -> {
+                if (failure != null) {
+                    fail(failure);
+                }
+            });
+            return answer;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            String text = null;
+            synchronized (this) {
+                partial.append(data);
+                if (last) {
+                    text = partial.toString();
+                    partial.setLength(0);
+                }
+            }
+            if (text != null) {
+                handle(text);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        private void handle(String text) {
+            JsonNode message;
+            try {
+                message = mapper.readTree(text);
+            } catch (IOException e) {
+                return;
+            }
+            String type = message.path("type").asText();
+            int rev = message.path("rev").asInt(-1);
+            if ("render".equals(type)) {
+                answer(rev, status(message.path("diagrams")));
+            } else if ("error".equals(type) || "resync".equals(type)) {
+                answer(rev, "resync".equals(type) ? 409 : 500);
+            }
+        }
+
+        /**
+         * Worst outcome among the diagrams of a render message
+         */
+        private int status(JsonNode diagrams) {
+            int status = 200;
+            for (JsonNode diagram : diagrams) {
+                String error = diagram.path("error").asText(null);
+                if (error == null) {
+                    continue;
+                }
+                if (error.contains("try again later") || error.contains("budget exhausted")) {
+                    status = Math.max(status, 503);
+                } else if (error.contains("exceeded deadline")) {
+                    status = Math.max(status, 504);
+                } else if (error.contains("MiB to render")) {
+                    status = Math.max(status, 413);
+                } else {
+                    status = Math.max(status, 500);
+                }
+            }
+            return status;
+        }
+
+        private void answer(int rev, int status) {
+            Map<Integer, CompletableFuture<Integer>> answered;
+            synchronized (this) {
+                answered = new TreeMap<>(pending.headMap(rev, true));
+                pending.headMap(rev, true).clear();
+            }
+            answered.values().forEach(answer -> answer.complete(status));
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            fail(new IOException("Live session closed: " + statusCode + " " + reason));
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            fail(error);
+        }
+
+        private void fail(Throwable error) {
+            Map<Integer, CompletableFuture<Integer>> failed;
+            synchronized (this) {
+                failed = new TreeMap<>(pending);
+                pending.clear();
+                // Reconnect on the next send; the server starts the new session from a full source anyway
+                socket = null;
+            }
+            failed.values().forEach(answer -> answer.completeExceptionally(error));
+        }
+
+        synchronized void close() {
+            if (socket != null && socket.isDone() && !socket.isCompletedExceptionally()) {
+                socket.join().sendClose(WebSocket.NORMAL_CLOSURE, "done");
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.plantuml.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Sends workload requests to the server, one rate step at a time
+ *
+ * Open loop: arrivals follow the target rate (Poisson or evenly spaced) or the recorded gaps sped up,
+ * whether or not earlier requests have been answered, as independent editor users would. At most
+ * `concurrency` requests are in flight; further arrivals wait in a client-side backlog and their wait
+ * counts toward latency. A "max" step runs closed loop instead: `concurrency` senders back to back,
+ * which finds the saturation throughput.
+ */
+public final class LoadRunner {
+
+    private static final int BACKLOG_PER_SLOT = 16;
+
+    private final HttpClient client;
+    private final URI baseUrl;
+    private final Workload workload;
+    private final SourceSynthesizer synthesizer;
+    private final LiveClient liveClient;
+    private final ObjectMapper mapper;
+    private final int concurrency;
+    private final boolean poisson;
+    private final Duration timeout;
+    private final Random random;
+
+    // Guarded by this
+    private final Queue<Call> backlog = new ArrayDeque<>();
+    private int inFlight;
+
+    public LoadRunner(HttpClient client, URI baseUrl, Workload workload, SourceSynthesizer synthesizer,
+                      LiveClient liveClient, ObjectMapper mapper, int concurrency, boolean poisson,
+                      Duration timeout, long seed) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.workload = workload;
+        this.synthesizer = synthesizer;
+        this.liveClient = liveClient;
+        this.mapper = mapper;
+        this.concurrency = concurrency;
+        this.poisson = poisson;
+        this.timeout = timeout;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Rate of one step: "25" requests per second, "2x" the recorded pace, or "max" (closed loop)
+     */
+    public static final class Rate {
+        private final String label;
+        private final double perSecond;
+        private final double pace;
+
+        private Rate(String label, double perSecond, double pace) {
+            this.label = label;
+            this.perSecond = perSecond;
+            this.pace = pace;
+        }
+
+        public static Rate parse(String text) {
+            String value = text.trim().toLowerCase(Locale.ROOT);
+            if ("max".equals(value)) {
+                return new Rate(value, 0, 0);
+            }
+            if (value.endsWith("x")) {
+                double pace = Double.parseDouble(value.substring(0, value.length() - 1));
+                if (pace <= 0) {
+                    throw new IllegalArgumentException("Pace must be positive: " + text);
+                }
+                return new Rate(value, 0, pace);
+            }
+            double perSecond = Double.parseDouble(value);
+            if (perSecond <= 0) {
+                throw new IllegalArgumentException("Rate must be positive: " + text);
+            }
+            return new Rate(value, perSecond, 0);
+        }
+
+        public String getLabel() { return label; }
+        public boolean isClosedLoop() { return perSecond == 0 && pace == 0; }
+
+        /**
+         * Requests per second this step aims for, 0 for closed loop
+         */
+        public double target(Workload workload) {
+            return pace > 0 ? workload.recordedRate() * pace : perSecond;
+        }
+    }
+
+    /**
+     * Run one step and wait for its answers
+     */
+    public StepStats run(Rate rate, Duration duration) {
+        StepStats stats = new StepStats();
+        if (rate.isClosedLoop()) {
+            runClosed(stats, duration);
+        } else {
+            runOpen(rate, duration, stats);
+        }
+        awaitIdle();
+        stats.close();
+        return stats;
+    }
+
+    private void runOpen(Rate rate, Duration duration, StepStats stats) {
+        if (rate.pace > 0 && workload.recordedRate() == 0) {
+            throw new IllegalArgumentException("Step " + rate.label + " needs a recording with timestamps");
+        }
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long intended = start;
+        while (true) {
+            TrafficRecord record = workload.next();
+            intended += gapNanos(rate);
+            if (intended - end >= 0) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            submit(prepare(record, intended, stats));
+        }
+    }
+
+    private long gapNanos(Rate rate) {
+        if (rate.pace > 0) {
+            return (long) (TimeUnit.MILLISECONDS.toNanos(Math.max(0, workload.recordedGapMillis())) / rate.pace);
+        }
+        double meanNanos = 1e9 / rate.perSecond;
+        if (!poisson) {
+            return (long) meanNanos;
+        }
+        // Exponential inter-arrival times: independent users, bursts included
+        return (long) (-Math.log(1.0 - random.nextDouble()) * meanNanos);
+    }
+
+    private void runClosed(StepStats stats, Duration duration) {
+        long end = System.nanoTime() + duration.toNanos();
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Thread sender = new Thread(() -> {
+                while (System.nanoTime() - end < 0) {
+                    Call call;
+                    synchronized (workload) {
+                        call = prepare(workload.next(), System.nanoTime(), stats);
+                    }
+                    try {
+                        call.send().join();
+                    } catch (CompletionException ignored) {
+                        // Recorded by the call itself
+                    }
+                }
+            }, "loadtest-sender-" + i);
+            sender.setDaemon(true);
+            sender.start();
+            senders.add(sender);
+        }
+        for (Thread sender : senders) {
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void submit(Call call) {
+        synchronized (this) {
+            if (inFlight >= concurrency) {
+                if (backlog.size() < concurrency * BACKLOG_PER_SLOT) {
+                    backlog.add(call);
+                } else {
+                    call.stats.record(call.endpoint, StepStats.Outcome.DROPPED, 0);
+                }
+                return;
+            }
+            inFlight++;
+        }
+        start(call);
+    }
+
+    private void start(Call call) {
+        call.send().whenComplete((status, failure) -> {
+            Call next;
+            synchronized (this) {
+                next = backlog.poll();
+                if (next == null) {
+                    inFlight--;
+                    notifyAll();
+                }
+            }
+            if (next != null) {
+                start(next);
+            }
+        });
+    }
+
+    private void awaitIdle() {
+        long deadline = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(5);
+        synchronized (this) {
+            while (inFlight > 0 || !backlog.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            backlog.clear();
+        }
+    }
+
+    /**
+     * Build the request for a record; source text is generated here, on the sending thread
+     */
+    private Call prepare(TrafficRecord record, long intendedNanos, StepStats stats) {
+        String endpoint = record.getEndpoint();
+        try {
+            switch (endpoint) {
+                case "live":
+                    String liveSource = synthesizer.source(record);
+                    return new Call(endpoint, intendedNanos, stats,
+                                    () -> liveClient.send(record.getClient(), liveSource));
+                case "health":
+                    return http(endpoint, intendedNanos, stats, request("/api/plantuml/health", record).GET());
+                case "get-svg":
+                case "get-png":
+                    String encoded = PlantUMLEncoder.encode(synthesizer.source(record));
+                    return http(endpoint, intendedNanos, stats,
+                                request("/api/plantuml/" + endpoint.substring(4) + "/" + encoded, record).GET());
+                case "batch":
+                    List<Map<String, Object>> items = new ArrayList<>();
+                    for (String text : synthesizer.batch(record)) {
+                        items.add(Map.of("plantumlText", text, "format", record.getFormat()));
+                    }
+                    return post(endpoint, intendedNanos, stats, "/api/plantuml/batch", record, Map.of("items", items));
+                case "jobs":
+                    return post(endpoint, intendedNanos, stats, "/api/plantuml/jobs", record,
+                                Map.of("plantumlText", synthesizer.source(record), "format", record.getFormat()));
+                default:
+                    return post(endpoint, intendedNanos, stats, "/api/plantuml/" + path(endpoint), record,
+                                Map.of("plantumlText", synthesizer.source(record)));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return new Call(endpoint, intendedNanos, stats, () -> CompletableFuture.failedFuture(e));
+        }
+    }
+
+    // Recorder endpoint names to POST paths
+    private static String path(String endpoint) {
+        switch (endpoint) {
+            case "svg-raw":
+                return "svg/raw";
+            case "svg-async":
+                return "svg/async";
+            case "svg-multi":
+                return "svg/multi";
+            case "png":
+            case "validate":
+                return endpoint;
+            default:
+                return "svg";
+        }
+    }
+
+    private HttpRequest.Builder request(String path, TrafficRecord record) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUrl.resolve(path))
+            .timeout(timeout)
+            .header("X-Render-Priority", record.getPriority());
+        if (record.getClient() != null && "interactive".equals(record.getPriority())) {
+            // Lets the server supersede a client's stale previews, as it does for the editor
+            builder.header("X-Client-Id", "loadtest-" + record.getClient());
+        }
+        return builder;
+    }
+
+    private Call post(String endpoint, long intendedNanos, StepStats stats, String path, TrafficRecord record,
+                      Map<String, Object> body) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(new HashMap<>(body));
+        return http(endpoint, intendedNanos, stats, request(path, record)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(json)));
+    }
+
+    private Call http(String endpoint, long intendedNanos, StepStats stats, HttpRequest.Builder request) {
+        HttpRequest built = request.build();
+        return new Call(endpoint, intendedNanos, stats,
+                        () -> client.sendAsync(built, HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::statusCode));
+    }
+
+    /**
+     * One prepared request; records its outcome when answered
+     */
+    private final class Call {
+        private final String endpoint;
+        private final long intendedNanos;
+        private final StepStats stats;
+        private final Supplier<CompletableFuture<Integer>> sender;
+
+        Call(String endpoint, long intendedNanos, StepStats stats,
+             Supplier<CompletableFuture<Integer>> sender) {
+            this.endpoint = endpoint;
+            this.intendedNanos = intendedNanos;
+            this.stats = stats;
+            this.sender = sender;
+        }
+
+        CompletableFuture<Integer> send() {
+            CompletableFuture<Integer> answer;
+            try {
+                answer = sender.get().orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                answer = CompletableFuture.failedFuture(e);
+            }
+            return answer.whenComplete((status, failure) -> {
+                long latency = System.nanoTime() - intendedNanos;
+                if (failure == null) {
+                    stats.record(endpoint, StepStats.Outcome.of(status), latency);
+                } else {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                    boolean timedOut = cause instanceof HttpTimeoutException || cause instanceof TimeoutException;
+                    stats.record(endpoint, timedOut ? StepStats.Outcome.TIMEOUT : StepStats.Outcome.ERROR, latency);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.plantuml.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load test against a running PlantUML server
+ *
+ * Usage: LoadTest [--option value ...]
+ *   --url URL             server base URL (default http://localhost:8090)
+ *   --recording FILE      replay a recording (plantuml.recording.enabled=true on the recorded server)
+ *   --endpoints a,b       replay only these recorded endpoints
+ *   --profile editor      synthetic editor traffic when no recording is given (default)
+ *   --users N             virtual users of the editor profile (default 50)
+ *   --live                editor profile previews over the live WebSocket instead of POST /svg
+ *   --rates r1,r2,...     steps: requests/s ("20"), multiples of the recorded pace ("2x") or "max" (closed loop)
+ *   --concurrency N       requests in flight at most (default 64)
+ *   --step-seconds N      length of each step (default 60)
+ *   --warmup-seconds N    unreported warm-up at the first rate (default 20)
+ *   --arrivals poisson|uniform  inter-arrival times of open-loop steps (default poisson)
+ *   --timeout-ms N        client timeout per request (default 30000)
+ *   --slo-ms N            p99 latency objective for the sustainable-throughput line (default 1000)
+ *   --live-sessions N     WebSocket sessions for live traffic (default 50)
+ *   --seed N              source and arrival seed; reuse it to send the same texts again (default random)
+ *   --label NAME          run name, e.g. the release under test (default run)
+ *   --out DIR             report directory (default target/loadtest)
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        URI url = URI.create(options.getOrDefault("url", "http://localhost:8090"));
+        List<LoadRunner.Rate> rates = new ArrayList<>();
+        for (String rate : options.getOrDefault("rates", "5,10,20,40,80").split(",")) {
+            rates.add(LoadRunner.Rate.parse(rate));
+        }
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        Duration step = Duration.ofSeconds(Long.parseLong(options.getOrDefault("step-seconds", "60")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup-seconds", "20")));
+        Duration timeout = Duration.ofMillis(Long.parseLong(options.getOrDefault("timeout-ms", "30000")));
+        String arrivals = options.getOrDefault("arrivals", "poisson");
+        if (!"poisson".equals(arrivals) && !"uniform".equals(arrivals)) {
+            throw new IllegalArgumentException("--arrivals must be poisson or uniform");
+        }
+        long seed = options.containsKey("seed")
+            ? Long.parseLong(options.get("seed"))
+            : ThreadLocalRandom.current().nextLong(1, 1_000_000_000L);
+        String label = options.getOrDefault("label", "run");
+
+        Workload workload;
+        if (options.containsKey("recording")) {
+            Set<String> endpoints = options.containsKey("endpoints")
+                ? new HashSet<>(Arrays.asList(options.get("endpoints").split(",")))
+                : Set.of();
+            workload = RecordedWorkload.load(Paths.get(options.get("recording")), endpoints);
+        } else if ("editor".equals(options.getOrDefault("profile", "editor"))) {
+            workload = new EditorProfile(Integer.parseInt(options.getOrDefault("users", "50")),
+                                         options.containsKey("live"), seed);
+        } else {
+            throw new IllegalArgumentException("Unknown profile: " + options.get("profile"));
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        // Plain HTTP/1.1 like the browser editor; the client keeps connections alive between requests
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        JsonNode info = awaitServer(client, url, mapper);
+
+        RunReport report = new RunReport();
+        Map<String, Object> run = report.getRun();
+        run.put("label", label);
+        run.put("url", url.toString());
+        run.put("startedAt", Instant.now().toString());
+        Map<String, Object> server = new HashMap<>();
+        server.put("version", info.path("version").asText(null));
+        server.put("plantuml", info.path("plantuml_version").asText(null));
+        run.put("server", server);
+        run.put("workload", workload.describe());
+        run.put("arrivals", arrivals);
+        run.put("concurrency", concurrency);
+        run.put("stepSeconds", step.getSeconds());
+        run.put("warmupSeconds", warmup.getSeconds());
+        run.put("timeoutMs", timeout.toMillis());
+        run.put("sloMs", Long.parseLong(options.getOrDefault("slo-ms", "1000")));
+        run.put("seed", seed);
+
+        LiveClient liveClient = new LiveClient(client, url, mapper,
+                                               Integer.parseInt(options.getOrDefault("live-sessions", "50")));
+        SourceSynthesizer synthesizer = new SourceSynthesizer(seed);
+        LoadRunner runner = new LoadRunner(client, url, workload, synthesizer, liveClient, mapper, concurrency,
+                                           "poisson".equals(arrivals), timeout, seed);
+        ServerSampler sampler = new ServerSampler(client, url, mapper);
+        try {
+            System.out.println("Load test " + label + " against " + url + ": " + workload.describe() + ", seed " + seed);
+            if (!warmup.isZero()) {
+                System.out.println("Warm-up " + warmup.getSeconds() + "s at " + rates.get(0).getLabel());
+                runner.run(rates.get(0), warmup);
+            }
+            for (LoadRunner.Rate rate : rates) {
+                sampler.begin();
+                long start = System.nanoTime();
+                StepStats stats = runner.run(rate, step);
+                long elapsed = System.nanoTime() - start;
+                Map<String, Object> summary = stats.summary(elapsed);
+                report.addStep(rate.getLabel(), rate.isClosedLoop() ? null : rate.target(workload), summary, sampler.end());
+                System.out.println(String.format(Locale.ROOT, "Step %s: %d requests, %s req/s, p50 %s ms, p99 %s ms, %s%% failed",
+                    rate.getLabel(), stats.getRequests(), summary.get("throughput"), summary.get("p50Ms"),
+                    summary.get("p99Ms"), StepStats.round((Double) summary.get("errorRate") * 100)));
+            }
+        } finally {
+            sampler.close();
+            liveClient.close();
+        }
+
+        String name = label + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date());
+        Path out = Paths.get(options.getOrDefault("out", "target/loadtest"));
+        Path json = report.write(out, name, mapper);
+        System.out.println();
+        RunReport.printMarkdown(mapper.valueToTree(report.document()), System.out);
+        System.out.println();
+        System.out.println("Report written to " + json + " and " + out.resolve(name + ".md"));
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if ("live".equals(name)) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Wait for the server to answer /api/plantuml/info, as the editor does on startup
+     */
+    private static JsonNode awaitServer(HttpClient client, URI url, ObjectMapper mapper)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(url.resolve("/api/plantuml/info"))
+            .timeout(Duration.ofSeconds(5))
+            .GET()
+            .build();
+        IOException last = null;
+        for (int attempt = 0; attempt < 30; attempt++) {
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    return mapper.readTree(response.body());
+                }
+                last = new IOException("Server answered " + response.statusCode());
+            } catch (IOException e) {
+                last = e;
+            }
+            Thread.sleep(1000);
+        }
+        throw new IOException("Server at " + url + " not reachable", last);
+    }
+}
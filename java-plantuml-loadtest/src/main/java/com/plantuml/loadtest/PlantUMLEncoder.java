@@ -0,0 +1,49 @@
+package com.plantuml.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * PlantUML's URL text encoding (raw deflate, then PlantUML's base64 alphabet), as used by
+ * GET /api/plantuml/{svg|png}/{encoded}
+ */
+public final class PlantUMLEncoder {
+
+    private static final char[] ALPHABET =
+        "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-_".toCharArray();
+
+    private PlantUMLEncoder() {
+    }
+
+    public static String encode(String source) {
+        byte[] input = source.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(9, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length / 2 + 64);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        return encode64(compressed.toByteArray());
+    }
+
+    private static String encode64(byte[] data) {
+        StringBuilder text = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int b1 = data[i] & 0xFF;
+            int b2 = i + 1 < data.length ? data[i + 1] & 0xFF : 0;
+            int b3 = i + 2 < data.length ? data[i + 2] & 0xFF : 0;
+            text.append(ALPHABET[b1 >> 2]);
+            text.append(ALPHABET[((b1 & 0x3) << 4) | (b2 >> 4)]);
+            text.append(ALPHABET[((b2 & 0xF) << 2) | (b3 >> 6)]);
+            text.append(ALPHABET[b3 & 0x3F]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.plantuml.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Replays a server recording in its original order, starting over at the end
+ *
+ * Order is kept so each client's edit sequence reaches the server as it did in production. Each pass
+ * after the first renames clients and sources, so a second lap is not one long run of exact repeats
+ * served from the render cache.
+ */
+public final class RecordedWorkload implements Workload {
+
+    private final Path file;
+    private final List<TrafficRecord> records;
+    private final double rate;
+    private int position;
+    private int lap;
+    private long gapMillis = -1;
+
+    private RecordedWorkload(Path file, List<TrafficRecord> records) {
+        this.file = file;
+        this.records = records;
+        long span = records.get(records.size() - 1).getOffsetMillis() - records.get(0).getOffsetMillis();
+        this.rate = span > 0 ? records.size() * 1000.0 / span : 0;
+    }
+
+    /**
+     * Load a recording, keeping only endpoints in the given set (all when empty)
+     * @throws IOException if the file cannot be read or holds no usable records
+     */
+    public static RecordedWorkload load(Path file, Set<String> endpoints) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<TrafficRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                TrafficRecord record = TrafficRecord.parse(mapper.readTree(line));
+                if (endpoints.isEmpty() || endpoints.contains(record.getEndpoint())) {
+                    records.add(record);
+                }
+            }
+        }
+        if (records.isEmpty()) {
+            throw new IOException("No replayable records in " + file);
+        }
+        // The writer thread keeps arrival order, but be safe with concatenated recordings
+        records.sort((a, b) -> Long.compare(a.getOffsetMillis(), b.getOffsetMillis()));
+        return new RecordedWorkload(file, Collections.unmodifiableList(records));
+    }
+
+    @Override
+    public TrafficRecord next() {
+        if (position == records.size()) {
+            position = 0;
+            lap++;
+        }
+        TrafficRecord record = records.get(position);
+        gapMillis = position == 0 ? 0 : record.getOffsetMillis() - records.get(position - 1).getOffsetMillis();
+        position++;
+        return lap > 0 ? record.withLap(lap) : record;
+    }
+
+    @Override
+    public long recordedGapMillis() {
+        return gapMillis;
+    }
+
+    @Override
+    public double recordedRate() {
+        return rate;
+    }
+
+    @Override
+    public String describe() {
+        return String.format(Locale.ROOT, "recording %s (%d requests, %.1f req/s recorded)",
+                             file.getFileName(), records.size(), rate);
+    }
+}
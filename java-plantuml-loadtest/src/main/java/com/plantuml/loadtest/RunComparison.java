@@ -0,0 +1,144 @@
+package com.plantuml.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two load test reports and prints a Markdown report
+ *
+ * Usage: RunComparison baseline.json current.json [threshold-percent]
+ * Steps are matched by their rate label. A step regressed when its p99 latency grew by more than the
+ * threshold (default 10%) and at least 5 ms, its achieved throughput fell by more than the threshold,
+ * or its failed share rose by more than one percentage point. The sustainable throughput of the two
+ * runs is compared with the same threshold.
+ */
+public final class RunComparison {
+
+    private static final double MIN_LATENCY_CHANGE_MS = 5.0;
+    private static final double MAX_ERROR_RATE_INCREASE = 0.01;
+
+    private RunComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RunComparison <baseline.json> <current.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode baseline = mapper.readTree(Paths.get(args[0]).toFile());
+        JsonNode current = mapper.readTree(Paths.get(args[1]).toFile());
+        Map<String, JsonNode> baselineSteps = steps(baseline);
+
+        System.out.println("# Load test comparison");
+        System.out.println();
+        System.out.println("Baseline: `" + args[0] + "` " + version(baseline) + "  ");
+        System.out.println("Current: `" + args[1] + "` " + version(current));
+        if (!baseline.path("run").path("workload").asText().equals(current.path("run").path("workload").asText())) {
+            System.out.println();
+            System.out.println("Warning: the runs used different workloads, results may not be comparable.");
+        }
+        System.out.println();
+        System.out.println("| Step | req/s baseline | req/s current | p50 baseline | p50 current | p99 baseline | p99 current "
+            + "| p99 change | Errors baseline | Errors current | CPU baseline | CPU current | Heap max baseline | Heap max current | Verdict |");
+        System.out.println("|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|");
+
+        int regressions = 0;
+        for (JsonNode now : current.path("steps")) {
+            JsonNode before = baselineSteps.get(now.path("step").asText());
+            String verdict = before == null ? "new" : verdict(before, now, threshold);
+            if (verdict.startsWith("**")) {
+                regressions++;
+            }
+            JsonNode base = before != null ? before : MissingNode.getInstance();
+            System.out.println("| " + now.path("step").asText()
+                + " | " + RunReport.number(base.path("throughput"))
+                + " | " + RunReport.number(now.path("throughput"))
+                + " | " + RunReport.number(base.path("p50Ms"))
+                + " | " + RunReport.number(now.path("p50Ms"))
+                + " | " + RunReport.number(base.path("p99Ms"))
+                + " | " + RunReport.number(now.path("p99Ms"))
+                + " | " + change(base.path("p99Ms"), now.path("p99Ms"))
+                + " | " + RunReport.percent(base.path("errorRate"))
+                + " | " + RunReport.percent(now.path("errorRate"))
+                + " | " + RunReport.percent(base.path("server").path("cpuAvg"))
+                + " | " + RunReport.percent(now.path("server").path("cpuAvg"))
+                + " | " + RunReport.number(base.path("server").path("heapMaxMb"))
+                + " | " + RunReport.number(now.path("server").path("heapMaxMb"))
+                + " | " + verdict + " |");
+        }
+
+        double baselineSustainable = RunReport.sustainableThroughput(baseline);
+        double currentSustainable = RunReport.sustainableThroughput(current);
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "Sustainable throughput: %.1f -> %.1f req/s",
+                                         baselineSustainable, currentSustainable));
+        if (baselineSustainable > 0 && currentSustainable < baselineSustainable * (1 - threshold / 100)) {
+            System.out.println("**Sustainable throughput regressed.**");
+            regressions++;
+        }
+
+        System.out.println();
+        System.out.println(regressions == 0 ? "No regressions." : regressions + " regression(s).");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> steps(JsonNode report) {
+        Map<String, JsonNode> steps = new LinkedHashMap<>();
+        for (JsonNode step : report.path("steps")) {
+            steps.put(step.path("step").asText(), step);
+        }
+        return steps;
+    }
+
+    private static String version(JsonNode report) {
+        JsonNode server = report.path("run").path("server");
+        return "(" + report.path("run").path("label").asText() + ", server " + server.path("version").asText("?")
+            + ", PlantUML " + server.path("plantuml").asText("?") + ")";
+    }
+
+    private static String verdict(JsonNode before, JsonNode now, double threshold) {
+        double factor = threshold / 100;
+        JsonNode oldP99 = before.path("p99Ms");
+        JsonNode newP99 = now.path("p99Ms");
+        if (oldP99.isNumber() && newP99.isNumber()) {
+            double delta = newP99.asDouble() - oldP99.asDouble();
+            if (delta > oldP99.asDouble() * factor && delta >= MIN_LATENCY_CHANGE_MS) {
+                return "**slower**";
+            }
+        } else if (oldP99.isNumber()) {
+            // Nothing succeeded any more
+            return "**failing**";
+        }
+        if (now.path("throughput").asDouble() < before.path("throughput").asDouble() * (1 - factor)) {
+            return "**lower throughput**";
+        }
+        if (now.path("errorRate").asDouble() > before.path("errorRate").asDouble() + MAX_ERROR_RATE_INCREASE) {
+            return "**more errors**";
+        }
+        if (oldP99.isNumber() && newP99.isNumber()
+            && oldP99.asDouble() - newP99.asDouble() > oldP99.asDouble() * factor
+            && oldP99.asDouble() - newP99.asDouble() >= MIN_LATENCY_CHANGE_MS) {
+            return "faster";
+        }
+        return "same";
+    }
+
+    private static String change(JsonNode before, JsonNode now) {
+        if (!before.isNumber() || !now.isNumber() || before.asDouble() == 0) {
+            return "-";
+        }
+        return String.format(Locale.ROOT, "%+.1f%%", (now.asDouble() - before.asDouble()) / before.asDouble() * 100);
+    }
+}
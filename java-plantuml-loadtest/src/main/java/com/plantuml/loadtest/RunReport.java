@@ -0,0 +1,162 @@
+package com.plantuml.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Result of one load test run: run settings, server version and one entry per rate step,
+ * written as JSON (input to RunComparison) and as a Markdown report
+ *
+ * Each step holds the target and achieved rate, latency percentiles of successful requests, counts per
+ * outcome, server CPU/heap/GC while the step ran, and the same figures per endpoint. The run's
+ * sustainable throughput is the highest achieved rate of a step that met the latency SLO (p99) with
+ * at most 1% failed requests.
+ */
+public final class RunReport {
+
+    static final double MAX_ERROR_RATE = 0.01;
+
+    private final Map<String, Object> run = new LinkedHashMap<>();
+    private final List<Map<String, Object>> steps = new ArrayList<>();
+
+    public Map<String, Object> getRun() {
+        return run;
+    }
+
+    /**
+     * @param target intended requests per second, null for closed-loop steps
+     */
+    public void addStep(String label, Double target, Map<String, Object> stats, Map<String, Object> server) {
+        Map<String, Object> step = new LinkedHashMap<>();
+        step.put("step", label);
+        step.put("target", target != null ? StepStats.round(target) : null);
+        step.putAll(stats);
+        step.put("server", server);
+        steps.add(step);
+    }
+
+    /**
+     * Highest achieved throughput among steps meeting the SLO, 0 when none did
+     */
+    public static double sustainableThroughput(JsonNode report) {
+        double slo = report.path("run").path("sloMs").asDouble();
+        double best = 0;
+        for (JsonNode step : report.path("steps")) {
+            if (meetsSlo(step, slo)) {
+                best = Math.max(best, step.path("throughput").asDouble());
+            }
+        }
+        return best;
+    }
+
+    static boolean meetsSlo(JsonNode step, double sloMs) {
+        JsonNode p99 = step.path("p99Ms");
+        return !p99.isNull() && !p99.isMissingNode() && p99.asDouble() <= sloMs
+            && step.path("errorRate").asDouble() <= MAX_ERROR_RATE;
+    }
+
+    /**
+     * Write name.json and name.md into the directory
+     * @return path of the JSON file
+     */
+    public Path write(Path directory, String name, ObjectMapper mapper) throws IOException {
+        Files.createDirectories(directory);
+        Map<String, Object> document = document();
+        Path json = directory.resolve(name + ".json");
+        mapper.writerWithDefaultPrettyPrinter().writeValue(json.toFile(), document);
+        JsonNode tree = mapper.valueToTree(document);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".md")), true,
+                                               StandardCharsets.UTF_8.name())) {
+            printMarkdown(tree, out);
+        }
+        return json;
+    }
+
+    public Map<String, Object> document() {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("run", run);
+        document.put("steps", steps);
+        return document;
+    }
+
+    /**
+     * Markdown report: one row per step (latency vs throughput), then the per-endpoint breakdown
+     */
+    public static void printMarkdown(JsonNode report, PrintStream out) {
+        JsonNode run = report.path("run");
+        double slo = run.path("sloMs").asDouble();
+        out.println("# Load test: " + run.path("label").asText());
+        out.println();
+        out.println("Server: `" + run.path("url").asText() + "` " + run.path("server").path("version").asText("?")
+            + " (PlantUML " + run.path("server").path("plantuml").asText("?") + ")  ");
+        out.println("Workload: " + run.path("workload").asText() + "  ");
+        out.println("Arrivals: " + run.path("arrivals").asText() + ", concurrency " + run.path("concurrency").asInt()
+            + ", " + run.path("stepSeconds").asInt() + "s per step, seed " + run.path("seed").asText() + "  ");
+        out.println("Started: " + run.path("startedAt").asText());
+        out.println();
+        out.println("| Step | Target req/s | Achieved req/s | p50 ms | p90 ms | p99 ms | p99.9 ms | max ms "
+            + "| Errors | 503 | 413 | 504 | 409 | Dropped | CPU avg/max | Heap avg/max MiB | GC ms | SLO |");
+        out.println("|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|");
+        for (JsonNode step : report.path("steps")) {
+            JsonNode server = step.path("server");
+            out.println("| " + step.path("step").asText()
+                + " | " + number(step.path("target"))
+                + " | " + number(step.path("throughput"))
+                + " | " + number(step.path("p50Ms"))
+                + " | " + number(step.path("p90Ms"))
+                + " | " + number(step.path("p99Ms"))
+                + " | " + number(step.path("p999Ms"))
+                + " | " + number(step.path("maxMs"))
+                + " | " + percent(step.path("errorRate"))
+                + " | " + step.path("rejected").asLong()
+                + " | " + step.path("too_large").asLong()
+                + " | " + step.path("timeout").asLong()
+                + " | " + step.path("cancelled").asLong()
+                + " | " + step.path("dropped").asLong()
+                + " | " + percent(server.path("cpuAvg")) + " / " + percent(server.path("cpuMax"))
+                + " | " + number(server.path("heapAvgMb")) + " / " + number(server.path("heapMaxMb"))
+                + " | " + number(server.path("gcMs"))
+                + " | " + (meetsSlo(step, slo) ? "yes" : "**no**") + " |");
+        }
+        out.println();
+        out.println(String.format(Locale.ROOT, "Sustainable throughput (p99 <= %.0f ms, <= %.0f%% errors): %.1f req/s",
+                                  slo, MAX_ERROR_RATE * 100, sustainableThroughput(report)));
+        out.println();
+        out.println("## Endpoints");
+        out.println();
+        out.println("| Step | Endpoint | Requests | Achieved req/s | p50 ms | p99 ms | Errors | 409 |");
+        out.println("|---|---|---|---|---|---|---|---|");
+        for (JsonNode step : report.path("steps")) {
+            step.path("endpoints").fields().forEachRemaining(entry -> {
+                JsonNode endpoint = entry.getValue();
+                out.println("| " + step.path("step").asText()
+                    + " | " + entry.getKey()
+                    + " | " + endpoint.path("requests").asLong()
+                    + " | " + number(endpoint.path("throughput"))
+                    + " | " + number(endpoint.path("p50Ms"))
+                    + " | " + number(endpoint.path("p99Ms"))
+                    + " | " + percent(endpoint.path("errorRate"))
+                    + " | " + endpoint.path("cancelled").asLong() + " |");
+            });
+        }
+    }
+
+    static String number(JsonNode value) {
+        return value.isNumber() ? String.format(Locale.ROOT, "%.1f", value.asDouble()) : "-";
+    }
+
+    static String percent(JsonNode value) {
+        return value.isNumber() ? String.format(Locale.ROOT, "%.1f%%", value.asDouble() * 100) : "-";
+    }
+}
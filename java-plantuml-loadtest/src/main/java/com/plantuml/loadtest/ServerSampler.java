@@ -0,0 +1,182 @@
+package com.plantuml.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the server's CPU, heap, GC and render queue through /actuator/metrics while a step runs
+ *
+ * Values are what the server JVM reports about itself, so run the load generator on another machine
+ * (or pin it to other cores) when CPU numbers matter. Metrics the server does not expose come out as null.
+ */
+public final class ServerSampler {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(2);
+
+    private final HttpClient client;
+    private final URI baseUrl;
+    private final ObjectMapper mapper;
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by this
+    private Window window;
+
+    public ServerSampler(HttpClient client, URI baseUrl, ObjectMapper mapper) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.mapper = mapper;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-server-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sample, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Start a new sampling window
+     */
+    public void begin() {
+        Window started = new Window(gcPause());
+        synchronized (this) {
+            window = started;
+        }
+    }
+
+    /**
+     * End the window and summarize it
+     */
+    public Map<String, Object> end() {
+        Window finished;
+        synchronized (this) {
+            finished = window;
+            window = null;
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        if (finished == null) {
+            return summary;
+        }
+        double[] gcAfter = gcPause();
+        summary.put("samples", finished.samples);
+        summary.put("cpuAvg", finished.cpu.average());
+        summary.put("cpuMax", finished.cpu.max());
+        summary.put("heapAvgMb", megabytes(finished.heap.average()));
+        summary.put("heapMaxMb", megabytes(finished.heap.max()));
+        summary.put("queueMax", finished.queue.max());
+        if (finished.gcBefore != null && gcAfter != null) {
+            summary.put("gcCount", (long) (gcAfter[0] - finished.gcBefore[0]));
+            summary.put("gcMs", StepStats.round((gcAfter[1] - finished.gcBefore[1]) * 1000));
+        } else {
+            summary.put("gcCount", null);
+            summary.put("gcMs", null);
+        }
+        return summary;
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        Window current;
+        synchronized (this) {
+            current = window;
+        }
+        if (current == null) {
+            return;
+        }
+        Double cpu = value("process.cpu.usage", "VALUE", "");
+        Double heap = value("jvm.memory.used", "VALUE", "?tag=area:heap");
+        Double queue = value("plantuml.render.queue.depth", "VALUE", "");
+        synchronized (this) {
+            if (window != current) {
+                return;
+            }
+            current.samples++;
+            current.cpu.add(cpu);
+            current.heap.add(heap);
+            current.queue.add(queue);
+        }
+    }
+
+    // Count and total seconds of GC pauses since the server started
+    private double[] gcPause() {
+        Double count = value("jvm.gc.pause", "COUNT", "");
+        Double total = value("jvm.gc.pause", "TOTAL_TIME", "");
+        return count != null && total != null ? new double[] {count, total} : null;
+    }
+
+    private Double value(String metric, String statistic, String query) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/actuator/metrics/" + metric + query))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            for (JsonNode measurement : mapper.readTree(response.body()).path("measurements")) {
+                if (statistic.equals(measurement.path("statistic").asText())) {
+                    return measurement.path("value").asDouble();
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Double megabytes(Double bytes) {
+        return bytes == null ? null : StepStats.round(bytes / (1024 * 1024));
+    }
+
+    private static final class Window {
+        private final double[] gcBefore;
+        private final Series cpu = new Series();
+        private final Series heap = new Series();
+        private final Series queue = new Series();
+        private int samples;
+
+        Window(double[] gcBefore) {
+            this.gcBefore = gcBefore;
+        }
+    }
+
+    private static final class Series {
+        private double sum;
+        private double max = Double.NEGATIVE_INFINITY;
+        private int count;
+
+        void add(Double value) {
+            if (value == null || value.isNaN()) {
+                return;
+            }
+            sum += value;
+            max = Math.max(max, value);
+            count++;
+        }
+
+        Double average() {
+            return count == 0 ? null : StepStats.round(sum / count);
+        }
+
+        Double max() {
+            return count == 0 ? null : StepStats.round(max);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.plantuml.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Turns request shapes back into PlantUML text
+ *
+ * Recordings carry no diagram text, only size, kind and hashes, so sources are generated:
+ *   - a source hash seen before is sent as the same text again, so repeats hit the render cache as they did
+ *   - a known client with an edit size (delta) gets its previous text with about delta characters changed,
+ *     so edit sequences produce near-duplicates and unchanged diagram blocks stay cacheable
+ *   - anything else is a new diagram of the recorded kind, line count and length
+ * Generation is seeded by the source hash and the run seed. Every block carries a comment with the run seed,
+ * so renders cached by an earlier run (including the disk cache) are not reused unless the seed is repeated.
+ */
+public final class SourceSynthesizer {
+
+    private static final int MAX_SOURCES = 20_000;
+    private static final int MAX_CLIENTS = 10_000;
+    // Edits up to this many characters change a label; larger ones add lines
+    private static final int INLINE_EDIT_CHARS = 40;
+
+    private final long seed;
+    private final Random random;
+
+    private final Map<String, String> sources = lru(MAX_SOURCES);
+    private final Map<String, String> lastByClient = lru(MAX_CLIENTS);
+
+    public SourceSynthesizer(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    private static Map<String, String> lru(int capacity) {
+        return new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Source text of a single-diagram request
+     */
+    public String source(TrafficRecord record) {
+        String text = record.getSource() != null ? sources.get(record.getSource()) : null;
+        if (text == null) {
+            String previous = record.getClient() != null ? lastByClient.get(record.getClient()) : null;
+            Random generator = record.getSource() != null
+                ? new Random(seed * 31 + record.getSource().hashCode())
+                : new Random(random.nextLong());
+            text = previous != null && record.getDelta() >= 0
+                ? edit(previous, record.getKind(), record.getDelta(), generator)
+                : generate(record.getType(), record.getKind(), record.getLines(), record.getChars(),
+                           record.getBlocks(), generator);
+            if (record.getSource() != null) {
+                sources.put(record.getSource(), text);
+            }
+        }
+        if (record.getClient() != null) {
+            lastByClient.put(record.getClient(), text);
+        }
+        return text;
+    }
+
+    /**
+     * Source texts of a batch request, the recorded totals spread over its items
+     */
+    public List<String> batch(TrafficRecord record) {
+        int items = record.getItems();
+        List<String> texts = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            texts.add(generate(record.getType(), record.getKind(), Math.max(3, record.getLines() / items),
+                               Math.max(40, record.getChars() / items), 1, new Random(random.nextLong())));
+        }
+        return texts;
+    }
+
+    /**
+     * New diagram text close to the given size
+     */
+    String generate(String type, String kind, int lines, int chars, int blocks, Random generator) {
+        int perBlock = Math.max(3, lines / Math.max(1, blocks));
+        // Characters per line, less the syntax around each label
+        int width = Math.max(3, Math.min(60, chars / Math.max(1, lines) - 12));
+        StringBuilder text = new StringBuilder(Math.max(64, chars + 64));
+        for (int block = 0; block < Math.max(1, blocks); block++) {
+            if (block > 0) {
+                text.append('\n');
+            }
+            appendBlock(text, type, kind, perBlock, width, generator);
+        }
+        return text.toString();
+    }
+
+    private void appendBlock(StringBuilder text, String type, String kind, int lines, int width, Random generator) {
+        String diagram;
+        switch (type) {
+            case "mindmap":
+            case "wbs":
+            case "gantt":
+            case "json":
+            case "yaml":
+                diagram = type;
+                break;
+            default:
+                diagram = "uml";
+                break;
+        }
+        text.append("@start").append(diagram).append('\n');
+        text.append("' load test ").append(seed).append('\n');
+        if ("json".equals(diagram)) {
+            text.append("{\n");
+        }
+        if ("uml".equals(diagram) && "activity".equals(kind)) {
+            text.append("start\n");
+        }
+        for (int i = 0; i < lines; i++) {
+            text.append(line(diagram, kind, i, lines, width, generator)).append('\n');
+        }
+        if ("json".equals(diagram)) {
+            text.append("  \"end\": true\n}\n");
+        }
+        if ("uml".equals(diagram) && "activity".equals(kind)) {
+            text.append("stop\n");
+        }
+        text.append("@end").append(diagram);
+    }
+
+    /**
+     * One content line of a diagram, valid on its own so lines can be added anywhere before @end
+     */
+    private static String line(String diagram, String kind, int index, int lines, int width, Random generator) {
+        String label = word(generator, width);
+        switch (diagram) {
+            case "mindmap":
+            case "wbs":
+                // Depth may only grow one level at a time
+                return index == 0 ? "* " + label : "*".repeat(index == 1 ? 2 : 2 + generator.nextInt(2)) + " " + label;
+            case "gantt":
+                return index == 0
+                    ? "[T0 " + label + "] lasts " + (1 + generator.nextInt(9)) + " days"
+                    : "[T" + index + " " + label + "] lasts " + (1 + generator.nextInt(9)) + " days";
+            case "json":
+                return "  \"k" + index + "\": \"" + label + "\",";
+            case "yaml":
+                return "k" + index + ": " + label;
+            default:
+                break;
+        }
+        // Element count grows with the diagram, as in real documents
+        int elements = Math.max(2, Math.min(60, lines / 4));
+        int a = generator.nextInt(elements);
+        int b = generator.nextInt(elements);
+        switch (kind) {
+            case "sequence":
+                return "P" + a + " -> P" + b + " : " + label;
+            case "activity":
+                return ":" + label + ";";
+            case "state":
+                return index == 0 ? "[*] --> S0" : "S" + a + " --> S" + b + " : " + label;
+            case "component":
+                return "[C" + a + "] --> [C" + b + "] : " + label;
+            case "usecase":
+                return "actor A" + a + "\nA" + a + " --> (U" + b + ") : " + label;
+            default:
+                return generator.nextInt(3) == 0
+                    ? "C" + a + " : +" + label + " : String"
+                    : "C" + a + " --> C" + b + " : " + label;
+        }
+    }
+
+    /**
+     * About delta characters of the previous text changed: a label rewritten for small edits,
+     * new lines before the last @end for large ones
+     */
+    String edit(String previous, String kind, int delta, Random generator) {
+        if (delta == 0) {
+            return previous;
+        }
+        String[] lines = previous.split("\n", -1);
+        if (delta <= INLINE_EDIT_CHARS) {
+            List<Integer> labelled = new ArrayList<>();
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i].contains(" : ") || (lines[i].startsWith(":") && lines[i].endsWith(";"))) {
+                    labelled.add(i);
+                }
+            }
+            if (!labelled.isEmpty()) {
+                int index = labelled.get(generator.nextInt(labelled.size()));
+                lines[index] = relabel(lines[index], delta, generator);
+                return String.join("\n", lines);
+            }
+        }
+
+        int end = lines.length - 1;
+        while (end > 0 && !lines[end].startsWith("@end")) {
+            end--;
+        }
+        String diagram = lines[end].startsWith("@end") ? lines[end].substring("@end".length()) : "uml";
+        if ("json".equals(diagram)) {
+            // Keep the closing brace and the final "end" key after the new lines
+            end = Math.max(1, end - 2);
+        } else if (end > 0 && "stop".equals(lines[end - 1])) {
+            end--;
+        }
+        StringBuilder added = new StringBuilder();
+        int index = lines.length;
+        while (added.length() < delta) {
+            added.append(line(diagram, kind, index++, lines.length, 12, generator)).append('\n');
+        }
+        StringBuilder text = new StringBuilder(previous.length() + added.length());
+        for (int i = 0; i < lines.length; i++) {
+            if (i == end) {
+                text.append(added);
+            }
+            text.append(lines[i]);
+            if (i < lines.length - 1) {
+                text.append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static String relabel(String line, int delta, Random generator) {
+        if (line.startsWith(":") && line.endsWith(";")) {
+            String label = line.substring(1, line.length() - 1);
+            return ":" + rewrite(label, delta, generator) + ";";
+        }
+        int split = line.lastIndexOf(" : ");
+        return line.substring(0, split + 3) + rewrite(line.substring(split + 3), delta, generator);
+    }
+
+    // Replace the last delta characters of a label (the span the recorder measured), keeping its length
+    private static String rewrite(String label, int delta, Random generator) {
+        int keep = Math.max(0, label.length() - delta);
+        return label.substring(0, keep) + word(generator, delta);
+    }
+
+    private static String word(Random generator, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + generator.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
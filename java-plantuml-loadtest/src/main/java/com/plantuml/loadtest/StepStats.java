@@ -0,0 +1,150 @@
+package com.plantuml.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcomes and latencies of one load step
+ *
+ * Latency runs from the intended send time, not the actual one, so time a request spent waiting for a
+ * free connection slot or behind a stalled sender is counted (no coordinated omission). Percentiles are
+ * over successful responses; rejections and errors are counted separately so fast 503s cannot make a
+ * saturated server look quick.
+ */
+public final class StepStats {
+
+    public enum Outcome {
+        OK,
+        // 503: render queue or memory budget full
+        REJECTED,
+        // 413: diagram over the per-render memory limit or batch size
+        TOO_LARGE,
+        // 504 or no answer within the client timeout
+        TIMEOUT,
+        // 409: cancelled or superseded by a newer preview of the same client, expected for fast typists
+        CANCELLED,
+        ERROR,
+        // Not sent: the client backlog was full, the load generator itself could not keep up
+        DROPPED;
+
+        static Outcome of(int status) {
+            if (status >= 200 && status < 400) {
+                return OK;
+            }
+            switch (status) {
+                case 503:
+                    return REJECTED;
+                case 413:
+                    return TOO_LARGE;
+                case 504:
+                    return TIMEOUT;
+                case 409:
+                    return CANCELLED;
+                default:
+                    return ERROR;
+            }
+        }
+    }
+
+    private final Map<String, Series> byEndpoint = new TreeMap<>();
+    private final Series total = new Series();
+    private boolean closed;
+
+    public synchronized void record(String endpoint, Outcome outcome, long latencyNanos) {
+        if (closed) {
+            return;
+        }
+        total.add(outcome, latencyNanos);
+        byEndpoint.computeIfAbsent(endpoint, name -> new Series()).add(outcome, latencyNanos);
+    }
+
+    /**
+     * Stop counting; late answers belong to no step
+     */
+    public synchronized void close() {
+        closed = true;
+    }
+
+    public synchronized long getRequests() {
+        return total.requests;
+    }
+
+    /**
+     * Step summary for the report
+     * @param elapsedNanos time from the first intended send to the last answer
+     */
+    public synchronized Map<String, Object> summary(long elapsedNanos) {
+        Map<String, Object> summary = total.summary(elapsedNanos);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<String, Series> entry : byEndpoint.entrySet()) {
+            endpoints.put(entry.getKey(), entry.getValue().summary(elapsedNanos));
+        }
+        summary.put("endpoints", endpoints);
+        return summary;
+    }
+
+    private static final class Series {
+        private final long[] outcomes = new long[Outcome.values().length];
+        private long[] latencies = new long[1024];
+        private int okCount;
+        private long requests;
+
+        void add(Outcome outcome, long latencyNanos) {
+            requests++;
+            outcomes[outcome.ordinal()]++;
+            if (outcome == Outcome.OK) {
+                if (okCount == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                }
+                latencies[okCount++] = latencyNanos;
+            }
+        }
+
+        Map<String, Object> summary(long elapsedNanos) {
+            long[] sorted = Arrays.copyOf(latencies, okCount);
+            Arrays.sort(sorted);
+            double seconds = Math.max(1e-9, elapsedNanos / 1e9);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", requests);
+            summary.put("throughput", round(okCount / seconds));
+            summary.put("offered", round((requests - outcomes[Outcome.DROPPED.ordinal()]) / seconds));
+            for (Outcome outcome : Outcome.values()) {
+                summary.put(outcome.name().toLowerCase(Locale.ROOT), outcomes[outcome.ordinal()]);
+            }
+            long failed = requests - okCount - outcomes[Outcome.CANCELLED.ordinal()];
+            summary.put("errorRate", requests == 0 ? 0.0 : round((double) failed / requests));
+            summary.put("meanMs", okCount == 0 ? null : round(mean(sorted) / 1e6));
+            summary.put("p50Ms", percentileMillis(sorted, 0.50));
+            summary.put("p90Ms", percentileMillis(sorted, 0.90));
+            summary.put("p99Ms", percentileMillis(sorted, 0.99));
+            summary.put("p999Ms", percentileMillis(sorted, 0.999));
+            summary.put("maxMs", okCount == 0 ? null : round(sorted[okCount - 1] / 1e6));
+            return summary;
+        }
+
+        private static double mean(long[] sorted) {
+            double sum = 0;
+            for (long value : sorted) {
+                sum += value;
+            }
+            return sum / sorted.length;
+        }
+
+        // Nearest-rank percentile
+        private static Double percentileMillis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return null;
+            }
+            int rank = (int) Math.ceil(percentile * sorted.length);
+            return round(sorted[Math.max(0, rank - 1)] / 1e6);
+        }
+    }
+
+    static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.plantuml.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Shape of one request, as written by the server's request recorder (plantuml.recording.*)
+ * or generated by a synthetic profile. Sources are identified by hash only; SourceSynthesizer
+ * turns the shape back into PlantUML text.
+ */
+public final class TrafficRecord {
+
+    private final long offsetMillis;
+    private final String endpoint;
+    private final String format;
+    private final String priority;
+    private final String client;
+    private final String source;
+    private final int chars;
+    private final int lines;
+    private final int blocks;
+    private final String type;
+    private final String kind;
+    private final int delta;
+    private final int items;
+
+    public TrafficRecord(long offsetMillis, String endpoint, String format, String priority, String client,
+                         String source, int chars, int lines, int blocks, String type, String kind,
+                         int delta, int items) {
+        this.offsetMillis = offsetMillis;
+        this.endpoint = endpoint;
+        this.format = format;
+        this.priority = priority;
+        this.client = client;
+        this.source = source;
+        this.chars = chars;
+        this.lines = lines;
+        this.blocks = blocks;
+        this.type = type;
+        this.kind = kind;
+        this.delta = delta;
+        this.items = items;
+    }
+
+    /**
+     * Parse one NDJSON line of a recording
+     */
+    public static TrafficRecord parse(JsonNode line) {
+        return new TrafficRecord(
+            line.path("t").asLong(),
+            line.path("endpoint").asText("svg"),
+            line.path("format").asText("svg"),
+            line.path("priority").asText("interactive"),
+            line.hasNonNull("client") ? line.path("client").asText() : null,
+            line.hasNonNull("source") ? line.path("source").asText() : null,
+            line.path("chars").asInt(),
+            Math.max(1, line.path("lines").asInt(1)),
+            Math.max(1, line.path("blocks").asInt(1)),
+            line.path("type").asText("uml"),
+            line.path("kind").asText("other"),
+            line.path("delta").asInt(-1),
+            Math.max(1, line.path("items").asInt(1)));
+    }
+
+    /**
+     * Same request shape on another pass over a recording: other clients, other sources,
+     * with repeats and edit sequences inside the pass unchanged
+     */
+    public TrafficRecord withLap(int lap) {
+        String suffix = "#" + lap;
+        return new TrafficRecord(offsetMillis, endpoint, format, priority,
+                                 client != null ? client + suffix : null, source != null ? source + suffix : null,
+                                 chars, lines, blocks, type, kind, delta, items);
+    }
+
+    // Milliseconds since the recording started
+    public long getOffsetMillis() { return offsetMillis; }
+    // svg, svg-raw, svg-async, svg-multi, png, get-svg, get-png, batch, jobs, validate, live, health
+    public String getEndpoint() { return endpoint; }
+    public String getFormat() { return format; }
+    public String getPriority() { return priority; }
+    // Client hash, null for anonymous requests
+    public String getClient() { return client; }
+    // Source hash; equal hashes are sent as identical text, null for batches
+    public String getSource() { return source; }
+    public int getChars() { return chars; }
+    public int getLines() { return lines; }
+    public int getBlocks() { return blocks; }
+    public String getType() { return type; }
+    public String getKind() { return kind; }
+    // Characters changed since the client's previous source, -1 if unknown
+    public int getDelta() { return delta; }
+    public int getItems() { return items; }
+}
@@ -0,0 +1,28 @@
+package com.plantuml.loadtest;
+
+/**
+ * Source of request shapes for a load test run
+ */
+public interface Workload {
+
+    /**
+     * Next request to send; called from the arrival thread only
+     */
+    TrafficRecord next();
+
+    /**
+     * Milliseconds between the previous request and the one last returned by next() in the original
+     * traffic, or -1 when the workload has no timing of its own (synthetic profiles)
+     */
+    long recordedGapMillis();
+
+    /**
+     * Average request rate of the original traffic per second, 0 when unknown
+     */
+    double recordedRate();
+
+    /**
+     * One-line description for the report
+     */
+    String describe();
+}
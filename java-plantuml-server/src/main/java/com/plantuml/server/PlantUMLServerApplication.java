@@ -1,5 +1,6 @@
 package com.plantuml.server;
 
+import com.plantuml.server.controller.PlantUMLController;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -40,6 +41,13 @@ public class PlantUMLServerApplication {
                         )
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD")
                         .allowedHeaders("*")
+                        .exposedHeaders(
+                            PlantUMLController.HEADER_RENDER_TIME,
+                            PlantUMLController.HEADER_CACHE,
+                            PlantUMLController.HEADER_ERROR,
+                            "Retry-After",
+                            "ETag"
+                        )
                         .allowCredentials(true)
                         .maxAge(3600);
             }
@@ -0,0 +1,340 @@
+package com.plantuml.server.cluster;
+
+import com.plantuml.server.service.RenderPriority;
+import com.plantuml.server.service.RenderResult;
+import net.sourceforge.plantuml.FileFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster mode: render sharding over statically configured peers (plantuml.cluster.*)
+ * Every cache key has one owner on a consistent hash ring. Misses for keys owned by a peer are
+ * fetched from that peer, which serves them from its caches or renders them once for the whole
+ * cluster; the result is then cached locally as well. A peer that refuses the connection is skipped
+ * for a cool-down period, and any failed, slow or refused fetch falls back to a local render.
+ * Peers must share the render fingerprint, otherwise they answer 409 and this node renders itself.
+ */
+@Component
+public class ClusterRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRouter.class);
+
+    public static final String RENDER_PATH = "/internal/cluster/render";
+    public static final String HEADER_TOKEN = "X-Cluster-Token";
+    public static final String HEADER_FINGERPRINT = "X-PlantUML-Fingerprint";
+    public static final String HEADER_DIAGRAM_TYPE = "X-PlantUML-Diagram-Type";
+    public static final String HEADER_DESCRIPTION = "X-PlantUML-Description";
+
+    // Same names as the public raw endpoints
+    private static final String HEADER_RENDER_TIME = "X-PlantUML-Render-Time";
+    private static final String HEADER_CACHE = "X-PlantUML-Cache";
+    private static final String HEADER_PRIORITY = "X-Render-Priority";
+
+    @Value("${plantuml.cluster.enabled:false}")
+    private boolean enabled;
+
+    // Base URL other nodes reach this node at, as listed in plantuml.cluster.peers
+    @Value("${plantuml.cluster.self:http://localhost:8090}")
+    private String self;
+
+    @Value("${plantuml.cluster.peers:}")
+    private String peers;
+
+    @Value("${plantuml.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    // Fetches slower than this fall back to a local render
+    @Value("${plantuml.cluster.timeout-ms:2000}")
+    private long timeoutMillis;
+
+    @Value("${plantuml.cluster.connect-timeout-ms:500}")
+    private long connectTimeoutMillis;
+
+    // Unreachable peers are skipped for this long
+    @Value("${plantuml.cluster.down-cooldown-ms:10000}")
+    private long downCooldownMillis;
+
+    // Shared secret for the internal endpoint; empty disables the check
+    @Value("${plantuml.cluster.secret:}")
+    private String secret;
+
+    private volatile ConsistentHashRing ring;
+    private volatile HttpClient client;
+    private volatile String fingerprint = "unknown";
+    private final Map<String, Long> downUntil = new ConcurrentHashMap<>();
+
+    private final AtomicLong ownedLocally = new AtomicLong();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong remoteHits = new AtomicLong();
+    private final AtomicLong remoteRenders = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong fingerprintMismatches = new AtomicLong();
+
+    /**
+     * Build the ring; called once the render fingerprint is known
+     */
+    public void start(String fingerprint) {
+        this.fingerprint = fingerprint;
+        if (!enabled) {
+            return;
+        }
+        self = normalize(self);
+        Set<String> nodes = new LinkedHashSet<>();
+        nodes.add(self);
+        for (String peer : peers.split(",")) {
+            if (!peer.isBlank()) {
+                nodes.add(normalize(peer));
+            }
+        }
+        ring = new ConsistentHashRing(nodes, virtualNodes);
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+            .build();
+        logger.info("Cluster mode: {} as one of {} nodes {}", self, nodes.size(), nodes);
+    }
+
+    private static String normalize(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    public boolean isEnabled() {
+        return enabled && ring != null;
+    }
+
+    /**
+     * Peer to fetch a cache miss from
+     * @return owning peer's base URL, or null to render locally (owned here, owner down, or not clustered)
+     */
+    public String remoteOwner(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String owner = ring.owner(key);
+        if (owner.equals(self)) {
+            ownedLocally.incrementAndGet();
+            return null;
+        }
+        Long until = downUntil.get(owner);
+        if (until != null) {
+            if (System.currentTimeMillis() < until) {
+                fallbacks.incrementAndGet();
+                return null;
+            }
+            downUntil.remove(owner, until);
+        }
+        return owner;
+    }
+
+    /**
+     * Fetch a render from its owner, blocking up to the cluster timeout
+     * @return the peer's render, or null to render locally
+     */
+    public RenderResult fetch(String owner, String source, FileFormat format, RenderPriority priority) {
+        forwarded.incrementAndGet();
+        try {
+            return toResult(owner, format, client.send(request(owner, source, format, priority),
+                                                      HttpResponse.BodyHandlers.ofByteArray()), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return toResult(owner, format, null, e);
+        } catch (IOException e) {
+            return toResult(owner, format, null, e);
+        }
+    }
+
+    /**
+     * Fetch a render from its owner without holding a thread while the peer works
+     * @return future completing with the peer's render, or with null to render locally; never fails
+     */
+    public CompletableFuture<RenderResult> fetchAsync(String owner, String source, FileFormat format,
+                                                      RenderPriority priority) {
+        forwarded.incrementAndGet();
+        return client.sendAsync(request(owner, source, format, priority), HttpResponse.BodyHandlers.ofByteArray())
+            .handle((response, failure) -> toResult(owner, format, response, failure));
+    }
+
+    private HttpRequest request(String owner, String source, FileFormat format, RenderPriority priority) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(owner + RENDER_PATH + "?format=" + format.name()))
+            .timeout(Duration.ofMillis(timeoutMillis))
+            .header("Content-Type", "text/plain; charset=UTF-8")
+            .header(HEADER_FINGERPRINT, headerValue(fingerprint))
+            .header(HEADER_PRIORITY, priority.label())
+            .POST(HttpRequest.BodyPublishers.ofString(source, StandardCharsets.UTF_8));
+        if (!secret.isEmpty()) {
+            request.header(HEADER_TOKEN, secret);
+        }
+        return request.build();
+    }
+
+    private RenderResult toResult(String owner, FileFormat format, HttpResponse<byte[]> response, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+            fallbacks.incrementAndGet();
+            if (cause instanceof HttpTimeoutException) {
+                // Slow render or busy peer: render this one locally but keep using the peer
+                logger.debug("Peer {} too slow, rendering locally", owner);
+            } else {
+                downUntil.put(owner, System.currentTimeMillis() + downCooldownMillis);
+                logger.warn("Peer {} unreachable, rendering locally for {}ms: {}", owner, downCooldownMillis,
+                            cause.toString());
+            }
+            return null;
+        }
+
+        int status = response.statusCode();
+        if (status != 200) {
+            fallbacks.incrementAndGet();
+            if (status == 409) {
+                fingerprintMismatches.incrementAndGet();
+                logger.warn("Peer {} renders with a different fingerprint, rendering locally", owner);
+            } else {
+                logger.debug("Peer {} answered {}, rendering locally", owner, status);
+            }
+            return null;
+        }
+
+        boolean hit = "HIT".equals(response.headers().firstValue(HEADER_CACHE).orElse(""));
+        (hit ? remoteHits : remoteRenders).incrementAndGet();
+        long renderMillis = parseMillis(response.headers().firstValue(HEADER_RENDER_TIME).orElse("0ms"));
+        String description = URLDecoder.decode(response.headers().firstValue(HEADER_DESCRIPTION).orElse(""),
+                                               StandardCharsets.UTF_8);
+        String diagramType = response.headers().firstValue(HEADER_DIAGRAM_TYPE).orElse("unknown");
+        return new RenderResult(response.body(), format.name(), description, diagramType, renderMillis);
+    }
+
+    private static long parseMillis(String value) {
+        try {
+            return Long.parseLong(value.replace("ms", "").trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Header-safe description of a render for the peer response
+     */
+    public static String encodeDescription(String description) {
+        String text = description == null ? "" : description;
+        return URLEncoder.encode(text.length() > 512 ? text.substring(0, 512) : text, StandardCharsets.UTF_8);
+    }
+
+    private static String headerValue(String value) {
+        return value.replaceAll("[^\\x20-\\x7E]", " ");
+    }
+
+    /**
+     * Whether a peer request carries the cluster secret
+     */
+    public boolean isTrustedPeer(String token) {
+        return secret.isEmpty()
+            || (token != null && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                                                       token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Whether a peer renders with the same PlantUML/Graphviz/output setup as this node
+     */
+    public boolean isSameFingerprint(String peerFingerprint) {
+        return headerValue(fingerprint).equals(peerFingerprint);
+    }
+
+    public void recordServed() {
+        served.incrementAndGet();
+    }
+
+    public void recordFingerprintMismatch() {
+        fingerprintMismatches.incrementAndGet();
+    }
+
+    public long getRemoteHitCount() { return remoteHits.get(); }
+    public long getRemoteRenderCount() { return remoteRenders.get(); }
+    public long getFallbackCount() { return fallbacks.get(); }
+    public long getServedCount() { return served.get(); }
+
+    public ClusterStats getStats() {
+        List<String> down = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        downUntil.forEach((peer, until) -> {
+            if (until > now) {
+                down.add(peer);
+            }
+        });
+        ConsistentHashRing current = ring;
+        return new ClusterStats(isEnabled(), self, current != null ? current.getNodes() : List.of(), down,
+                                ownedLocally.get(), forwarded.get(), remoteHits.get(), remoteRenders.get(),
+                                fallbacks.get(), served.get(), fingerprintMismatches.get());
+    }
+
+    /**
+     * Cluster routing statistics
+     */
+    public static class ClusterStats {
+        private final boolean enabled;
+        private final String self;
+        private final List<String> nodes;
+        private final List<String> downPeers;
+        private final long ownedLocally;
+        private final long forwarded;
+        private final long remoteHits;
+        private final long remoteRenders;
+        private final long fallbacks;
+        private final long served;
+        private final long fingerprintMismatches;
+
+        public ClusterStats(boolean enabled, String self, List<String> nodes, List<String> downPeers,
+                            long ownedLocally, long forwarded, long remoteHits, long remoteRenders,
+                            long fallbacks, long served, long fingerprintMismatches) {
+            this.enabled = enabled;
+            this.self = self;
+            this.nodes = nodes;
+            this.downPeers = downPeers;
+            this.ownedLocally = ownedLocally;
+            this.forwarded = forwarded;
+            this.remoteHits = remoteHits;
+            this.remoteRenders = remoteRenders;
+            this.fallbacks = fallbacks;
+            this.served = served;
+            this.fingerprintMismatches = fingerprintMismatches;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public String getSelf() { return self; }
+        public List<String> getNodes() { return nodes; }
+        public List<String> getDownPeers() { return downPeers; }
+        public long getOwnedLocally() { return ownedLocally; }
+        public long getForwarded() { return forwarded; }
+        public long getRemoteHits() { return remoteHits; }
+        public long getRemoteRenders() { return remoteRenders; }
+        public long getFallbacks() { return fallbacks; }
+        public long getServed() { return served; }
+        public long getFingerprintMismatches() { return fingerprintMismatches; }
+    }
+}
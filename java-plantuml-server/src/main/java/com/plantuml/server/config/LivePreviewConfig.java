@@ -0,0 +1,50 @@
+package com.plantuml.server.config;
+
+import com.plantuml.server.live.LivePreviewHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+/**
+ * Live preview WebSocket endpoint (plantuml.live.enabled, on by default)
+ * Same origins as the REST API; a full-source message must fit the container's text buffer,
+ * so it is sized from plantuml.live.max-source-chars instead of the 8 KB default.
+ */
+@Configuration
+@EnableWebSocket
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "plantuml.live.enabled", havingValue = "true", matchIfMissing = true)
+public class LivePreviewConfig implements WebSocketConfigurer {
+
+    public static final String LIVE_PREVIEW_PATH = "/api/plantuml/live";
+
+    @Autowired
+    private LivePreviewHandler livePreviewHandler;
+
+    @Value("${plantuml.live.max-source-chars:1000000}")
+    private int maxSourceChars;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(livePreviewHandler, LIVE_PREVIEW_PATH)
+                .setAllowedOriginPatterns(
+                    "http://localhost:*",
+                    "http://127.0.0.1:*"
+                );
+    }
+
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        // JSON escaping can double the source length
+        container.setMaxTextMessageBufferSize(maxSourceChars * 2 + 4096);
+        return container;
+    }
+}
@@ -0,0 +1,77 @@
+package com.plantuml.server.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual-thread request handling (plantuml.execution.mode=virtual, requires JDK 21+)
+ * Tomcat request processing and Spring MVC async work (streaming bodies) run on virtual threads,
+ * so clients waiting for a render or reading a slow response hold no platform thread.
+ * Rendering itself stays on the core-sized RenderScheduler pool, keeping CPU-bound layout bounded.
+ * On older JDKs the setting is ignored with a warning and the Tomcat thread pool is used.
+ */
+@Configuration
+@ConditionalOnProperty(name = "plantuml.execution.mode", havingValue = "virtual")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    // null when the running JDK has no virtual threads
+    private final ExecutorService executor = createVirtualThreadExecutor();
+
+    /**
+     * Create a virtual-thread-per-task executor via reflection, keeping the build on Java 11
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+            logger.info("Execution mode: virtual threads (Java {})", Runtime.version().feature());
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            logger.warn("plantuml.execution.mode=virtual needs Java 21+, running on Java {} - using platform threads",
+                        Runtime.version().feature());
+            return null;
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                if (executor != null) {
+                    configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+                }
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
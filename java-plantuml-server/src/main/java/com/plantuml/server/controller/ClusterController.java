@@ -0,0 +1,84 @@
+package com.plantuml.server.controller;
+
+import com.plantuml.server.cluster.ClusterRouter;
+import com.plantuml.server.service.PlantUMLService;
+import com.plantuml.server.service.RenderOptions;
+import com.plantuml.server.service.RenderPriority;
+import com.plantuml.server.service.RenderRejectedException;
+import com.plantuml.server.service.RenderResult;
+import com.plantuml.server.service.RenderTimeoutException;
+import net.sourceforge.plantuml.FileFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Internal render endpoint for cluster peers
+ * Renders keys this node owns on behalf of other nodes, through the local caches and never forwarded.
+ * Not part of the public API: nginx only proxies /api/, and plantuml.cluster.secret guards direct access.
+ */
+@RestController
+public class ClusterController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterController.class);
+
+    @Autowired
+    private PlantUMLService plantUMLService;
+
+    @Autowired
+    private ClusterRouter clusterRouter;
+
+    @PostMapping(value = ClusterRouter.RENDER_PATH, consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<byte[]> renderForPeer(
+            @RequestBody String source,
+            @RequestParam String format,
+            @RequestHeader(value = ClusterRouter.HEADER_TOKEN, required = false) String token,
+            @RequestHeader(value = ClusterRouter.HEADER_FINGERPRINT, required = false) String fingerprint,
+            @RequestHeader(value = PlantUMLController.HEADER_PRIORITY, required = false) String priority) {
+        if (!clusterRouter.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!clusterRouter.isTrustedPeer(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!clusterRouter.isSameFingerprint(fingerprint)) {
+            // The caller would cache our output under a key for different output
+            clusterRouter.recordFingerprintMismatch();
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        FileFormat fileFormat = "PNG".equalsIgnoreCase(format) ? FileFormat.PNG : FileFormat.SVG;
+        try {
+            RenderResult result = plantUMLService.renderForPeer(source, fileFormat,
+                    RenderOptions.of(RenderPriority.parse(priority, RenderPriority.EXPORT)));
+            clusterRouter.recordServed();
+            return ResponseEntity.ok()
+                    .contentType(fileFormat == FileFormat.PNG ? MediaType.IMAGE_PNG
+                                                              : MediaType.valueOf(PlantUMLController.IMAGE_SVG_VALUE))
+                    .header(PlantUMLController.HEADER_RENDER_TIME, result.getRenderMillis() + "ms")
+                    .header(PlantUMLController.HEADER_CACHE, result.isCached() ? "HIT" : "MISS")
+                    .header(ClusterRouter.HEADER_DIAGRAM_TYPE, result.getDiagramType())
+                    .header(ClusterRouter.HEADER_DESCRIPTION, ClusterRouter.encodeDescription(result.getDescription()))
+                    .body(result.getData());
+        } catch (RenderRejectedException e) {
+            // The caller renders locally instead of queueing here
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        } catch (RenderTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+        } catch (Exception e) {
+            logger.warn("Render for peer failed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -1,19 +1,59 @@
 package com.plantuml.server.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plantuml.server.cluster.ClusterRouter;
+import com.plantuml.server.job.ExportJob;
+import com.plantuml.server.job.ExportJobManager;
+import com.plantuml.server.live.LivePreviewHandler;
+import com.plantuml.server.recording.RequestRecorder;
+import com.plantuml.server.service.BatchRenderer;
+import com.plantuml.server.service.DiskRenderCache;
+import com.plantuml.server.service.GraphvizLayoutEngine;
+import com.plantuml.server.service.OutputOptimizer;
 import com.plantuml.server.service.PlantUMLService;
+import com.plantuml.server.service.RenderCache;
+import com.plantuml.server.service.RenderCancelledException;
+import com.plantuml.server.service.RenderHealthMonitor;
+import com.plantuml.server.service.RenderOptions;
+import com.plantuml.server.service.RenderMemoryBudget;
+import com.plantuml.server.service.RenderPriority;
+import com.plantuml.server.service.RenderRejectedException;
+import com.plantuml.server.service.RenderResult;
+import com.plantuml.server.service.RenderScheduler;
+import com.plantuml.server.service.RenderSupersededException;
+import com.plantuml.server.service.RenderTimeoutException;
+import com.plantuml.server.service.RenderTooLargeException;
+import com.plantuml.server.service.RenderWarmup;
+import com.plantuml.server.service.ValidationResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import net.sourceforge.plantuml.FileFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
 
 /**
  * PlantUML REST API Controller
@@ -25,22 +65,83 @@ public class PlantUMLController {
 
     private static final Logger logger = LoggerFactory.getLogger(PlantUMLController.class);
 
+    static final String IMAGE_SVG_VALUE = "image/svg+xml";
+
+    // Render metadata headers for raw responses
+    public static final String HEADER_RENDER_TIME = "X-PlantUML-Render-Time";
+    public static final String HEADER_CACHE = "X-PlantUML-Cache";
+    public static final String HEADER_ERROR = "X-PlantUML-Error";
+
+    // Request class (interactive, export, bulk) and client identity for superseding stale previews
+    public static final String HEADER_PRIORITY = "X-Render-Priority";
+    public static final String HEADER_CLIENT_ID = "X-Client-Id";
+    // Client-chosen token for DELETE /render/{token}
+    public static final String HEADER_CANCEL_TOKEN = "X-Render-Token";
+
+    // Rendered output never changes for a given encoded source
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
     @Autowired
     private PlantUMLService plantUMLService;
 
+    @Autowired
+    private BatchRenderer batchRenderer;
+
+    @Autowired
+    private RenderWarmup renderWarmup;
+
+    @Autowired
+    private RenderHealthMonitor healthMonitor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OutputOptimizer outputOptimizer;
+
+    @Autowired
+    private ClusterRouter clusterRouter;
+
+    @Autowired
+    private ExportJobManager jobManager;
+
+    @Autowired
+    private RenderMemoryBudget memoryBudget;
+
+    @Autowired
+    private RequestRecorder requestRecorder;
+
+    // Absent when plantuml.live.enabled=false
+    @Autowired(required = false)
+    private LivePreviewHandler livePreviewHandler;
+
     /**
      * Generate SVG diagram from PlantUML text
+     * Returns JSON by default; Accept: image/svg+xml without application/json selects the raw SVG response
      */
     @PostMapping(value = "/svg", 
                  consumes = MediaType.APPLICATION_JSON_VALUE,
-                 produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Map<String, Object>> generateSVG(@Valid @RequestBody PlantUMLRequest request) {
+                 produces = {MediaType.APPLICATION_JSON_VALUE, IMAGE_SVG_VALUE})
+    public ResponseEntity<?> generateSVG(@Valid @RequestBody PlantUMLRequest request,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                         @RequestHeader(value = HEADER_PRIORITY, required = false) String priority,
+                                         @RequestHeader(value = HEADER_CLIENT_ID, required = false) String clientId,
+                                         @RequestHeader(value = HEADER_CANCEL_TOKEN, required = false) String cancelToken,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (accept != null && accept.contains(IMAGE_SVG_VALUE) && !accept.contains(MediaType.APPLICATION_JSON_VALUE)) {
+            return generateSVGRaw(request, priority, clientId, cancelToken, acceptEncoding);
+        }
+
         long startTime = System.currentTimeMillis();
+        requestRecorder.record("svg", request.plantumlText, "svg",
+                               RenderPriority.parse(priority, RenderPriority.INTERACTIVE).label(), clientId);
         
         try {
             logger.info("Generating SVG diagram, text length: {}", request.plantumlText.length());
             
-            String svgContent = plantUMLService.generateSVG(request.plantumlText);
+            String svgContent = plantUMLService.render(request.plantumlText, FileFormat.SVG,
+                    interactiveOptions(priority, clientId, cancelToken)).asText();
             long duration = System.currentTimeMillis() - startTime;
             
             Map<String, Object> response = new HashMap<>();
@@ -54,14 +155,34 @@ public class PlantUMLController {
             return ResponseEntity.ok(response);
             
         } catch (Exception e) {
-            logger.error("Failed to generate SVG", e);
+            return renderFailure(e, "java-plantuml-library");
+        }
+    }
+
+    /**
+     * Generate raw SVG diagram from PlantUML text
+     * The SVG bytes are written straight to the response and render metadata goes into X-PlantUML-* headers
+     */
+    @PostMapping(value = "/svg/raw",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = IMAGE_SVG_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateSVGRaw(
+            @Valid @RequestBody PlantUMLRequest request,
+            @RequestHeader(value = HEADER_PRIORITY, required = false) String priority,
+            @RequestHeader(value = HEADER_CLIENT_ID, required = false) String clientId,
+            @RequestHeader(value = HEADER_CANCEL_TOKEN, required = false) String cancelToken,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        requestRecorder.record("svg-raw", request.plantumlText, "svg",
+                               RenderPriority.parse(priority, RenderPriority.INTERACTIVE).label(), clientId);
+        try {
+            logger.info("Generating raw SVG diagram, text length: {}", request.plantumlText.length());
             
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", "Failed to generate diagram: " + e.getMessage());
-            errorResponse.put("method", "java-plantuml-library");
-            errorResponse.put("timestamp", System.currentTimeMillis());
+            RenderResult result = plantUMLService.render(request.plantumlText, FileFormat.SVG,
+                    interactiveOptions(priority, clientId, cancelToken));
+            return rawResponse(result, MediaType.valueOf(IMAGE_SVG_VALUE), acceptEncoding);
             
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        } catch (Exception e) {
+            return rawFailure(e, "SVG");
         }
     }
 
@@ -71,83 +192,640 @@ public class PlantUMLController {
     @PostMapping(value = "/png",
                  consumes = MediaType.APPLICATION_JSON_VALUE,
                  produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<byte[]> generatePNG(@Valid @RequestBody PlantUMLRequest request) {
+    public ResponseEntity<StreamingResponseBody> generatePNG(
+            @Valid @RequestBody PlantUMLRequest request,
+            @RequestHeader(value = HEADER_PRIORITY, required = false) String priority) {
+        RenderOptions options = RenderOptions.of(RenderPriority.parse(priority, RenderPriority.EXPORT));
+        requestRecorder.record("png", request.plantumlText, "png", options.getPriority().label(), null);
         try {
             logger.info("Generating PNG diagram, text length: {}", request.plantumlText.length());
             
-            byte[] pngContent = plantUMLService.generatePNG(request.plantumlText);
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_PNG)
-                    .contentLength(pngContent.length)
-                    .body(pngContent);
+            PlantUMLService.RenderStream stream = plantUMLService.openPngStream(request.plantumlText, options);
+            if (stream != null) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.IMAGE_PNG)
+                        .header(HEADER_CACHE, "MISS")
+                        .body(stream::writeTo);
+            }
+            RenderResult result = plantUMLService.render(request.plantumlText, FileFormat.PNG, options);
+            return rawResponse(result, MediaType.IMAGE_PNG, null);
                     
         } catch (Exception e) {
-            logger.error("Failed to generate PNG", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return rawFailure(e, "PNG");
+        }
+    }
+
+    /**
+     * Render a diagram from PlantUML's URL text encoding
+     * Output is immutable for a given source, so responses carry a strong content-hash ETag
+     * and a long-lived Cache-Control; matching If-None-Match returns 304 without rendering
+     */
+    @GetMapping("/{format:svg|png}/{encoded:.+}")
+    public ResponseEntity<StreamingResponseBody> renderEncoded(
+            @PathVariable String format,
+            @PathVariable String encoded,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HEADER_PRIORITY, required = false) String priority,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        FileFormat fileFormat = parseFormat(format);
+
+        String source;
+        try {
+            source = plantUMLService.decodeSource(encoded);
+        } catch (IOException e) {
+            logger.debug("Rejected encoded diagram: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .header(HEADER_ERROR, headerSafe(e.getMessage()))
+                    .build();
+        }
+        requestRecorder.record("get-" + format, source, format,
+                               RenderPriority.parse(priority, RenderPriority.EXPORT).label(), null);
+
+        String cacheKey = plantUMLService.cacheKey(source, fileFormat);
+        String etag = "\"" + cacheKey + "\"";
+        // The gzip variant is a different representation and gets its own validator
+        String gzipEtag = "\"" + cacheKey + GZIP_ETAG_SUFFIX + "\"";
+        if (etagMatches(ifNoneMatch, etag) || etagMatches(ifNoneMatch, gzipEtag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etagMatches(ifNoneMatch, etag) ? etag : gzipEtag)
+                    .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL)
+                    .build();
+        }
+
+        MediaType contentType = fileFormat == FileFormat.PNG ? MediaType.IMAGE_PNG : MediaType.valueOf(IMAGE_SVG_VALUE);
+
+        // Disk cache hit: stream straight from the segment file
+        DiskRenderCache.Entry stored = plantUMLService.openStored(source, fileFormat);
+        if (stored != null) {
+            return ResponseEntity.ok()
+                    .contentType(contentType)
+                    .contentLength(stored.getSize())
+                    .eTag(etag)
+                    .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL)
+                    .header(HEADER_RENDER_TIME, stored.getRenderMillis() + "ms")
+                    .header(HEADER_CACHE, "HIT")
+                    .body(stored::transferTo);
+        }
+
+        try {
+            RenderOptions options = RenderOptions.of(RenderPriority.parse(priority, RenderPriority.EXPORT));
+            PlantUMLService.RenderStream stream = fileFormat == FileFormat.PNG
+                    ? plantUMLService.openPngStream(source, options) : null;
+            if (stream != null) {
+                // Large PNG: encoded straight to the response, length unknown up front
+                return ResponseEntity.ok()
+                        .contentType(contentType)
+                        .eTag(etag)
+                        .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL)
+                        .header(HEADER_CACHE, "MISS")
+                        .body(stream::writeTo);
+            }
+            RenderResult result = plantUMLService.render(source, fileFormat, options);
+            boolean gzip = result.hasGzip() && acceptsGzip(acceptEncoding);
+            return encodedBody(ResponseEntity.ok()
+                    .contentType(contentType)
+                    .eTag(gzip ? gzipEtag : etag)
+                    .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL)
+                    .header(HEADER_RENDER_TIME, result.getRenderMillis() + "ms")
+                    .header(HEADER_CACHE, result.isCached() ? "HIT" : "MISS"), result, gzip);
+        } catch (Exception e) {
+            return rawFailure(e, fileFormat.name());
+        }
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stream rendered bytes with render metadata in headers
+     * Uses the precomputed gzip encoding when the result has one and the client accepts it
+     */
+    private ResponseEntity<StreamingResponseBody> rawResponse(RenderResult result, MediaType contentType,
+                                                              String acceptEncoding) {
+        return encodedBody(ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HEADER_RENDER_TIME, result.getRenderMillis() + "ms")
+                .header(HEADER_CACHE, result.isCached() ? "HIT" : "MISS"),
+                result, result.hasGzip() && acceptsGzip(acceptEncoding));
+    }
+
+    /**
+     * Body and length headers for a result, plain or from its gzip encoding
+     * Results with a gzip encoding vary by Accept-Encoding; server.compression skips responses
+     * that already carry a Content-Encoding
+     */
+    private ResponseEntity<StreamingResponseBody> encodedBody(ResponseEntity.BodyBuilder response,
+                                                              RenderResult result, boolean gzip) {
+        if (result.hasGzip()) {
+            response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (!gzip) {
+            return response
+                    .contentLength(result.getSize())
+                    .body(outputStream -> outputStream.write(result.getData()));
+        }
+        outputOptimizer.recordGzipServed();
+        byte[] gzipData = result.getGzipData();
+        return response
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .contentLength(gzipData.length)
+                .body(outputStream -> outputStream.write(gzipData));
+    }
+
+    /**
+     * Whether Accept-Encoding lists gzip (or *) without q=0
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().replace(" ", "");
+                if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                    refused = true;
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Error response for raw endpoints: status code plus the message in a header
+     */
+    private static ResponseEntity<StreamingResponseBody> rawFailure(Exception e, String format) {
+        ResponseEntity.BodyBuilder response;
+        if (e instanceof RenderRejectedException) {
+            logger.warn("{} rejected: {}", format, e.getMessage());
+            response = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER,
+                            String.valueOf(((RenderRejectedException) e).getRetryAfterSeconds()));
+        } else if (e instanceof RenderTimeoutException) {
+            logger.warn("{} render timed out: {}", format, e.getMessage());
+            response = ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT);
+        } else if (e instanceof RenderTooLargeException) {
+            logger.warn("{} refused: {}", format, e.getMessage());
+            response = ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE);
+        } else if (e instanceof RenderCancelledException) {
+            logger.debug("{} render cancelled: {}", format, e.getMessage());
+            response = ResponseEntity.status(HttpStatus.CONFLICT);
+        } else {
+            logger.error("Failed to generate {}", format, e);
+            response = ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return response
+                .header(HEADER_ERROR, headerSafe(e.getMessage()))
+                .build();
+    }
+
+    private static String headerSafe(String message) {
+        if (message == null) {
+            return "unknown error";
         }
+        return message.replaceAll("[^\\x20-\\x7E]", " ");
     }
 
     /**
      * Generate SVG diagram asynchronously
+     * The request thread is released while rendering; if the client disconnects or the async
+     * request times out, the render is cancelled
      */
     @PostMapping(value = "/svg/async",
                  consumes = MediaType.APPLICATION_JSON_VALUE,
                  produces = MediaType.APPLICATION_JSON_VALUE)
-    public CompletableFuture<ResponseEntity<Map<String, Object>>> generateSVGAsync(@Valid @RequestBody PlantUMLRequest request) {
-        return plantUMLService.generateSVGAsync(request.plantumlText)
-                .thenApply(svgContent -> {
+    public DeferredResult<ResponseEntity<Map<String, Object>>> generateSVGAsync(
+            @Valid @RequestBody PlantUMLRequest request,
+            @RequestHeader(value = HEADER_PRIORITY, required = false) String priority,
+            @RequestHeader(value = HEADER_CANCEL_TOKEN, required = false) String cancelToken) {
+        // Disconnect handling needs a token even when the client sends none
+        String token = cancelToken != null ? cancelToken : UUID.randomUUID().toString();
+        requestRecorder.record("svg-async", request.plantumlText, "svg",
+                               RenderPriority.parse(priority, RenderPriority.INTERACTIVE).label(), null);
+        DeferredResult<ResponseEntity<Map<String, Object>>> deferred = new DeferredResult<>();
+        deferred.onError(error -> plantUMLService.cancel(token));
+        deferred.onTimeout(() -> plantUMLService.cancel(token));
+
+        plantUMLService.renderAsync(request.plantumlText, FileFormat.SVG,
+                                    new RenderOptions(RenderPriority.parse(priority, RenderPriority.INTERACTIVE), null, token))
+                .thenApply(result -> {
                     Map<String, Object> response = new HashMap<>();
-                    response.put("svg", svgContent);
+                    response.put("svg", result.asText());
                     response.put("method", "java-plantuml-library-async");
                     response.put("license", "MIT - Commercial Safe");
                     response.put("timestamp", System.currentTimeMillis());
                     
                     return ResponseEntity.ok(response);
                 })
-                .exceptionally(throwable -> {
-                    logger.error("Async SVG generation failed", throwable);
-                    
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("error", "Async generation failed: " + throwable.getMessage());
-                    errorResponse.put("method", "java-plantuml-library-async");
-                    
-                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
-                });
+                .exceptionally(throwable -> renderFailure(RenderScheduler.unwrap(throwable), "java-plantuml-library-async"))
+                .thenAccept(deferred::setResult);
+        return deferred;
     }
 
     /**
-     * Validate PlantUML syntax
+     * Cancel a queued or running render started with an X-Render-Token header
      */
-    @PostMapping(value = "/validate",
+    @DeleteMapping("/render/{token}")
+    public ResponseEntity<Void> cancelRender(@PathVariable String token) {
+        boolean cancelled = plantUMLService.cancel(token);
+        logger.debug("Cancel render {}: {}", token, cancelled ? "cancelled" : "not found");
+        return cancelled ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    private static RenderOptions interactiveOptions(String priority, String clientId, String cancelToken) {
+        return new RenderOptions(RenderPriority.parse(priority, RenderPriority.INTERACTIVE), clientId, cancelToken);
+    }
+
+    /**
+     * Generate SVG for every diagram of a multi-diagram document
+     * Blocks render in parallel and are cached individually, so unchanged blocks are served from cache
+     */
+    @PostMapping(value = "/svg/multi",
                  consumes = MediaType.APPLICATION_JSON_VALUE,
                  produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Map<String, Object>> validateSyntax(@Valid @RequestBody PlantUMLRequest request) {
-        boolean isValid = plantUMLService.validateSyntax(request.plantumlText);
-        
+    public ResponseEntity<Map<String, Object>> generateSVGMulti(
+            @Valid @RequestBody PlantUMLRequest request,
+            @RequestHeader(value = HEADER_PRIORITY, required = false) String priority) {
+        long startTime = System.currentTimeMillis();
+        logger.info("Generating multi-diagram SVG, text length: {}", request.plantumlText.length());
+        requestRecorder.record("svg-multi", request.plantumlText, "svg",
+                               RenderPriority.parse(priority, RenderPriority.INTERACTIVE).label(), null);
+
+        List<CompletableFuture<RenderResult>> blocks = plantUMLService.renderBlocks(request.plantumlText, FileFormat.SVG,
+                RenderPriority.parse(priority, RenderPriority.INTERACTIVE));
+        List<Map<String, Object>> diagrams = new ArrayList<>();
+        int rendered = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            Map<String, Object> diagram = new HashMap<>();
+            diagram.put("index", i);
+            try {
+                RenderResult result = blocks.get(i).join();
+                diagram.put("svg", result.asText());
+                diagram.put("cached", result.isCached());
+                if (!result.isCached()) {
+                    rendered++;
+                }
+            } catch (Exception e) {
+                IOException failure = RenderScheduler.unwrap(e);
+                diagram.put("error", "Failed to generate diagram: " + failure.getMessage());
+                diagram.put("rejected", failure instanceof RenderRejectedException);
+            }
+            diagrams.add(diagram);
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
         Map<String, Object> response = new HashMap<>();
-        response.put("valid", isValid);
-        response.put("text", request.plantumlText);
+        response.put("diagrams", diagrams);
+        response.put("count", diagrams.size());
+        response.put("rendered", rendered);
+        response.put("method", "java-plantuml-library");
+        response.put("performance", duration + "ms");
         response.put("timestamp", System.currentTimeMillis());
-        
+
+        logger.info("{} diagrams generated in {}ms, {} re-rendered", diagrams.size(), duration, rendered);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Render many diagrams in one request
+     * Items render in parallel and are streamed back as NDJSON lines in completion order,
+     * followed by a summary line
+     */
+    @PostMapping(value = "/batch",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> renderBatch(@Valid @RequestBody BatchRequest request) {
+        List<BatchRenderer.Item> items = new ArrayList<>();
+        for (BatchItem item : request.items) {
+            FileFormat format = parseFormat(item.format);
+            if (format == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            items.add(new BatchRenderer.Item(item.plantumlText, format));
+        }
+        if (items.size() > batchRenderer.getMaxItems()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        if (requestRecorder.isActive()) {
+            requestRecorder.record("batch", request.items.stream().map(item -> item.plantumlText).collect(Collectors.toList()),
+                                   parseFormat(request.items.get(0).format).name().toLowerCase(Locale.ROOT),
+                                   RenderPriority.BULK.label(), null);
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            long startTime = System.currentTimeMillis();
+            BlockingQueue<BatchRenderer.ItemResult> completed = new LinkedBlockingQueue<>();
+            int distinct = batchRenderer.renderAll(items, completed::add);
+
+            int failed = 0;
+            for (int i = 0; i < items.size(); i++) {
+                BatchRenderer.ItemResult result;
+                try {
+                    result = completed.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Batch interrupted", e);
+                }
+                if (!result.isSuccess()) {
+                    failed++;
+                }
+                // writeValue(OutputStream) would close the response after the first line
+                outputStream.write(objectMapper.writeValueAsBytes(batchLine(request.items.get(result.getIndex()), result)));
+                outputStream.write('\n');
+                outputStream.flush();
+            }
+
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("done", true);
+            summary.put("items", items.size());
+            summary.put("distinct", distinct);
+            summary.put("failed", failed);
+            summary.put("performance", (System.currentTimeMillis() - startTime) + "ms");
+            outputStream.write(objectMapper.writeValueAsBytes(summary));
+            outputStream.write('\n');
+            outputStream.flush();
+            logger.info("Batch of {} items rendered in {}ms", items.size(), System.currentTimeMillis() - startTime);
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static Map<String, Object> batchLine(BatchItem item, BatchRenderer.ItemResult result) {
+        Map<String, Object> line = new HashMap<>();
+        line.put("index", result.getIndex());
+        if (item.id != null) {
+            line.put("id", item.id);
+        }
+        line.put("format", item.format);
+        if (result.isSuccess()) {
+            RenderResult render = result.getResult();
+            if (FileFormat.PNG.name().equals(render.getFormat())) {
+                line.put("png", Base64.getEncoder().encodeToString(render.getData()));
+            } else {
+                line.put("svg", render.asText());
+            }
+            line.put("cached", render.isCached() || result.isDuplicate());
+            line.put("performance", result.getDurationMillis() + "ms");
+        } else {
+            line.put("error", "Failed to generate diagram: " + result.getError().getMessage());
+            line.put("rejected", result.getError() instanceof RenderRejectedException);
+        }
+        return line;
+    }
+
+    /**
+     * Submit an asynchronous export job
+     * Returns 202 with the job id at once; identical content joins the job already answering for it.
+     * Poll GET /jobs/{id} or pass a callbackUrl (allow-listed hosts only), then fetch /jobs/{id}/result.
+     */
+    @PostMapping(value = "/jobs",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> submitJob(
+            @Valid @RequestBody JobRequest request,
+            @RequestHeader(value = HEADER_PRIORITY, required = false) String priority) {
+        if (!jobManager.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        FileFormat format = parseFormat(request.format);
+        if (format == null) {
+            return jobError(HttpStatus.BAD_REQUEST, "Unsupported format: " + request.format);
+        }
+        requestRecorder.record("jobs", request.plantumlText, format.name().toLowerCase(Locale.ROOT),
+                               RenderPriority.parse(priority, RenderPriority.BULK).label(), null);
+
+        try {
+            ExportJobManager.Submission submission = jobManager.submit(request.plantumlText, format,
+                    RenderPriority.parse(priority, RenderPriority.BULK), request.callbackUrl);
+            ExportJob job = submission.getJob();
+            logger.debug("Job {} {} for {} source characters", job.getId(),
+                         submission.isDeduplicated() ? "joined" : "queued", request.plantumlText.length());
+
+            Map<String, Object> response = jobInfo(submission.getId(), job);
+            response.put("deduplicated", submission.isDeduplicated());
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, jobPath(submission.getId()))
+                    .body(response);
+        } catch (IllegalArgumentException e) {
+            return jobError(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (RenderRejectedException e) {
+            return renderFailure(e, "java-plantuml-job");
+        }
+    }
+
+    /**
+     * Status and progress of an export job
+     */
+    @GetMapping(value = "/jobs/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> jobStatus(@PathVariable String id) {
+        ExportJob job = jobManager.get(id);
+        if (job == null) {
+            return jobError(HttpStatus.NOT_FOUND, "Unknown or expired job");
+        }
+        return ResponseEntity.ok(jobInfo(id, job));
+    }
+
+    /**
+     * Rendered output of a finished export job
+     * 202 with Retry-After while the job is queued or running; failed jobs answer like the raw endpoints
+     */
+    @GetMapping("/jobs/{id}/result")
+    public ResponseEntity<StreamingResponseBody> jobResult(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ExportJob job = jobManager.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        switch (job.getStatus()) {
+            case QUEUED:
+            case RUNNING:
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .header(HttpHeaders.LOCATION, jobPath(id))
+                        .build();
+            case FAILED:
+                // Logged once when the job failed, not on every poll
+                return ResponseEntity.status(job.getError() instanceof RenderTimeoutException ? HttpStatus.GATEWAY_TIMEOUT
+                                             : job.getError() instanceof RenderTooLargeException ? HttpStatus.PAYLOAD_TOO_LARGE
+                                             : HttpStatus.INTERNAL_SERVER_ERROR)
+                        .header(HEADER_ERROR, headerSafe(job.getError().getMessage()))
+                        .build();
+            case CANCELLED:
+                return ResponseEntity.notFound().build();
+            default:
+                break;
+        }
+
+        MediaType contentType = job.getFormat() == FileFormat.PNG ? MediaType.IMAGE_PNG : MediaType.valueOf(IMAGE_SVG_VALUE);
+        if (job.getResult() != null) {
+            return rawResponse(job.getResult(), contentType, acceptEncoding);
+        }
+
+        // Open now: the file may expire before the body is written, an open stream still reads it
+        InputStream stored;
+        try {
+            stored = Files.newInputStream(job.getFile());
+        } catch (IOException e) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .contentLength(job.getSize())
+                .header(HEADER_RENDER_TIME, job.getRenderMillis() + "ms")
+                .header(HEADER_CACHE, job.isCached() ? "HIT" : "MISS")
+                .body(outputStream -> {
+                    try (InputStream input = stored) {
+                        input.transferTo(outputStream);
+                    }
+                });
+    }
+
+    /**
+     * Withdraw a job submission
+     * The shared job is cancelled, or its result dropped, once no identical submission holds it any more
+     */
+    @DeleteMapping("/jobs/{id}")
+    public ResponseEntity<Void> cancelJob(@PathVariable String id) {
+        return jobManager.cancel(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    private static String jobPath(String id) {
+        return "/api/plantuml/jobs/" + id;
+    }
+
+    private Map<String, Object> jobInfo(String id, ExportJob job) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("id", id);
+        info.put("status", job.getStatus().label());
+        info.put("format", job.getFormat().name().toLowerCase(Locale.ROOT));
+        info.put("priority", job.getPriority().label());
+        info.put("submittedAt", job.getSubmittedAt());
+        info.put("submissions", job.getSubmissions());
+        switch (job.getStatus()) {
+            case QUEUED:
+                info.put("queuePosition", jobManager.queuePosition(job));
+                break;
+            case RUNNING:
+                info.put("startedAt", job.getStartedAt());
+                break;
+            case DONE:
+                info.put("startedAt", job.getStartedAt());
+                info.put("finishedAt", job.getFinishedAt());
+                info.put("expiresAt", jobManager.expiresAt(job));
+                info.put("size", job.getSize());
+                info.put("cached", job.isCached());
+                info.put("performance", job.getRenderMillis() + "ms");
+                info.put("resultUrl", jobPath(id) + "/result");
+                break;
+            case FAILED:
+                info.put("finishedAt", job.getFinishedAt());
+                info.put("expiresAt", jobManager.expiresAt(job));
+                info.put("error", "Failed to generate diagram: " + job.getError().getMessage());
+                info.put("rejected", job.getError() instanceof RenderRejectedException);
+                break;
+            default:
+                info.put("finishedAt", job.getFinishedAt());
+                break;
+        }
+        return info;
+    }
+
+    private static ResponseEntity<Map<String, Object>> jobError(HttpStatus status, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        errorResponse.put("method", "java-plantuml-job");
+        errorResponse.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+
+    /**
+     * Parse an output format name, defaulting to SVG
+     * @return format, or null if unsupported
+     */
+    private static FileFormat parseFormat(String format) {
+        if (format == null || format.equalsIgnoreCase("svg")) {
+            return FileFormat.SVG;
+        }
+        if (format.equalsIgnoreCase("png")) {
+            return FileFormat.PNG;
+        }
+        return null;
+    }
+
+    /**
+     * Validate PlantUML syntax (parse only, no layout or image output)
+     */
+    @PostMapping(value = "/validate",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> validateSyntax(@Valid @RequestBody PlantUMLRequest request) {
+        requestRecorder.record("validate", request.plantumlText, "none", RenderPriority.INTERACTIVE.label(), null);
+        try {
+            ValidationResult result = plantUMLService.validate(request.plantumlText);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("valid", result.isValid());
+            response.put("diagramTypes", result.getDiagramTypes());
+            response.put("errors", result.getDiagnostics().stream()
+                .map(diagnostic -> {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("block", diagnostic.getBlock());
+                    error.put("line", diagnostic.getLine());
+                    error.put("message", diagnostic.getMessage());
+                    return error;
+                })
+                .collect(Collectors.toList()));
+            response.put("performance", result.getDurationMillis() + "ms");
+            response.put("timestamp", System.currentTimeMillis());
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return renderFailure(e, "java-plantuml-parser");
+        }
+    }
+
     /**
      * Health check endpoint
+     * Cheap: reports the last background render check instead of rendering per call
      */
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> health() {
         Map<String, Object> health = new HashMap<>();
-        health.put("status", "OK");
+        health.put("status", renderWarmup.isComplete() ? "OK" : "WARMING_UP");
         health.put("message", "PlantUML Java Server - Commercial Safe");
         health.put("license", "MIT");
         health.put("commercial", true);
         health.put("timestamp", System.currentTimeMillis());
         
-        // Test PlantUML functionality
-        boolean isHealthy = plantUMLService.healthCheck();
-        health.put("plantuml", isHealthy ? "available" : "error");
+        // Last background render check
+        RenderHealthMonitor.CheckStats check = healthMonitor.getStats();
+        health.put("plantuml", check.isOk() ? "available" : "error");
+        health.put("lastCheck", checkInfo(check));
         
         // Service statistics
         var stats = plantUMLService.getStats();
@@ -159,8 +837,21 @@ public class PlantUMLController {
             "graphviz", Map.of(
                 "available", stats.isGraphvizAvailable(),
                 "path", stats.getGraphvizPath() != null ? stats.getGraphvizPath() : "not configured"
-            )
+            ),
+            "cache", cacheInfo(stats.getCacheStats()),
+            "diskCache", diskCacheInfo(stats.getDiskCacheStats()),
+            "scheduler", schedulerInfo(stats.getSchedulerStats()),
+            "layout", layoutInfo(stats.getLayoutStats()),
+            "output", outputInfo(stats.getOutputStats())
         ));
+        health.put("warmup", warmupInfo(renderWarmup.getStats()));
+        health.put("cluster", clusterInfo(clusterRouter.getStats()));
+        health.put("jobs", jobsInfo(jobManager.getStats()));
+        health.put("memory", memoryInfo(memoryBudget.getStats()));
+        health.put("recording", recordingInfo(requestRecorder.getStats()));
+        if (livePreviewHandler != null) {
+            health.put("livePreview", liveInfo(livePreviewHandler.getStats()));
+        }
         
         return ResponseEntity.ok(health);
     }
@@ -185,13 +876,264 @@ public class PlantUMLController {
             "Commercial-safe MIT license",
             "Thread-safe concurrent processing",
             "Async generation support",
-            "Syntax validation",
-            "Multiple output formats (SVG, PNG)"
+            "Parallel batch rendering (NDJSON streaming)",
+            "Incremental multi-diagram rendering",
+            "Parse-only syntax validation with line diagnostics",
+            "Multiple output formats (SVG, PNG)",
+            "Raw SVG/PNG streaming with metadata headers",
+            "Cacheable GET rendering with ETag support",
+            "Live preview over WebSocket with SVG patches",
+            "Asynchronous export jobs with retained results",
+            "Opt-in anonymized request recording for load-test replay"
         ));
         
         return ResponseEntity.ok(info);
     }
 
+    /**
+     * Map a render failure to an error response
+     * Saturation becomes 503 with Retry-After, deadline overruns 504, cancelled or superseded renders 409,
+     * diagrams over the per-render memory limit 413
+     */
+    private static ResponseEntity<Map<String, Object>> renderFailure(Exception e, String method) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("method", method);
+        errorResponse.put("timestamp", System.currentTimeMillis());
+
+        if (e instanceof RenderRejectedException) {
+            RenderRejectedException rejected = (RenderRejectedException) e;
+            logger.warn("Render rejected: {}", e.getMessage());
+            errorResponse.put("error", "Server busy: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejected.getRetryAfterSeconds()))
+                    .body(errorResponse);
+        }
+        if (e instanceof RenderTimeoutException) {
+            logger.warn("Render timed out: {}", e.getMessage());
+            errorResponse.put("error", "Diagram took too long to render: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(errorResponse);
+        }
+        if (e instanceof RenderTooLargeException) {
+            logger.warn("Render refused: {}", e.getMessage());
+            errorResponse.put("error", "Diagram too large: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);
+        }
+        if (e instanceof RenderCancelledException) {
+            logger.debug("Render cancelled: {}", e.getMessage());
+            errorResponse.put("error", e.getMessage());
+            errorResponse.put("cancelled", true);
+            errorResponse.put("superseded", e instanceof RenderSupersededException);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        }
+
+        logger.error("Failed to generate diagram", e);
+        errorResponse.put("error", "Failed to generate diagram: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    }
+
+    private static Map<String, Object> schedulerInfo(RenderScheduler.SchedulerStats scheduler) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("threads", scheduler.getThreads());
+        info.put("active", scheduler.getActive());
+        info.put("queued", scheduler.getQueued());
+        info.put("queueCapacity", scheduler.getQueueCapacity());
+        info.put("completed", scheduler.getCompleted());
+        info.put("rejected", scheduler.getRejected());
+        info.put("timedOut", scheduler.getTimedOut());
+        info.put("avgWaitMs", scheduler.getAvgWaitMillis());
+        info.put("maxWaitMs", scheduler.getMaxWaitMillis());
+        info.put("superseded", scheduler.getSuperseded());
+        info.put("cancelled", scheduler.getCancelled());
+        info.put("lanes", scheduler.getLanes().stream()
+            .map(lane -> Map.of(
+                "name", lane.getName(),
+                "weight", lane.getWeight(),
+                "queued", lane.getQueued(),
+                "started", lane.getStarted(),
+                "avgWaitMs", lane.getAvgWaitMillis()
+            ))
+            .collect(Collectors.toList()));
+        return info;
+    }
+
+    private static Map<String, Object> clusterInfo(ClusterRouter.ClusterStats cluster) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("enabled", cluster.isEnabled());
+        if (!cluster.isEnabled()) {
+            return info;
+        }
+        info.put("self", cluster.getSelf());
+        info.put("nodes", cluster.getNodes());
+        info.put("downPeers", cluster.getDownPeers());
+        info.put("ownedLocally", cluster.getOwnedLocally());
+        info.put("forwarded", cluster.getForwarded());
+        info.put("remoteHits", cluster.getRemoteHits());
+        info.put("remoteRenders", cluster.getRemoteRenders());
+        info.put("fallbacks", cluster.getFallbacks());
+        info.put("served", cluster.getServed());
+        info.put("fingerprintMismatches", cluster.getFingerprintMismatches());
+        return info;
+    }
+
+    private static Map<String, Object> jobsInfo(ExportJobManager.JobStats jobs) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("enabled", jobs.isEnabled());
+        if (!jobs.isEnabled()) {
+            return info;
+        }
+        info.put("store", jobs.getStore());
+        info.put("queued", jobs.getQueued());
+        info.put("maxQueued", jobs.getMaxQueued());
+        info.put("queuedChars", jobs.getQueuedChars());
+        info.put("maxQueuedChars", jobs.getMaxQueuedChars());
+        info.put("running", jobs.getRunning());
+        info.put("maxConcurrent", jobs.getMaxConcurrent());
+        info.put("retained", jobs.getRetained());
+        info.put("retainedBytes", jobs.getRetainedBytes());
+        info.put("submitted", jobs.getSubmitted());
+        info.put("deduplicated", jobs.getDeduplicated());
+        info.put("rejected", jobs.getRejected());
+        info.put("completed", jobs.getCompleted());
+        info.put("failed", jobs.getFailed());
+        info.put("cancelled", jobs.getCancelled());
+        info.put("expired", jobs.getExpired());
+        info.put("callbacksSent", jobs.getCallbacksSent());
+        info.put("callbacksFailed", jobs.getCallbacksFailed());
+        return info;
+    }
+
+    private static Map<String, Object> memoryInfo(RenderMemoryBudget.MemoryStats memory) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("budgetBytes", memory.getBudgetBytes());
+        info.put("maxRenderBytes", memory.getMaxRenderBytes());
+        info.put("reservedBytes", memory.getReservedBytes());
+        info.put("peakReservedBytes", memory.getPeakReservedBytes());
+        info.put("waiting", memory.getWaiting());
+        info.put("waited", memory.getWaited());
+        info.put("rejected", memory.getRejected());
+        info.put("tooLarge", memory.getTooLarge());
+        info.put("streamedPng", memory.getStreamed());
+        info.put("pngLimitSize", memory.getPngLimitSize());
+        return info;
+    }
+
+    private static Map<String, Object> recordingInfo(RequestRecorder.RecordingStats recording) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("active", recording.isActive());
+        if (recording.getFile() != null) {
+            info.put("file", recording.getFile());
+            info.put("sampleRate", recording.getSampleRate());
+            info.put("recorded", recording.getRecorded());
+            info.put("dropped", recording.getDropped());
+            info.put("bytes", recording.getBytes());
+            info.put("maxBytes", recording.getMaxBytes());
+        }
+        return info;
+    }
+
+    private static Map<String, Object> outputInfo(OutputOptimizer.OutputStats output) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("svgMinify", output.isSvgMinify());
+        info.put("pngCompressionLevel", output.getPngCompressionLevel());
+        info.put("pngPalette", output.isPngPalette());
+        info.put("precompress", output.isPrecompress());
+        info.put("svgBytesIn", output.getSvgBytesIn());
+        info.put("svgBytesOut", output.getSvgBytesOut());
+        info.put("pngBytesIn", output.getPngBytesIn());
+        info.put("pngBytesOut", output.getPngBytesOut());
+        info.put("gzipEncoded", output.getGzipEncoded());
+        info.put("gzipServed", output.getGzipServed());
+        return info;
+    }
+
+    private static Map<String, Object> layoutInfo(GraphvizLayoutEngine.LayoutStats layout) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("mode", layout.getMode());
+        info.put("dotSlots", layout.getDotSlots());
+        info.put("dotBusy", layout.getDotBusy());
+        info.put("smetanaLayouts", layout.getSmetanaLayouts());
+        info.put("smetanaAvgMs", layout.getSmetanaAvgMillis());
+        info.put("dotKilled", layout.getDotKilled());
+        info.put("workers", layout.getSlots().stream()
+            .map(slot -> Map.of(
+                "id", slot.getId(),
+                "jobs", slot.getJobs(),
+                "failures", slot.getFailures(),
+                "avgMs", slot.getAvgMillis(),
+                "maxMs", slot.getMaxMillis(),
+                "lastMs", slot.getLastMillis()
+            ))
+            .collect(Collectors.toList()));
+        return info;
+    }
+
+    private static Map<String, Object> checkInfo(RenderHealthMonitor.CheckStats check) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("ok", check.isOk());
+        info.put("checkedAt", check.getCheckedAt());
+        info.put("duration", check.getDurationMillis() + "ms");
+        info.put("consecutiveFailures", check.getConsecutiveFailures());
+        info.put("skipped", check.getSkipped());
+        info.put("stalled", check.isStalled());
+        return info;
+    }
+
+    private static Map<String, Object> warmupInfo(RenderWarmup.WarmupStats warmup) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("status", warmup.getStatus());
+        info.put("rendered", warmup.getRendered());
+        info.put("failed", warmup.getFailed());
+        info.put("firstRender", warmup.getFirstRenderMillis() + "ms");
+        info.put("warmRender", warmup.getWarmRenderMillis() + "ms");
+        info.put("duration", warmup.getDurationMillis() + "ms");
+        info.put("startupToReady", warmup.getStartupToReadyMillis() + "ms");
+        return info;
+    }
+
+    private static Map<String, Object> liveInfo(LivePreviewHandler.LiveStats live) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("sessions", live.getSessions());
+        info.put("maxSessions", live.getMaxSessions());
+        info.put("retainedBytes", live.getRetainedBytes());
+        info.put("rejected", live.getRejected());
+        info.put("evicted", live.getEvicted());
+        info.put("patches", live.getPatches());
+        info.put("full", live.getFull());
+        info.put("bytesSent", live.getBytesSent());
+        info.put("bytesSaved", live.getBytesSaved());
+        info.put("resyncs", live.getResyncs());
+        return info;
+    }
+
+    private static Map<String, Object> diskCacheInfo(DiskRenderCache.DiskStats disk) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("enabled", disk.isEnabled());
+        info.put("entries", disk.getEntries());
+        info.put("bytes", disk.getBytes());
+        info.put("maxBytes", disk.getMaxBytes());
+        info.put("segments", disk.getSegments());
+        info.put("hits", disk.getHits());
+        info.put("misses", disk.getMisses());
+        info.put("writes", disk.getWrites());
+        info.put("evictedSegments", disk.getEvictedSegments());
+        info.put("errors", disk.getErrors());
+        return info;
+    }
+
+    private static Map<String, Object> cacheInfo(RenderCache.CacheStats cache) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("enabled", cache.isEnabled());
+        info.put("entries", cache.getEntries());
+        info.put("bytes", cache.getBytes());
+        info.put("maxBytes", cache.getMaxBytes());
+        info.put("hits", cache.getHits());
+        info.put("misses", cache.getMisses());
+        info.put("evictions", cache.getEvictions());
+        info.put("coalesced", cache.getCoalesced());
+        info.put("hitRatio", cache.getHitRatio());
+        return info;
+    }
+
     /**
      * Request DTO for PlantUML text input
      */
@@ -199,4 +1141,41 @@ public class PlantUMLController {
         @NotBlank(message = "PlantUML text is required")
         public String plantumlText;
     }
+
+    /**
+     * Request DTO for batch rendering
+     */
+    public static class BatchRequest {
+        @Valid
+        @NotEmpty(message = "At least one item is required")
+        public List<BatchItem> items;
+    }
+
+    /**
+     * Request DTO for an export job
+     */
+    public static class JobRequest {
+        @NotBlank(message = "PlantUML text is required")
+        public String plantumlText;
+
+        // svg (default) or png
+        public String format = "svg";
+
+        // Optional URL that receives the final job status as a JSON POST
+        public String callbackUrl;
+    }
+
+    /**
+     * One diagram of a batch request
+     */
+    public static class BatchItem {
+        // Optional client reference echoed back in the result line
+        public String id;
+
+        @NotBlank(message = "PlantUML text is required")
+        public String plantumlText;
+
+        // svg (default) or png
+        public String format = "svg";
+    }
 }
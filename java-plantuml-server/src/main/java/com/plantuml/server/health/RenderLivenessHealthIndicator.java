@@ -0,0 +1,30 @@
+package com.plantuml.server.health;
+
+import com.plantuml.server.service.RenderHealthMonitor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Liveness: DOWN only when restarting would help
+ * (render pool stalled, or the background render check keeps failing).
+ * Reads cached state only - never renders.
+ */
+@Component
+public class RenderLivenessHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private RenderHealthMonitor healthMonitor;
+
+    @Override
+    public Health health() {
+        RenderHealthMonitor.CheckStats check = healthMonitor.getStats();
+        Health.Builder builder = healthMonitor.isLive() ? Health.up() : Health.down();
+        return builder
+            .withDetail("stalled", check.isStalled())
+            .withDetail("consecutiveFailures", check.getConsecutiveFailures())
+            .build();
+    }
+}
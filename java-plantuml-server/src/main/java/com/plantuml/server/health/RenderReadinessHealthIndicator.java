@@ -0,0 +1,61 @@
+package com.plantuml.server.health;
+
+import com.plantuml.server.service.GraphvizLayoutEngine;
+import com.plantuml.server.service.RenderCache;
+import com.plantuml.server.service.RenderHealthMonitor;
+import com.plantuml.server.service.RenderScheduler;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Readiness: OUT_OF_SERVICE while the render queue is saturated or the last background
+ * render check failed, so the load balancer routes new work elsewhere.
+ * Reads counters and cached results only - never renders.
+ */
+@Component
+public class RenderReadinessHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private RenderHealthMonitor healthMonitor;
+
+    @Autowired
+    private RenderScheduler renderScheduler;
+
+    @Autowired
+    private GraphvizLayoutEngine layoutEngine;
+
+    @Autowired
+    private RenderCache renderCache;
+
+    // Queue fill ratio at which the instance stops taking new traffic
+    @Value("${plantuml.health.queue-saturation:0.9}")
+    private double queueSaturation;
+
+    @Override
+    public Health health() {
+        RenderScheduler.SchedulerStats scheduler = renderScheduler.getStats();
+        GraphvizLayoutEngine.LayoutStats layout = layoutEngine.getStats();
+        RenderCache.CacheStats cache = renderCache.getStats();
+        RenderHealthMonitor.CheckStats check = healthMonitor.getStats();
+
+        boolean saturated = scheduler.getQueued() >= scheduler.getQueueCapacity() * queueSaturation;
+        boolean ready = !saturated && check.isOk();
+
+        return Health.status(ready ? Status.UP : Status.OUT_OF_SERVICE)
+            .withDetail("saturated", saturated)
+            .withDetail("activeRenders", scheduler.getActive())
+            .withDetail("queued", scheduler.getQueued())
+            .withDetail("queueCapacity", scheduler.getQueueCapacity())
+            .withDetail("graphvizBusy", layout.getDotBusy() + "/" + layout.getDotSlots())
+            .withDetail("cacheEntries", cache.getEntries())
+            .withDetail("cacheHitRatio", cache.getHitRatio())
+            .withDetail("lastCheckOk", check.isOk())
+            .withDetail("lastCheckAt", check.getCheckedAt())
+            .build();
+    }
+}
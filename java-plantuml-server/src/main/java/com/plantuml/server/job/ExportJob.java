@@ -0,0 +1,207 @@
+package com.plantuml.server.job;
+
+import com.plantuml.server.service.RenderPriority;
+import com.plantuml.server.service.RenderResult;
+import net.sourceforge.plantuml.FileFormat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One asynchronous export: queued, rendered once, then retained until it expires
+ * Each submission sharing the job holds its own handle; the job lives on until the last handle is
+ * released or it expires.
+ * The source is dropped as soon as the job finishes; the result is held in memory or in a file,
+ * depending on plantuml.jobs.store. State changes go through ExportJobManager.
+ */
+public class ExportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED;
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public boolean isFinished() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id;
+    private final String key;
+    private final FileFormat format;
+    private final RenderPriority priority;
+    private final long sequence;
+    private final int sourceChars;
+    private final long submittedAt = System.currentTimeMillis();
+    // Handles of the submissions sharing this job, with their callback URL (null for none); guarded by this
+    private final Map<String, String> handles = new LinkedHashMap<>();
+
+    private volatile String source;
+    private volatile Status status = Status.QUEUED;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile RenderResult result;
+    private volatile Path file;
+    private volatile long size;
+    private volatile long renderMillis;
+    private volatile boolean cached;
+    private volatile IOException error;
+    private volatile int submissions = 1;
+
+    ExportJob(String id, String key, String source, FileFormat format, RenderPriority priority, long sequence) {
+        this.id = id;
+        this.key = key;
+        this.source = source;
+        this.sourceChars = source.length();
+        this.format = format;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+
+    synchronized boolean start() {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        startedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Back to the queue after the render scheduler refused the render
+     */
+    synchronized boolean requeue() {
+        if (status != Status.RUNNING) {
+            return false;
+        }
+        status = Status.QUEUED;
+        startedAt = 0;
+        return true;
+    }
+
+    synchronized boolean complete(RenderResult result, Path file, long size, long renderMillis, boolean cached) {
+        if (status != Status.RUNNING) {
+            return false;
+        }
+        this.result = result;
+        this.file = file;
+        this.size = size;
+        this.renderMillis = renderMillis;
+        this.cached = cached;
+        finish(Status.DONE);
+        return true;
+    }
+
+    synchronized boolean fail(IOException error) {
+        if (status != Status.RUNNING) {
+            return false;
+        }
+        this.error = error;
+        finish(Status.FAILED);
+        return true;
+    }
+
+    /**
+     * @return status before cancelling, or null if the job had already finished
+     */
+    synchronized Status cancel() {
+        Status previous = status;
+        if (previous.isFinished()) {
+            return null;
+        }
+        finish(Status.CANCELLED);
+        return previous;
+    }
+
+    private void finish(Status finalStatus) {
+        status = finalStatus;
+        finishedAt = System.currentTimeMillis();
+        source = null;
+    }
+
+    /**
+     * Merge an identical submission into this job under its own handle
+     * @return status the submission found, or null once the job failed or was cancelled;
+     *         identical submissions then start a new job
+     */
+    synchronized Status join(String handle, String callbackUrl) {
+        if (status == Status.FAILED || status == Status.CANCELLED) {
+            return null;
+        }
+        submissions++;
+        // Callbacks of finished jobs are sent at once by the caller
+        handles.put(handle, status != Status.DONE ? callbackUrl : null);
+        return status;
+    }
+
+    synchronized void attach(String handle, String callbackUrl) {
+        handles.put(handle, callbackUrl);
+    }
+
+    /**
+     * Detach a submission's handle
+     * @return handles still attached, or -1 if this one was not
+     */
+    synchronized int release(String handle) {
+        if (!handles.containsKey(handle)) {
+            return -1;
+        }
+        handles.remove(handle);
+        return handles.size();
+    }
+
+    synchronized List<String> getHandles() {
+        return new ArrayList<>(handles.keySet());
+    }
+
+    // Callback URL by handle, for handles that asked for one
+    synchronized Map<String, String> getCallbacks() {
+        Map<String, String> callbacks = new LinkedHashMap<>();
+        handles.forEach((handle, callbackUrl) -> {
+            if (callbackUrl != null) {
+                callbacks.put(handle, callbackUrl);
+            }
+        });
+        return callbacks;
+    }
+
+    String getSource() { return source; }
+    String getKey() { return key; }
+    long getSequence() { return sequence; }
+    int getSourceChars() { return sourceChars; }
+    String cancelToken() { return "job:" + id; }
+
+    // Heap held by the retained result
+    long getRetainedBytes() {
+        RenderResult retained = result;
+        return retained != null ? retained.getRetainedSize() : 0;
+    }
+
+    public String getId() { return id; }
+    public FileFormat getFormat() { return format; }
+    public RenderPriority getPriority() { return priority; }
+    public Status getStatus() { return status; }
+    public long getSubmittedAt() { return submittedAt; }
+    public long getStartedAt() { return startedAt; }
+    public long getFinishedAt() { return finishedAt; }
+    // In-memory result, null when stored on disk or not done
+    public RenderResult getResult() { return result; }
+    // Result file, null when held in memory or not done
+    public Path getFile() { return file; }
+    public long getSize() { return size; }
+    public long getRenderMillis() { return renderMillis; }
+    public boolean isCached() { return cached; }
+    public IOException getError() { return error; }
+    public int getSubmissions() { return submissions; }
+}
@@ -0,0 +1,670 @@
+package com.plantuml.server.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.plantuml.server.service.PlantUMLService;
+import com.plantuml.server.service.RenderCancelledException;
+import com.plantuml.server.service.RenderOptions;
+import com.plantuml.server.service.RenderPriority;
+import com.plantuml.server.service.RenderRejectedException;
+import com.plantuml.server.service.RenderResult;
+import com.plantuml.server.service.RenderScheduler;
+import net.sourceforge.plantuml.FileFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous export jobs (plantuml.jobs.*)
+ * Submissions go into a job queue bounded by job count and by source characters, and return at once;
+ * at most max-concurrent jobs are handed to the render scheduler at a time, so thousands of queued
+ * exports never hold request threads, flood the scheduler queue or fill the heap with sources. Identical content is rendered by a single job while that job is queued,
+ * running or retained. Results are kept in memory or on disk for retention-seconds after the job
+ * finishes, then dropped. Optional completion callbacks only go to allow-listed hosts.
+ */
+@Component
+public class ExportJobManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobManager.class);
+
+    private static final String FILE_SUFFIX = ".job";
+
+    @Value("${plantuml.jobs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${plantuml.jobs.max-queued:10000}")
+    private int maxQueued;
+
+    // Jobs handed to the render scheduler at once, 0 = one per CPU core
+    @Value("${plantuml.jobs.max-concurrent:0}")
+    private int maxConcurrent;
+
+    @Value("${plantuml.jobs.max-source-chars:1000000}")
+    private int maxSourceChars;
+
+    // Source characters held by queued and running jobs; bounds their heap along with max-queued
+    @Value("${plantuml.jobs.max-queued-chars:67108864}")
+    private long maxQueuedChars;
+
+    @Value("${plantuml.jobs.retention-seconds:3600}")
+    private long retentionSeconds;
+
+    // memory or disk
+    @Value("${plantuml.jobs.store:memory}")
+    private String store;
+
+    @Value("${plantuml.jobs.path:${java.io.tmpdir}/plantuml-jobs}")
+    private String path;
+
+    // Memory store only: beyond this the oldest finished jobs expire early
+    @Value("${plantuml.jobs.max-memory-bytes:268435456}")
+    private long maxMemoryBytes;
+
+    // Hosts callback URLs may point to; empty disables callbacks
+    @Value("${plantuml.jobs.callback.allowed-hosts:}")
+    private String callbackAllowedHosts;
+
+    @Value("${plantuml.jobs.callback.timeout-ms:5000}")
+    private long callbackTimeoutMillis;
+
+    @Autowired
+    private PlantUMLService plantUMLService;
+
+    @Autowired
+    private RenderScheduler renderScheduler;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    // Job behind each submission handle; handle ids are what clients see
+    private final Map<String, ExportJob> handles = new ConcurrentHashMap<>();
+    // Job currently answering for each cache key, for de-duplication
+    private final Map<String, ExportJob> byKey = new ConcurrentHashMap<>();
+    private final LinkedBlockingDeque<ExportJob> pending = new LinkedBlockingDeque<>();
+    // Finished jobs in finishing order, oldest first
+    private final ConcurrentLinkedQueue<ExportJob> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger dispatchRequests = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong dequeued = new AtomicLong();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong queuedChars = new AtomicLong();
+    private volatile long resumeAt;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong callbacksSent = new AtomicLong();
+    private final AtomicLong callbacksFailed = new AtomicLong();
+
+    private boolean diskStore;
+    private Path directory;
+    private Set<String> allowedHosts;
+    private ScheduledExecutorService sweeper;
+    private HttpClient callbackClient;
+
+    @PostConstruct
+    public void init() {
+        if (maxConcurrent <= 0) {
+            maxConcurrent = Runtime.getRuntime().availableProcessors();
+        }
+        maxQueuedChars = Math.max(maxQueuedChars, maxSourceChars);
+        allowedHosts = Arrays.stream(callbackAllowedHosts.split(","))
+            .map(host -> host.trim().toLowerCase(Locale.ROOT))
+            .filter(host -> !host.isEmpty())
+            .collect(Collectors.toSet());
+        Gauge.builder("plantuml.jobs.queued", this, ExportJobManager::getQueuedCount)
+            .description("Export jobs waiting to start")
+            .register(registry);
+        Gauge.builder("plantuml.jobs.running", this, ExportJobManager::getRunningCount)
+            .description("Export jobs handed to the render scheduler")
+            .register(registry);
+        Gauge.builder("plantuml.jobs.retained.size", this, ExportJobManager::getRetainedBytes)
+            .baseUnit("bytes")
+            .description("Job results held in memory")
+            .register(registry);
+        FunctionCounter.builder("plantuml.jobs.submitted", this, ExportJobManager::getSubmittedCount)
+            .tag("outcome", "queued")
+            .description("Export job submissions")
+            .register(registry);
+        FunctionCounter.builder("plantuml.jobs.submitted", this, ExportJobManager::getDeduplicatedCount)
+            .tag("outcome", "deduplicated")
+            .description("Export job submissions")
+            .register(registry);
+        FunctionCounter.builder("plantuml.jobs.submitted", this, ExportJobManager::getRejectedCount)
+            .tag("outcome", "rejected")
+            .description("Export job submissions")
+            .register(registry);
+        FunctionCounter.builder("plantuml.jobs.finished", this, ExportJobManager::getCompletedCount)
+            .tag("outcome", "done")
+            .description("Export jobs by final status")
+            .register(registry);
+        FunctionCounter.builder("plantuml.jobs.finished", this, ExportJobManager::getFailedCount)
+            .tag("outcome", "failed")
+            .description("Export jobs by final status")
+            .register(registry);
+        FunctionCounter.builder("plantuml.jobs.finished", this, ExportJobManager::getCancelledCount)
+            .tag("outcome", "cancelled")
+            .description("Export jobs by final status")
+            .register(registry);
+
+        if (!enabled) {
+            return;
+        }
+
+        diskStore = "disk".equalsIgnoreCase(store);
+        if (diskStore) {
+            try {
+                directory = Paths.get(path);
+                Files.createDirectories(directory);
+                // Jobs do not survive a restart, so results left by the previous run are orphans
+                try (DirectoryStream<Path> orphans = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+                    for (Path orphan : orphans) {
+                        Files.deleteIfExists(orphan);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Job directory {} unusable, keeping job results in memory: {}", path, e.getMessage());
+                diskStore = false;
+            }
+        }
+        if (!allowedHosts.isEmpty()) {
+            callbackClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(callbackTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plantuml-job-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMillis = Math.max(1000, Math.min(60000, retentionSeconds * 100));
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        logger.info("Export jobs: queue {}, {} concurrent, results kept {}s {}", maxQueued, maxConcurrent,
+                    retentionSeconds, diskStore ? "in " + directory : "in memory");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue an export, or join the job already answering for identical content
+     * @param source PlantUML markup
+     * @param format SVG or PNG
+     * @param priority scheduler lane for the render
+     * @param callbackUrl URL to POST the final status to, or null
+     * @return the submission's own handle, its job and whether the job was an existing one
+     * @throws IllegalArgumentException for oversized sources and callback URLs that are not allowed
+     * @throws RenderRejectedException when the job queue is full
+     */
+    public Submission submit(String source, FileFormat format, RenderPriority priority,
+                             String callbackUrl) throws RenderRejectedException {
+        if (source.length() > maxSourceChars) {
+            throw new IllegalArgumentException("Source exceeds " + maxSourceChars + " characters");
+        }
+        if (callbackUrl != null) {
+            checkCallback(callbackUrl);
+        }
+
+        String key = plantUMLService.cacheKey(source, format);
+        String handle = UUID.randomUUID().toString();
+        ExportJob job;
+        synchronized (this) {
+            ExportJob existing = byKey.get(key);
+            ExportJob.Status joined = existing != null ? existing.join(handle, callbackUrl) : null;
+            if (joined != null) {
+                handles.put(handle, existing);
+                deduplicated.incrementAndGet();
+                // Callbacks of jobs still in progress are sent when they finish
+                if (callbackUrl != null && joined == ExportJob.Status.DONE) {
+                    sendCallback(existing, handle, callbackUrl);
+                }
+                return new Submission(handle, existing, true);
+            }
+            if (pending.size() >= maxQueued) {
+                rejected.incrementAndGet();
+                throw new RenderRejectedException("Job queue full (" + maxQueued + " jobs)",
+                                                  renderScheduler.getRetryAfterSeconds());
+            }
+            if (queuedChars.get() + source.length() > maxQueuedChars) {
+                rejected.incrementAndGet();
+                throw new RenderRejectedException("Job queue full (" + maxQueuedChars + " source characters)",
+                                                  renderScheduler.getRetryAfterSeconds());
+            }
+            queuedChars.addAndGet(source.length());
+            job = new ExportJob(UUID.randomUUID().toString(), key, source, format, priority, sequence.incrementAndGet());
+            job.attach(handle, callbackUrl);
+            jobs.put(job.getId(), job);
+            handles.put(handle, job);
+            byKey.put(key, job);
+            pending.offerLast(job);
+        }
+        submitted.incrementAndGet();
+        dispatch();
+        return new Submission(handle, job, false);
+    }
+
+    private void checkCallback(String callbackUrl) {
+        if (allowedHosts.isEmpty()) {
+            throw new IllegalArgumentException("Job callbacks are disabled");
+        }
+        URI uri;
+        try {
+            uri = URI.create(callbackUrl);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid callback URL");
+        }
+        String scheme = uri.getScheme();
+        if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))
+                || uri.getHost() == null || !allowedHosts.contains(uri.getHost().toLowerCase(Locale.ROOT))) {
+            throw new IllegalArgumentException("Callback host not allowed");
+        }
+    }
+
+    /**
+     * Look up the queued, running or retained job behind a submission handle
+     * @return the job, or null if the handle is unknown, released or expired
+     */
+    public ExportJob get(String handle) {
+        return handles.get(handle);
+    }
+
+    /**
+     * Jobs queued ahead of a queued job; approximate once queued jobs have been cancelled
+     */
+    public long queuePosition(ExportJob job) {
+        return Math.max(0, job.getSequence() - dequeued.get() - 1);
+    }
+
+    /**
+     * Time a finished job's result stays available
+     */
+    public long expiresAt(ExportJob job) {
+        return job.getFinishedAt() + TimeUnit.SECONDS.toMillis(retentionSeconds);
+    }
+
+    /**
+     * Release a submission's handle
+     * Identical submissions share one job, so the job is only cancelled (queued or running) or dropped
+     * (finished) once its last handle is released; until then it carries on for the other submitters
+     * @return false if the handle is unknown, already released or expired
+     */
+    public boolean cancel(String handle) {
+        ExportJob job = handles.remove(handle);
+        if (job == null) {
+            return false;
+        }
+        // Under the submit lock, so no identical submission joins a job that is being cancelled
+        synchronized (this) {
+            if (job.release(handle) != 0) {
+                return true;
+            }
+            ExportJob.Status previous = job.cancel();
+            if (previous == ExportJob.Status.QUEUED) {
+                pending.remove(job);
+            } else if (previous == ExportJob.Status.RUNNING) {
+                plantUMLService.cancel(job.cancelToken());
+            }
+            if (previous != null) {
+                queuedChars.addAndGet(-job.getSourceChars());
+                cancelled.incrementAndGet();
+            }
+            expire(job);
+        }
+        return true;
+    }
+
+    /**
+     * Hand queued jobs to the render scheduler while fewer than max-concurrent are running
+     * Drain loop, so completions that arrive synchronously (cache hits) never recurse
+     */
+    private void dispatch() {
+        if (dispatchRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (running.get() < maxConcurrent && System.currentTimeMillis() >= resumeAt) {
+                ExportJob job = pending.pollFirst();
+                if (job == null) {
+                    break;
+                }
+                dequeued.incrementAndGet();
+                if (job.start()) {
+                    running.incrementAndGet();
+                    run(job);
+                }
+            }
+            missed = dispatchRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void run(ExportJob job) {
+        String source = job.getSource();
+        if (source == null) {
+            // Cancelled between start and here
+            running.decrementAndGet();
+            return;
+        }
+        RenderOptions options = new RenderOptions(job.getPriority(), null, job.cancelToken());
+        plantUMLService.renderAsync(source, job.getFormat(), options)
+            .whenComplete((result, failure) -> {
+                running.decrementAndGet();
+                try {
+                    if (failure == null) {
+                        finish(job, result);
+                    } else {
+                        fail(job, RenderScheduler.unwrap(failure));
+                    }
+                } finally {
+                    dispatch();
+                }
+            });
+    }
+
+    private void finish(ExportJob job, RenderResult result) {
+        Path file = null;
+        if (diskStore) {
+            file = directory.resolve(job.getId() + FILE_SUFFIX);
+            try {
+                Files.write(file, result.getData());
+            } catch (IOException e) {
+                logger.warn("Storing result of job {} failed: {}", job.getId(), e.getMessage());
+                deleteQuietly(file);
+                fail(job, e);
+                return;
+            }
+        }
+        if (!job.complete(diskStore ? null : result, file, result.getSize(), result.getRenderMillis(),
+                          result.isCached())) {
+            // Cancelled while rendering
+            deleteQuietly(file);
+            return;
+        }
+        queuedChars.addAndGet(-job.getSourceChars());
+        completed.incrementAndGet();
+        retainedBytes.addAndGet(job.getRetainedBytes());
+        finished.add(job);
+        logger.debug("Job {} done, {} bytes", job.getId(), result.getSize());
+        sendCallbacks(job);
+        enforceMemoryLimit();
+    }
+
+    private void fail(ExportJob job, IOException error) {
+        if (error instanceof RenderRejectedException && job.requeue()) {
+            // Scheduler saturated by other traffic: retry this job first once it has room again
+            long retryAfterMillis = TimeUnit.SECONDS.toMillis(((RenderRejectedException) error).getRetryAfterSeconds());
+            pending.offerFirst(job);
+            resumeAt = System.currentTimeMillis() + retryAfterMillis;
+            sweeper.schedule(this::dispatch, retryAfterMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (error instanceof RenderCancelledException && job.getStatus() == ExportJob.Status.CANCELLED) {
+            return;
+        }
+        if (!job.fail(error)) {
+            return;
+        }
+        queuedChars.addAndGet(-job.getSourceChars());
+        failed.incrementAndGet();
+        finished.add(job);
+        byKey.remove(job.getKey(), job);
+        logger.warn("Job {} failed: {}", job.getId(), error.getMessage());
+        sendCallbacks(job);
+    }
+
+    private void enforceMemoryLimit() {
+        while (retainedBytes.get() > maxMemoryBytes) {
+            ExportJob oldest = finished.poll();
+            if (oldest == null) {
+                return;
+            }
+            expire(oldest);
+        }
+    }
+
+    /**
+     * Drop finished jobs past their retention time
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        ExportJob oldest;
+        while ((oldest = finished.peek()) != null && expiresAt(oldest) <= now) {
+            finished.poll();
+            expire(oldest);
+        }
+        if (!pending.isEmpty()) {
+            dispatch();
+        }
+    }
+
+    private void expire(ExportJob job) {
+        if (!jobs.remove(job.getId(), job)) {
+            return;
+        }
+        byKey.remove(job.getKey(), job);
+        for (String handle : job.getHandles()) {
+            handles.remove(handle, job);
+        }
+        retainedBytes.addAndGet(-job.getRetainedBytes());
+        deleteQuietly(job.getFile());
+        if (job.getStatus() != ExportJob.Status.CANCELLED) {
+            expired.incrementAndGet();
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete job result {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void sendCallbacks(ExportJob job) {
+        job.getCallbacks().forEach((handle, callbackUrl) -> sendCallback(job, handle, callbackUrl));
+    }
+
+    /**
+     * POST the final job status; one attempt, failures are only counted and logged
+     */
+    private void sendCallback(ExportJob job, String handle, String callbackUrl) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("id", handle);
+        payload.put("status", job.getStatus().label());
+        payload.put("format", job.getFormat().name().toLowerCase(Locale.ROOT));
+        if (job.getStatus() == ExportJob.Status.DONE) {
+            payload.put("size", job.getSize());
+            payload.put("resultPath", "/api/plantuml/jobs/" + handle + "/result");
+        } else if (job.getError() != null) {
+            payload.put("error", job.getError().getMessage());
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(callbackUrl))
+                .timeout(Duration.ofMillis(callbackTimeoutMillis))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(payload)))
+                .build();
+        } catch (IOException | IllegalArgumentException e) {
+            callbacksFailed.incrementAndGet();
+            logger.debug("Callback for job {} to {} not sent: {}", job.getId(), callbackUrl, e.getMessage());
+            return;
+        }
+        callbackClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, failure) -> {
+                if (failure == null && response.statusCode() < 300) {
+                    callbacksSent.incrementAndGet();
+                } else {
+                    callbacksFailed.incrementAndGet();
+                    logger.debug("Callback for job {} to {} failed: {}", job.getId(), callbackUrl,
+                                 failure != null ? failure.getMessage() : "HTTP " + response.statusCode());
+                }
+            });
+    }
+
+    public int getQueuedCount() { return pending.size(); }
+    public long getQueuedChars() { return queuedChars.get(); }
+    public int getRunningCount() { return running.get(); }
+    public long getRetainedBytes() { return retainedBytes.get(); }
+    public long getSubmittedCount() { return submitted.get(); }
+    public long getDeduplicatedCount() { return deduplicated.get(); }
+    public long getRejectedCount() { return rejected.get(); }
+    public long getCompletedCount() { return completed.get(); }
+    public long getFailedCount() { return failed.get(); }
+    public long getCancelledCount() { return cancelled.get(); }
+
+    public JobStats getStats() {
+        return new JobStats(enabled, diskStore ? "disk" : "memory", pending.size(), maxQueued, queuedChars.get(),
+                            maxQueuedChars, running.get(),
+                            maxConcurrent, jobs.size(), retainedBytes.get(), submitted.get(), deduplicated.get(),
+                            rejected.get(), completed.get(), failed.get(), cancelled.get(), expired.get(),
+                            callbacksSent.get(), callbacksFailed.get());
+    }
+
+    /**
+     * Outcome of a submission
+     */
+    public static class Submission {
+        private final String id;
+        private final ExportJob job;
+        private final boolean deduplicated;
+
+        Submission(String id, ExportJob job, boolean deduplicated) {
+            this.id = id;
+            this.job = job;
+            this.deduplicated = deduplicated;
+        }
+
+        // Handle id for the status, result and cancel endpoints
+        public String getId() { return id; }
+        public ExportJob getJob() { return job; }
+        public boolean isDeduplicated() { return deduplicated; }
+    }
+
+    /**
+     * Export job statistics
+     */
+    public static class JobStats {
+        private final boolean enabled;
+        private final String store;
+        private final int queued;
+        private final int maxQueued;
+        private final long queuedChars;
+        private final long maxQueuedChars;
+        private final int running;
+        private final int maxConcurrent;
+        private final int retained;
+        private final long retainedBytes;
+        private final long submitted;
+        private final long deduplicated;
+        private final long rejected;
+        private final long completed;
+        private final long failed;
+        private final long cancelled;
+        private final long expired;
+        private final long callbacksSent;
+        private final long callbacksFailed;
+
+        public JobStats(boolean enabled, String store, int queued, int maxQueued, long queuedChars,
+                        long maxQueuedChars, int running, int maxConcurrent,
+                        int retained, long retainedBytes, long submitted, long deduplicated, long rejected,
+                        long completed, long failed, long cancelled, long expired,
+                        long callbacksSent, long callbacksFailed) {
+            this.enabled = enabled;
+            this.store = store;
+            this.queued = queued;
+            this.maxQueued = maxQueued;
+            this.queuedChars = queuedChars;
+            this.maxQueuedChars = maxQueuedChars;
+            this.running = running;
+            this.maxConcurrent = maxConcurrent;
+            this.retained = retained;
+            this.retainedBytes = retainedBytes;
+            this.submitted = submitted;
+            this.deduplicated = deduplicated;
+            this.rejected = rejected;
+            this.completed = completed;
+            this.failed = failed;
+            this.cancelled = cancelled;
+            this.expired = expired;
+            this.callbacksSent = callbacksSent;
+            this.callbacksFailed = callbacksFailed;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public String getStore() { return store; }
+        public int getQueued() { return queued; }
+        public int getMaxQueued() { return maxQueued; }
+        public long getQueuedChars() { return queuedChars; }
+        public long getMaxQueuedChars() { return maxQueuedChars; }
+        public int getRunning() { return running; }
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public int getRetained() { return retained; }
+        public long getRetainedBytes() { return retainedBytes; }
+        public long getSubmitted() { return submitted; }
+        public long getDeduplicated() { return deduplicated; }
+        public long getRejected() { return rejected; }
+        public long getCompleted() { return completed; }
+        public long getFailed() { return failed; }
+        public long getCancelled() { return cancelled; }
+        public long getExpired() { return expired; }
+        public long getCallbacksSent() { return callbacksSent; }
+        public long getCallbacksFailed() { return callbacksFailed; }
+    }
+}
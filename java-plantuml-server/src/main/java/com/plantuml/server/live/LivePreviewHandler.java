@@ -0,0 +1,479 @@
+package com.plantuml.server.live;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plantuml.server.recording.RequestRecorder;
+import com.plantuml.server.service.DiagramBlocks;
+import com.plantuml.server.service.PlantUMLService;
+import com.plantuml.server.service.RenderCancelledException;
+import com.plantuml.server.service.RenderOptions;
+import com.plantuml.server.service.RenderPriority;
+import com.plantuml.server.service.RenderResult;
+import com.plantuml.server.service.RenderScheduler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.sourceforge.plantuml.FileFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Live preview over WebSocket (/api/plantuml/live)
+ *
+ * The client sends its source once and then only edits against the revision the server holds:
+ *   {"type":"source","rev":1,"text":"@startuml..."}
+ *   {"type":"edit","base":1,"rev":2,"edits":[[start,end,"text"],...]}
+ *   {"type":"resync"}                          client lost its SVGs, send everything in full
+ * After each change the document is re-rendered block by block through the render cache, so
+ * unchanged diagrams cost nothing, and the server answers with one message per render:
+ *   {"type":"render","rev":2,"base":1,"diagrams":[{"index":0,"patch":[[start,end,"text"],...]}]}
+ * where each diagram is "unchanged", a "patch" against the SVG sent at revision base, a full "svg",
+ * or an "error". An edit against a stale base is answered with {"type":"resync","rev":n}, upon which
+ * the client sends its full source again.
+ *
+ * Edits arriving during a render are coalesced into the next one. Each session keeps its source and
+ * last-sent SVGs; above plantuml.live.max-session-bytes the SVG baseline is dropped and full SVGs
+ * are sent instead, and sessions idle longer than plantuml.live.idle-timeout-seconds are closed.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "plantuml.live.enabled", havingValue = "true", matchIfMissing = true)
+public class LivePreviewHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LivePreviewHandler.class);
+
+    @Autowired
+    private PlantUMLService plantUMLService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private RequestRecorder requestRecorder;
+
+    @Value("${plantuml.live.max-sessions:200}")
+    private int maxSessions;
+
+    @Value("${plantuml.live.max-source-chars:1000000}")
+    private int maxSourceChars;
+
+    @Value("${plantuml.live.max-session-bytes:16777216}")
+    private long maxSessionBytes;
+
+    @Value("${plantuml.live.idle-timeout-seconds:300}")
+    private long idleTimeoutSeconds;
+
+    // A patch is sent only when smaller than this fraction of the full SVG
+    @Value("${plantuml.live.max-patch-ratio:0.5}")
+    private double maxPatchRatio;
+
+    // Changed SVG elements per diagram beyond which diffing gives up
+    @Value("${plantuml.live.max-diff-edits:512}")
+    private int maxDiffEdits;
+
+    // Unsent output per session before a slow client is disconnected
+    @Value("${plantuml.live.send-buffer-bytes:8388608}")
+    private int sendBufferBytes;
+
+    @Value("${plantuml.live.send-time-limit-ms:10000}")
+    private int sendTimeLimitMillis;
+
+    private final Map<String, LivePreviewSession> sessions = new ConcurrentHashMap<>();
+    // Slots taken against max-sessions, reserved before a session is added and released when it closes
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private ScheduledExecutorService evictor;
+
+    private final AtomicLong rejectedSessions = new AtomicLong();
+    private final AtomicLong evictedSessions = new AtomicLong();
+    private final AtomicLong patchesSent = new AtomicLong();
+    private final AtomicLong fullSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plantuml-live-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodSeconds = Math.max(1, Math.min(30, idleTimeoutSeconds / 2));
+        evictor.scheduleWithFixedDelay(this::evictIdle, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+
+        Gauge.builder("plantuml.live.sessions", sessions, Map::size)
+            .description("Open live preview sessions")
+            .register(registry);
+        FunctionCounter.builder("plantuml.live.patches", patchesSent, AtomicLong::get)
+            .description("Diagrams sent to live preview clients as SVG patches")
+            .register(registry);
+        FunctionCounter.builder("plantuml.live.full", fullSent, AtomicLong::get)
+            .description("Diagrams sent to live preview clients as full SVG")
+            .register(registry);
+        FunctionCounter.builder("plantuml.live.sent", bytesSent, AtomicLong::get)
+            .baseUnit("bytes")
+            .description("Live preview message bytes sent")
+            .register(registry);
+        FunctionCounter.builder("plantuml.live.saved", bytesSaved, AtomicLong::get)
+            .baseUnit("bytes")
+            .description("SVG bytes not sent because a patch or unchanged marker was sent instead")
+            .register(registry);
+
+        logger.info("Live preview enabled: max {} sessions, {}s idle timeout", maxSessions, idleTimeoutSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdownNow();
+        for (LivePreviewSession session : sessions.values()) {
+            close(session, CloseStatus.GOING_AWAY.withReason("Server shutting down"));
+        }
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession socket) throws Exception {
+        int open = openSessions.getAndUpdate(count -> count < maxSessions ? count + 1 : count);
+        if (open >= maxSessions) {
+            rejectedSessions.incrementAndGet();
+            logger.warn("Live preview session rejected, {} sessions open", open);
+            socket.close(CloseStatus.SERVICE_OVERLOAD.withReason("Too many live preview sessions"));
+            return;
+        }
+        // Renders complete on render threads, so sends must be serialized
+        WebSocketSession concurrent = new ConcurrentWebSocketSessionDecorator(socket, sendTimeLimitMillis, sendBufferBytes);
+        sessions.put(socket.getId(), new LivePreviewSession(concurrent));
+        logger.debug("Live preview session {} opened", socket.getId());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession socket, CloseStatus status) {
+        LivePreviewSession session = sessions.remove(socket.getId());
+        if (session == null) {
+            return;
+        }
+        openSessions.decrementAndGet();
+        List<String> tokens;
+        synchronized (session) {
+            tokens = new ArrayList<>(session.getCancelTokens());
+            session.dropBaseline();
+        }
+        for (String token : tokens) {
+            plantUMLService.cancel(token);
+        }
+        logger.debug("Live preview session {} closed: {}", socket.getId(), status);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession socket, TextMessage message) throws Exception {
+        LivePreviewSession session = sessions.get(socket.getId());
+        if (session == null) {
+            return;
+        }
+        session.touch();
+
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            send(session, error(-1, "Malformed message: " + e.getMessage()));
+            return;
+        }
+
+        String type = request.path("type").asText();
+        synchronized (session) {
+            switch (type) {
+                case "source":
+                    session.setSource(request.path("text").asText(), request.path("rev").asInt());
+                    break;
+                case "edit":
+                    if (request.path("base").asInt(-1) != session.getRevision()
+                            || !session.applyEdits(edits(request.path("edits")), request.path("rev").asInt())) {
+                        resyncs.incrementAndGet();
+                        send(session, Map.of("type", "resync", "rev", session.getRevision()));
+                        return;
+                    }
+                    break;
+                case "resync":
+                    session.requestResync();
+                    break;
+                default:
+                    send(session, error(session.getRevision(), "Unknown message type: " + type));
+                    return;
+            }
+
+            if (session.getSource().length() > maxSourceChars) {
+                close(session, CloseStatus.TOO_BIG_TO_PROCESS.withReason(
+                    "Source exceeds " + maxSourceChars + " characters"));
+                return;
+            }
+            if (!"resync".equals(type)) {
+                requestRecorder.record("live", session.getSource(), "svg", RenderPriority.INTERACTIVE.label(), socket.getId());
+            }
+        }
+        scheduleRender(session);
+    }
+
+    private static List<LivePreviewSession.Edit> edits(JsonNode edits) {
+        List<LivePreviewSession.Edit> result = new ArrayList<>();
+        for (JsonNode edit : edits) {
+            result.add(new LivePreviewSession.Edit(edit.path(0).asInt(), edit.path(1).asInt(), edit.path(2).asText()));
+        }
+        return result;
+    }
+
+    /**
+     * Start a render of the current revision unless one is already running
+     */
+    private void scheduleRender(LivePreviewSession session) {
+        String source;
+        int revision;
+        synchronized (session) {
+            if (session.isRendering() || !session.getSocket().isOpen()) {
+                return;
+            }
+            session.setRendering(true);
+            source = session.getSource();
+            revision = session.getRevision();
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<String> blocks = DiagramBlocks.split(source);
+        if (blocks.isEmpty()) {
+            blocks = List.of(source);
+        }
+
+        String sessionId = session.getSocket().getId();
+        List<CompletableFuture<RenderResult>> futures = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            // Per-diagram client id, so only a stale render of the same diagram is superseded
+            String token = sessionId + ":" + revision + ":" + i;
+            synchronized (session) {
+                session.getCancelTokens().add(token);
+            }
+            RenderOptions options = new RenderOptions(RenderPriority.INTERACTIVE, "live:" + sessionId + ":" + i, token);
+            futures.add(plantUMLService.renderAsync(blocks.get(i), FileFormat.SVG, options));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .whenComplete((ignored, failure) -> rendered(session, revision, futures, startTime));
+    }
+
+    private void rendered(LivePreviewSession session, int revision,
+                          List<CompletableFuture<RenderResult>> futures, long startTime) {
+        boolean again;
+        try {
+            Map<String, Object> message = publish(session, revision, futures, System.currentTimeMillis() - startTime);
+            if (message != null) {
+                send(session, message);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Live preview update failed for session {}", session.getSocket().getId(), e);
+        } finally {
+            synchronized (session) {
+                session.setRendering(false);
+                session.getCancelTokens().clear();
+                again = session.getRevision() != revision || session.isResyncRequested();
+            }
+        }
+        if (again) {
+            scheduleRender(session);
+        }
+    }
+
+    /**
+     * Build the render message against what the client holds and make it the new baseline
+     * @return message to send, or null when the render was cancelled
+     */
+    private Map<String, Object> publish(LivePreviewSession session, int revision,
+                                        List<CompletableFuture<RenderResult>> futures, long renderMillis) {
+        synchronized (session) {
+            if (!session.getSocket().isOpen()) {
+                return null;
+            }
+            List<String> previous = session.getSentSvgs();
+            List<String> sent = new ArrayList<>();
+            List<Map<String, Object>> diagrams = new ArrayList<>();
+            int rendered = 0;
+
+            for (int i = 0; i < futures.size(); i++) {
+                Map<String, Object> diagram = new HashMap<>();
+                diagram.put("index", i);
+                diagrams.add(diagram);
+
+                RenderResult result;
+                try {
+                    result = futures.get(i).join();
+                } catch (RuntimeException e) {
+                    IOException failure = RenderScheduler.unwrap(e);
+                    if (failure instanceof RenderCancelledException) {
+                        return null;
+                    }
+                    diagram.put("error", "Failed to generate diagram: " + failure.getMessage());
+                    sent.add(null);
+                    continue;
+                }
+                if (!result.isCached()) {
+                    rendered++;
+                }
+
+                String svg = result.asText();
+                sent.add(svg);
+                String before = i < previous.size() ? previous.get(i) : null;
+                if (before == null) {
+                    diagram.put("svg", svg);
+                    fullSent.incrementAndGet();
+                } else if (before.equals(svg)) {
+                    diagram.put("unchanged", true);
+                    bytesSaved.addAndGet(svg.length());
+                } else {
+                    List<SvgDiff.Hunk> hunks = SvgDiff.diff(before, svg, maxDiffEdits);
+                    int patchSize = hunks == null ? Integer.MAX_VALUE : SvgDiff.patchSize(hunks);
+                    if (patchSize < svg.length() * maxPatchRatio) {
+                        diagram.put("patch", hunks.stream()
+                            .map(hunk -> List.of(hunk.getStart(), hunk.getEnd(), hunk.getText()))
+                            .collect(Collectors.toList()));
+                        patchesSent.incrementAndGet();
+                        bytesSaved.addAndGet(svg.length() - patchSize);
+                    } else {
+                        diagram.put("svg", svg);
+                        fullSent.incrementAndGet();
+                    }
+                }
+            }
+
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", "render");
+            message.put("rev", revision);
+            message.put("base", session.getSentRevision());
+            message.put("diagrams", diagrams);
+            message.put("count", diagrams.size());
+            message.put("rendered", rendered);
+            message.put("renderMs", renderMillis);
+
+            session.setSent(sent, revision);
+            if (session.retainedBytes() > maxSessionBytes) {
+                // Over budget: keep the source but diff against nothing, so the next render goes in full
+                session.dropBaseline();
+            }
+            return message;
+        }
+    }
+
+    private void send(LivePreviewSession session, Map<String, Object> message) {
+        try {
+            String payload = objectMapper.writeValueAsString(message);
+            session.getSocket().sendMessage(new TextMessage(payload));
+            bytesSent.addAndGet(payload.length());
+        } catch (SessionLimitExceededException e) {
+            // Client reads slower than we render: the decorator refuses further sends, so drop the session
+            logger.info("Closing live preview session {}: {}", session.getSocket().getId(), e.getMessage());
+            close(session, CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Live preview send to session {} failed: {}", session.getSocket().getId(), e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> error(int revision, String error) {
+        return Map.of("type", "error", "rev", revision, "error", error);
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        for (LivePreviewSession session : sessions.values()) {
+            if (session.getLastActivity() < cutoff) {
+                evictedSessions.incrementAndGet();
+                close(session, CloseStatus.GOING_AWAY.withReason("Idle timeout"));
+            }
+        }
+    }
+
+    private void close(LivePreviewSession session, CloseStatus status) {
+        try {
+            session.getSocket().close(status);
+        } catch (IOException e) {
+            logger.debug("Closing live preview session {} failed: {}", session.getSocket().getId(), e.getMessage());
+        }
+    }
+
+    public LiveStats getStats() {
+        long retained = 0;
+        for (LivePreviewSession session : sessions.values()) {
+            synchronized (session) {
+                retained += session.retainedBytes();
+            }
+        }
+        return new LiveStats(sessions.size(), maxSessions, retained, rejectedSessions.get(), evictedSessions.get(),
+                             patchesSent.get(), fullSent.get(), bytesSent.get(), bytesSaved.get(), resyncs.get());
+    }
+
+    /**
+     * Live preview statistics
+     */
+    public static class LiveStats {
+        private final int sessions;
+        private final int maxSessions;
+        private final long retainedBytes;
+        private final long rejected;
+        private final long evicted;
+        private final long patches;
+        private final long full;
+        private final long bytesSent;
+        private final long bytesSaved;
+        private final long resyncs;
+
+        public LiveStats(int sessions, int maxSessions, long retainedBytes, long rejected, long evicted,
+                         long patches, long full, long bytesSent, long bytesSaved, long resyncs) {
+            this.sessions = sessions;
+            this.maxSessions = maxSessions;
+            this.retainedBytes = retainedBytes;
+            this.rejected = rejected;
+            this.evicted = evicted;
+            this.patches = patches;
+            this.full = full;
+            this.bytesSent = bytesSent;
+            this.bytesSaved = bytesSaved;
+            this.resyncs = resyncs;
+        }
+
+        public int getSessions() { return sessions; }
+        public int getMaxSessions() { return maxSessions; }
+        public long getRetainedBytes() { return retainedBytes; }
+        public long getRejected() { return rejected; }
+        public long getEvicted() { return evicted; }
+        public long getPatches() { return patches; }
+        public long getFull() { return full; }
+        public long getBytesSent() { return bytesSent; }
+        public long getBytesSaved() { return bytesSaved; }
+        public long getResyncs() { return resyncs; }
+    }
+}
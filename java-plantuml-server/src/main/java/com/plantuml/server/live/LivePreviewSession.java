@@ -0,0 +1,132 @@
+package com.plantuml.server.live;
+
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Live preview state of one WebSocket connection
+ * Holds the client's current source, its revision and the SVGs the client last received, which are
+ * the base for the next patch. All access goes through the owning handler under this object's lock.
+ */
+class LivePreviewSession {
+
+    private final WebSocketSession socket;
+
+    private String source = "";
+    private int revision;
+
+    // One render cycle at a time; edits arriving meanwhile are picked up when it completes
+    private boolean rendering;
+    private final List<String> cancelTokens = new ArrayList<>();
+
+    // SVG per diagram as last sent, null entries force a full SVG for that diagram
+    private List<String> sentSvgs = new ArrayList<>();
+    private int sentRevision = -1;
+    private boolean resyncRequested;
+
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    LivePreviewSession(WebSocketSession socket) {
+        this.socket = socket;
+    }
+
+    WebSocketSession getSocket() { return socket; }
+    String getSource() { return source; }
+    int getRevision() { return revision; }
+    long getLastActivity() { return lastActivity; }
+
+    void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Replace the whole source
+     */
+    void setSource(String source, int revision) {
+        this.source = source;
+        this.revision = revision;
+    }
+
+    /**
+     * Apply edits made against the current revision
+     * Each edit is {start, end, text} in the coordinates left by the previous edit
+     * @return false if an edit does not fit the source, leaving it unchanged
+     */
+    boolean applyEdits(List<Edit> edits, int revision) {
+        StringBuilder updated = new StringBuilder(source);
+        for (Edit edit : edits) {
+            if (edit.start < 0 || edit.end < edit.start || edit.end > updated.length()) {
+                return false;
+            }
+            updated.replace(edit.start, edit.end, edit.text);
+        }
+        this.source = updated.toString();
+        this.revision = revision;
+        return true;
+    }
+
+    boolean isRendering() { return rendering; }
+
+    void setRendering(boolean rendering) {
+        this.rendering = rendering;
+    }
+
+    List<String> getCancelTokens() { return cancelTokens; }
+
+    List<String> getSentSvgs() { return sentSvgs; }
+    int getSentRevision() { return sentRevision; }
+
+    void setSent(List<String> sentSvgs, int sentRevision) {
+        this.sentSvgs = sentSvgs;
+        this.sentRevision = sentRevision;
+        this.resyncRequested = false;
+    }
+
+    boolean isResyncRequested() { return resyncRequested; }
+
+    /**
+     * Client asked for everything in full, even if nothing changed since the last render
+     */
+    void requestResync() {
+        resyncRequested = true;
+        dropBaseline();
+    }
+
+    /**
+     * Forget the client's SVGs so the next render is sent in full
+     */
+    void dropBaseline() {
+        sentSvgs = new ArrayList<>();
+        sentRevision = -1;
+    }
+
+    /**
+     * Approximate retained heap: source plus baseline SVGs, two bytes per char
+     */
+    long retainedBytes() {
+        long chars = source.length();
+        for (String svg : sentSvgs) {
+            if (svg != null) {
+                chars += svg.length();
+            }
+        }
+        return chars * 2;
+    }
+
+    /**
+     * Source edit sent by the client
+     */
+    static final class Edit {
+        final int start;
+        final int end;
+        final String text;
+
+        Edit(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.plantuml.server.live;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Element-level diff between two SVG documents
+ * Splits both documents at '<' so every tag and text run is one token, trims the common prefix and
+ * suffix, and runs a bounded Myers diff over the rest. The result is a list of hunks that rewrite
+ * the old document into the new one; applied from last to first, offsets stay valid.
+ */
+public final class SvgDiff {
+
+    private SvgDiff() {
+    }
+
+    /**
+     * Replace old[start, end) with text
+     */
+    public static final class Hunk {
+        private final int start;
+        private final int end;
+        private final String text;
+
+        Hunk(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+        public String getText() { return text; }
+    }
+
+    /**
+     * Diff two documents
+     * @param before document the client holds
+     * @param after newly rendered document
+     * @param maxEdits give up beyond this many inserted plus deleted tokens
+     * @return hunks in document order, empty when identical, null when the documents differ too much
+     */
+    public static List<Hunk> diff(String before, String after, int maxEdits) {
+        List<Hunk> hunks = new ArrayList<>();
+        if (before.equals(after)) {
+            return hunks;
+        }
+
+        int[] oldStarts = tokenStarts(before);
+        int[] newStarts = tokenStarts(after);
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = tokenIds(before, oldStarts, ids);
+        int[] b = tokenIds(after, newStarts, ids);
+
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix] == b[b.length - 1 - suffix]) {
+            suffix++;
+        }
+
+        int n = a.length - prefix - suffix;
+        int m = b.length - prefix - suffix;
+        boolean[] keptOld = new boolean[n];
+        boolean[] keptNew = new boolean[m];
+        if (!align(a, prefix, n, b, prefix, m, maxEdits, keptOld, keptNew)) {
+            return null;
+        }
+
+        // Kept tokens pair up in order; everything between two pairs is one hunk
+        int i = 0;
+        int j = 0;
+        while (i < n || j < m) {
+            if (i < n && j < m && keptOld[i] && keptNew[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int oldFrom = i;
+            int newFrom = j;
+            while (i < n && !keptOld[i]) {
+                i++;
+            }
+            while (j < m && !keptNew[j]) {
+                j++;
+            }
+            hunks.add(new Hunk(
+                offset(oldStarts, before, prefix + oldFrom),
+                offset(oldStarts, before, prefix + i),
+                after.substring(offset(newStarts, after, prefix + newFrom), offset(newStarts, after, prefix + j))));
+        }
+        return hunks;
+    }
+
+    /**
+     * Approximate encoded size of a patch, for deciding whether it beats the full document
+     */
+    public static int patchSize(List<Hunk> hunks) {
+        int size = 0;
+        for (Hunk hunk : hunks) {
+            size += hunk.text.length() + 24;
+        }
+        return size;
+    }
+
+    /**
+     * Bounded Myers shortest edit script, marking tokens that survive on both sides
+     * @return false when more than maxEdits edits are needed
+     */
+    private static boolean align(int[] a, int aFrom, int n, int[] b, int bFrom, int m, int maxEdits,
+                                 boolean[] keptOld, boolean[] keptNew) {
+        int max = Math.min(n + m, maxEdits);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= max; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+                    ? v[offset + k + 1]
+                    : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aFrom + x] == b[bFrom + y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    backtrack(trace, offset, d, n, m, keptOld, keptNew);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void backtrack(List<int[]> trace, int offset, int edits, int x, int y,
+                                  boolean[] keptOld, boolean[] keptNew) {
+        for (int d = edits; d >= 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int prevK = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) ? k + 1 : k - 1;
+            int prevX = d == 0 ? 0 : v[offset + prevK];
+            int prevY = d == 0 ? 0 : prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+                keptOld[x] = true;
+                keptNew[y] = true;
+            }
+            x = prevX;
+            y = prevY;
+        }
+    }
+
+    /**
+     * Token start offsets: position 0 and every '<'
+     */
+    private static int[] tokenStarts(String document) {
+        int count = 1;
+        for (int i = 1; i < document.length(); i++) {
+            if (document.charAt(i) == '<') {
+                count++;
+            }
+        }
+        int[] starts = new int[count];
+        int token = 1;
+        for (int i = 1; i < document.length(); i++) {
+            if (document.charAt(i) == '<') {
+                starts[token++] = i;
+            }
+        }
+        return starts;
+    }
+
+    private static int[] tokenIds(String document, int[] starts, Map<String, Integer> ids) {
+        int[] tokens = new int[starts.length];
+        for (int t = 0; t < starts.length; t++) {
+            String token = document.substring(starts[t], offset(starts, document, t + 1));
+            Integer id = ids.get(token);
+            if (id == null) {
+                id = ids.size();
+                ids.put(token, id);
+            }
+            tokens[t] = id;
+        }
+        return tokens;
+    }
+
+    private static int offset(int[] starts, String document, int token) {
+        return token < starts.length ? starts[token] : document.length();
+    }
+}
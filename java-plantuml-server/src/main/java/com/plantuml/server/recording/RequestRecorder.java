@@ -0,0 +1,449 @@
+package com.plantuml.server.recording;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plantuml.server.service.DiagramBlocks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Opt-in recorder of anonymized request shapes for load-test replay (java-plantuml-loadtest)
+ *
+ * Each sampled request becomes one NDJSON line with its endpoint, format, priority, timing and the
+ * shape of its source: length, lines, diagram blocks, @start type, a coarse diagram kind and how many
+ * characters changed since the same client's previous request. Clients and sources appear only as
+ * salted hashes, so repeats and per-client edit sequences are visible but no diagram text is written.
+ * Requests are handed to a daemon writer thread; when it falls behind, records are dropped rather
+ * than slowing requests down. Recording stops once the file reaches plantuml.recording.max-bytes.
+ */
+@Component
+public class RequestRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestRecorder.class);
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    // Source characters held by queued records before new ones are dropped
+    private static final long MAX_QUEUED_CHARS = 64L * 1024 * 1024;
+    // Previous source per client, kept to measure edit size
+    private static final int MAX_TRACKED_CLIENTS = 1_000;
+    private static final int MAX_TRACKED_SOURCE_CHARS = 256 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    // "Alice -> Bob : hello", the usual first line of a sequence diagram
+    private static final Pattern MESSAGE_ARROW = Pattern.compile("^\\s*\\w+\\s*-+>\\s*\\w+\\s*:", Pattern.MULTILINE);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${plantuml.recording.enabled:false}")
+    private boolean enabled;
+
+    // Directory for recording files, one per server start
+    @Value("${plantuml.recording.path:${java.io.tmpdir}/plantuml-recordings}")
+    private String path;
+
+    // Share of clients recorded; requests without a client id are sampled individually
+    @Value("${plantuml.recording.sample-rate:1.0}")
+    private double sampleRate;
+
+    @Value("${plantuml.recording.max-bytes:268435456}")
+    private long maxBytes;
+
+    // Hash salt, empty = random per start, so hashes cannot be joined across recordings
+    @Value("${plantuml.recording.salt:}")
+    private String salt;
+
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong queuedChars = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+
+    // Writer thread only
+    private final Map<String, String> previousSources = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_TRACKED_CLIENTS;
+        }
+    };
+
+    private volatile boolean active;
+    private Path file;
+    private Writer writer;
+    private Thread writerThread;
+    private long startedAt;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (salt == null || salt.isEmpty()) {
+            byte[] random = new byte[16];
+            new SecureRandom().nextBytes(random);
+            salt = hex(random, random.length);
+        }
+        try {
+            Path directory = Paths.get(path);
+            Files.createDirectories(directory);
+            String name = "recording-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) + ".ndjson";
+            file = directory.resolve(name);
+            writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 64 * 1024);
+        } catch (IOException e) {
+            logger.warn("Request recording disabled, cannot open {}: {}", path, e.getMessage());
+            return;
+        }
+        startedAt = System.currentTimeMillis();
+        active = true;
+        writerThread = new Thread(this::writeLoop, "plantuml-request-recorder");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Recording request shapes to {} (sample rate {})", file, sampleRate);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writerThread == null) {
+            return;
+        }
+        // No interrupt: it would close the file channel mid-write and lose the tail. The writer sees
+        // active=false within one poll interval, writes what is queued and closes the file.
+        active = false;
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Record one request
+     * @param endpoint endpoint name as replayed by the load test, e.g. svg, svg-raw, png, get-svg, live
+     * @param source PlantUML markup
+     * @param format svg or png
+     * @param priority render priority label
+     * @param clientId X-Client-Id or live session id, null when the client is anonymous
+     */
+    public void record(String endpoint, String source, String format, String priority, String clientId) {
+        if (!active || source == null) {
+            return;
+        }
+        enqueue(new Request(endpoint, List.of(source), format, priority, clientId));
+    }
+
+    /**
+     * Record a request carrying several sources (batch)
+     */
+    public void record(String endpoint, List<String> sources, String format, String priority, String clientId) {
+        if (!active || sources == null || sources.isEmpty()) {
+            return;
+        }
+        enqueue(new Request(endpoint, sources, format, priority, clientId));
+    }
+
+    private void enqueue(Request request) {
+        if (!sampled(request.clientId)) {
+            return;
+        }
+        long chars = request.chars();
+        if (queuedChars.addAndGet(chars) > MAX_QUEUED_CHARS || !queue.offer(request)) {
+            queuedChars.addAndGet(-chars);
+            dropped.incrementAndGet();
+        }
+    }
+
+    private boolean sampled(String clientId) {
+        if (sampleRate >= 1.0) {
+            return true;
+        }
+        if (clientId == null) {
+            return ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+        // Whole clients are kept or skipped, so recorded edit sequences stay complete
+        return Math.floorMod(clientId.hashCode(), 10_000) < sampleRate * 10_000;
+    }
+
+    private void writeLoop() {
+        long lastFlush = System.currentTimeMillis();
+        try {
+            while (active || !queue.isEmpty()) {
+                Request request;
+                try {
+                    request = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // Not interrupted by shutdown(); stop taking new records and drain the queue
+                    request = queue.poll();
+                    active = false;
+                }
+                if (request != null) {
+                    queuedChars.addAndGet(-request.chars());
+                    write(request);
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastFlush >= FLUSH_INTERVAL_MS) {
+                    writer.flush();
+                    lastFlush = now;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Request recording stopped: {}", e.getMessage());
+        } finally {
+            active = false;
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+            logger.info("Request recording closed: {} records in {}", recorded.get(), file);
+        }
+    }
+
+    private void write(Request request) throws IOException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("t", request.receivedAt - startedAt);
+        line.put("endpoint", request.endpoint);
+        line.put("format", request.format);
+        line.put("priority", request.priority);
+        String client = request.clientId != null ? hash(request.clientId) : null;
+        if (client != null) {
+            line.put("client", client);
+        }
+
+        if (request.sources.size() == 1) {
+            String source = request.sources.get(0);
+            describe(source, line);
+            line.put("delta", delta(client, source));
+        } else {
+            long chars = 0;
+            long lines = 0;
+            for (String source : request.sources) {
+                chars += source.length();
+                lines += countLines(source);
+            }
+            line.put("items", request.sources.size());
+            line.put("chars", chars);
+            line.put("lines", lines);
+            line.put("type", type(request.sources.get(0)));
+            line.put("kind", kind(request.sources.get(0)));
+        }
+
+        byte[] bytes = objectMapper.writeValueAsBytes(line);
+        if (writtenBytes.get() + bytes.length + 1 > maxBytes) {
+            logger.info("Request recording reached {} bytes, stopping", maxBytes);
+            active = false;
+            queue.clear();
+            queuedChars.set(0);
+            return;
+        }
+        writer.write(new String(bytes, StandardCharsets.UTF_8));
+        writer.write('\n');
+        writtenBytes.addAndGet(bytes.length + 1);
+        recorded.incrementAndGet();
+    }
+
+    private void describe(String source, Map<String, Object> line) {
+        line.put("source", hash(source));
+        line.put("chars", source.length());
+        line.put("lines", countLines(source));
+        line.put("blocks", Math.max(1, DiagramBlocks.split(source).size()));
+        line.put("type", type(source));
+        line.put("kind", kind(source));
+    }
+
+    /**
+     * Characters changed since the client's previous source: the span between common prefix and suffix,
+     * -1 for the first request of a client or after its previous source was too large to keep
+     */
+    private int delta(String client, String source) {
+        if (client == null) {
+            return -1;
+        }
+        String previous = source.length() <= MAX_TRACKED_SOURCE_CHARS
+            ? previousSources.put(client, source)
+            : previousSources.remove(client);
+        if (previous == null || source.length() > MAX_TRACKED_SOURCE_CHARS) {
+            return -1;
+        }
+        int prefix = 0;
+        int max = Math.min(previous.length(), source.length());
+        while (prefix < max && previous.charAt(prefix) == source.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+               && previous.charAt(previous.length() - 1 - suffix) == source.charAt(source.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return Math.max(previous.length(), source.length()) - prefix - suffix;
+    }
+
+    /**
+     * Keyword of the first @start line, e.g. uml, mindmap, gantt
+     */
+    static String type(String source) {
+        int start = source.indexOf("@start");
+        if (start < 0) {
+            return "none";
+        }
+        int end = start + "@start".length();
+        while (end < source.length() && Character.isLetter(source.charAt(end))) {
+            end++;
+        }
+        return source.substring(start + "@start".length(), end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Coarse diagram kind of @startuml sources, judged from the first keywords found
+     */
+    static String kind(String source) {
+        String type = type(source);
+        if (!"uml".equals(type)) {
+            return type;
+        }
+        String text = source.toLowerCase(Locale.ROOT);
+        if (text.contains("participant ") || MESSAGE_ARROW.matcher(text).find()) {
+            return "sequence";
+        }
+        if (text.contains("class ") || text.contains("interface ") || text.contains("enum ")) {
+            return "class";
+        }
+        if (text.contains("state ") || text.contains("[*]")) {
+            return "state";
+        }
+        if (text.contains("usecase") || text.contains("actor ")) {
+            return "usecase";
+        }
+        if (text.contains("component ") || text.contains("node ") || text.contains("database ")) {
+            return "component";
+        }
+        if (text.contains("start\n") || text.contains("\n:") || text.contains("endif")) {
+            return "activity";
+        }
+        return "other";
+    }
+
+    private static long countLines(String source) {
+        long lines = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt.getBytes(StandardCharsets.UTF_8));
+            return hex(digest.digest(value.getBytes(StandardCharsets.UTF_8)), 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes, int length) {
+        StringBuilder hex = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            hex.append(String.format("%02x", bytes[i]));
+        }
+        return hex.toString();
+    }
+
+    public long getRecordedCount() { return recorded.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+
+    public RecordingStats getStats() {
+        return new RecordingStats(active, file != null ? file.toString() : null, sampleRate,
+                                  recorded.get(), dropped.get(), writtenBytes.get(), maxBytes);
+    }
+
+    /**
+     * Request captured on the request thread; everything derived from the source is computed by the writer
+     */
+    private static class Request {
+        private final long receivedAt = System.currentTimeMillis();
+        private final String endpoint;
+        private final List<String> sources;
+        private final String format;
+        private final String priority;
+        private final String clientId;
+
+        Request(String endpoint, List<String> sources, String format, String priority, String clientId) {
+            this.endpoint = endpoint;
+            this.sources = sources;
+            this.format = format;
+            this.priority = priority;
+            this.clientId = clientId;
+        }
+
+        long chars() {
+            long chars = 0;
+            for (String source : sources) {
+                chars += source.length();
+            }
+            return chars;
+        }
+    }
+
+    /**
+     * Request recording statistics
+     */
+    public static class RecordingStats {
+        private final boolean active;
+        private final String file;
+        private final double sampleRate;
+        private final long recorded;
+        private final long dropped;
+        private final long bytes;
+        private final long maxBytes;
+
+        public RecordingStats(boolean active, String file, double sampleRate, long recorded, long dropped,
+                              long bytes, long maxBytes) {
+            this.active = active;
+            this.file = file;
+            this.sampleRate = sampleRate;
+            this.recorded = recorded;
+            this.dropped = dropped;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+        }
+
+        public boolean isActive() { return active; }
+        public String getFile() { return file; }
+        public double getSampleRate() { return sampleRate; }
+        public long getRecorded() { return recorded; }
+        public long getDropped() { return dropped; }
+        public long getBytes() { return bytes; }
+        public long getMaxBytes() { return maxBytes; }
+    }
+}
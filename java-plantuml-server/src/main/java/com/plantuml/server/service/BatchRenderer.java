@@ -0,0 +1,216 @@
+package com.plantuml.server.service;
+
+import net.sourceforge.plantuml.FileFormat;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Batch diagram rendering
+ * Renders many diagrams in parallel, at most max-parallelism at a time,
+ * rendering identical sources only once and reporting each item as soon as it finishes
+ * Batch renders use the bulk scheduler lane, so interactive preview overtakes them;
+ * renders the scheduler refuses are retried after its Retry-After, for up to retry-ms
+ */
+@Component
+public class BatchRenderer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchRenderer.class);
+
+    @Autowired
+    private PlantUMLService plantUMLService;
+
+    @Value("${plantuml.batch.max-parallelism:0}")
+    private int maxParallelism;
+
+    @Value("${plantuml.batch.max-items:500}")
+    private int maxItems;
+
+    // How long a batch keeps retrying refused renders before reporting them as rejected
+    @Value("${plantuml.batch.retry-ms:120000}")
+    private long retryMillis;
+
+    private ScheduledExecutorService retryTimer;
+
+    @PostConstruct
+    public void init() {
+        retryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plantuml-batch-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryTimer.shutdownNow();
+    }
+
+    /**
+     * One diagram of a batch
+     */
+    public static class Item {
+        private final String source;
+        private final FileFormat format;
+
+        public Item(String source, FileFormat format) {
+            this.source = source;
+            this.format = format;
+        }
+
+        public String getSource() { return source; }
+        public FileFormat getFormat() { return format; }
+    }
+
+    /**
+     * Outcome of one batch item, either a result or an error
+     */
+    public static class ItemResult {
+        private final int index;
+        private final RenderResult result;
+        private final IOException error;
+        private final boolean duplicate;
+        private final long durationMillis;
+
+        ItemResult(int index, RenderResult result, IOException error, boolean duplicate, long durationMillis) {
+            this.index = index;
+            this.result = result;
+            this.error = error;
+            this.duplicate = duplicate;
+            this.durationMillis = durationMillis;
+        }
+
+        public int getIndex() { return index; }
+        public RenderResult getResult() { return result; }
+        public IOException getError() { return error; }
+        public boolean isSuccess() { return error == null; }
+        public boolean isDuplicate() { return duplicate; }
+        public long getDurationMillis() { return durationMillis; }
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Start rendering a batch
+     * Returns immediately; the listener is called once per item from render threads
+     * @param items diagrams to render
+     * @param listener receives every item result, in completion order
+     * @return number of distinct renders in the batch
+     */
+    public int renderAll(List<Item> items, Consumer<ItemResult> listener) {
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("Batch exceeds " + maxItems + " items");
+        }
+
+        // Group identical sources so each renders once
+        Map<String, List<Integer>> byKey = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            String key = plantUMLService.cacheKey(item.getSource(), item.getFormat());
+            byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+
+        List<List<Integer>> groups = new ArrayList<>(byKey.values());
+        int parallelism = maxParallelism > 0 ? maxParallelism : Runtime.getRuntime().availableProcessors();
+        logger.info("Rendering batch of {} items ({} distinct), parallelism {}", items.size(), groups.size(), parallelism);
+
+        new Batch(items, groups, listener, parallelism).dispatch();
+        return groups.size();
+    }
+
+    /**
+     * Sliding window over the distinct renders of one batch
+     */
+    private class Batch {
+        private final List<Item> items;
+        private final List<List<Integer>> groups;
+        private final Consumer<ItemResult> listener;
+        private final int parallelism;
+        private final long retryUntil = System.currentTimeMillis() + retryMillis;
+        // Positions of groups not yet started, refused ones back at the front
+        private final ConcurrentLinkedDeque<Integer> pending = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger dispatchRequests = new AtomicInteger();
+        private volatile long resumeAt;
+
+        Batch(List<Item> items, List<List<Integer>> groups, Consumer<ItemResult> listener, int parallelism) {
+            this.items = items;
+            this.groups = groups;
+            this.listener = listener;
+            this.parallelism = parallelism;
+            for (int i = 0; i < groups.size(); i++) {
+                pending.add(i);
+            }
+        }
+
+        /**
+         * Start pending renders while fewer than max-parallelism are running
+         * Drain loop, so completions that arrive synchronously (cache hits) never recurse
+         */
+        void dispatch() {
+            if (dispatchRequests.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (running.get() < parallelism && System.currentTimeMillis() >= resumeAt) {
+                    Integer position = pending.pollFirst();
+                    if (position == null) {
+                        break;
+                    }
+                    running.incrementAndGet();
+                    start(position);
+                }
+                missed = dispatchRequests.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void start(int position) {
+            List<Integer> indices = groups.get(position);
+            Item item = items.get(indices.get(0));
+            long startTime = System.currentTimeMillis();
+
+            plantUMLService.renderAsync(item.getSource(), item.getFormat(), RenderOptions.BULK)
+                .whenComplete((result, failure) -> {
+                    running.decrementAndGet();
+                    try {
+                        IOException error = failure == null ? null : RenderScheduler.unwrap(failure);
+                        if (error instanceof RenderRejectedException && System.currentTimeMillis() < retryUntil) {
+                            // Scheduler saturated by other traffic: retry this render first once it has room again
+                            long retryAfterMillis = TimeUnit.SECONDS.toMillis(
+                                ((RenderRejectedException) error).getRetryAfterSeconds());
+                            pending.offerFirst(position);
+                            resumeAt = System.currentTimeMillis() + retryAfterMillis;
+                            retryTimer.schedule(this::dispatch, retryAfterMillis, TimeUnit.MILLISECONDS);
+                            return;
+                        }
+                        long duration = System.currentTimeMillis() - startTime;
+                        for (int i = 0; i < indices.size(); i++) {
+                            listener.accept(new ItemResult(indices.get(i), result, error, i > 0, duration));
+                        }
+                    } finally {
+                        dispatch();
+                    }
+                });
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.plantuml.server.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a PlantUML document into its @start...@end blocks
+ * Each block is a complete diagram source that renders and caches on its own
+ */
+public final class DiagramBlocks {
+
+    private static final Pattern START = Pattern.compile("^\\s*@start\\w+.*$");
+    private static final Pattern END = Pattern.compile("^\\s*@end\\w+\\s*$");
+
+    private DiagramBlocks() {
+    }
+
+    /**
+     * Split a document into diagram sources
+     * Text outside blocks is ignored, as PlantUML does; an unterminated last block is kept as-is
+     * @param source PlantUML document
+     * @return block sources in document order, empty if there is no @start line
+     */
+    public static List<String> split(String source) {
+        List<String> blocks = new ArrayList<>();
+        StringBuilder current = null;
+
+        for (String line : source.split("\\r?\\n|\\r", -1)) {
+            if (current == null) {
+                if (START.matcher(line).matches()) {
+                    current = new StringBuilder(line).append('\n');
+                }
+                continue;
+            }
+            current.append(line).append('\n');
+            if (END.matcher(line).matches()) {
+                blocks.add(current.toString());
+                current = null;
+            }
+        }
+
+        if (current != null) {
+            blocks.add(current.toString());
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,721 @@
+package com.plantuml.server.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent on-disk render cache, the tier below {@link RenderCache}
+ *
+ * Renders are appended to segment files (segment-N.dat) in a directory named after the
+ * renderer fingerprint, so a PlantUML or Graphviz upgrade starts from an empty directory
+ * and the old one is deleted. Only directories holding the cache's version marker are ever
+ * deleted, never other contents of the configured path. When the disk budget is exceeded
+ * the oldest segment is dropped as a whole (FIFO by segment).
+ *
+ * A directory belongs to one JVM at a time (exclusive lock on cache.lock); a second server
+ * on the same path runs without the disk tier instead of appending to the same segments.
+ *
+ * Each record carries a CRC32 of its header and payload. The key index is written to index.bin
+ * on clean shutdown and loaded at startup; after a crash the segments are scanned instead and
+ * each segment is cut off at its first torn or corrupt record.
+ * Hits are read with positional reads into a heap array, or streamed with FileChannel.transferTo.
+ */
+@Component
+public class DiskRenderCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskRenderCache.class);
+
+    private static final int RECORD_MAGIC = 0x50554D4C; // "PUML"
+    private static final int INDEX_MAGIC = 0x50554D49;  // "PUMI"
+    private static final int RECORD_PREFIX_BYTES = 16;  // magic, header length, data length, CRC32
+    // Part of the directory name, so a record layout change starts from an empty directory
+    private static final int FORMAT_VERSION = 2;
+    private static final int SCAN_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_DESCRIPTION_CHARS = 1024;
+    private static final String INDEX_FILE = "index.bin";
+    private static final String VERSION_FILE = "cache.version";
+    private static final String LOCK_FILE = "cache.lock";
+
+    @Value("${plantuml.cache.disk.enabled:false}")
+    private boolean enabled;
+
+    @Value("${plantuml.cache.disk.path:${java.io.tmpdir}/plantuml-render-cache}")
+    private String path;
+
+    @Value("${plantuml.cache.disk.max-bytes:1073741824}")
+    private long maxBytes;
+
+    @Value("${plantuml.cache.disk.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    private Path directory;
+    private boolean open;
+    private FileChannel lockChannel;
+
+    // Segments by id, oldest first; the last one takes appends
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<String, Location> index = new HashMap<>();
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong evictedSegments = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Open the cache directory for a renderer fingerprint
+     * Called by PlantUMLService once the fingerprint is known
+     * @param fingerprint PlantUML/Graphviz version string
+     */
+    public synchronized void open(String fingerprint) {
+        if (!enabled || open) {
+            return;
+        }
+        segmentBytes = Math.max(1024 * 1024, Math.min(segmentBytes, maxBytes / 4));
+        Path root = Paths.get(path).toAbsolutePath();
+        String version = RenderCache.key("", "disk-v" + FORMAT_VERSION, fingerprint).substring(0, 16);
+        directory = root.resolve(version);
+
+        try {
+            Files.createDirectories(directory);
+            lockChannel = lock(directory);
+            if (lockChannel == null) {
+                logger.warn("Disk render cache disabled, {} is in use by another process", directory);
+                return;
+            }
+            Files.write(directory.resolve(VERSION_FILE), fingerprint.getBytes(StandardCharsets.UTF_8));
+            deleteOtherVersions(root, version);
+            if (!loadIndex()) {
+                scanSegments();
+            }
+            if (segments.isEmpty()) {
+                createSegment(1);
+            }
+            open = true;
+            logger.info("Disk render cache at {}: {} entries, {} bytes in {} segments",
+                        directory, index.size(), totalBytes, segments.size());
+        } catch (IOException e) {
+            logger.warn("Disk render cache disabled, cannot open {}: {}", directory, e.getMessage());
+            closeSegments();
+            unlock();
+        }
+    }
+
+    /**
+     * Write the index and close all segments
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            writeIndex();
+        } catch (IOException e) {
+            logger.warn("Could not write disk cache index, segments will be rescanned: {}", e.getMessage());
+        }
+        closeSegments();
+        unlock();
+    }
+
+    /**
+     * Get a stored result or load and store it
+     * @param key cache key from {@link RenderCache#key}
+     * @param loader renders the diagram on miss
+     * @return stored or freshly loaded result
+     * @throws IOException if loading fails
+     */
+    public RenderResult get(String key, RenderCache.Loader loader) throws IOException {
+        if (!isOpen()) {
+            return loader.load();
+        }
+        RenderResult stored = read(key);
+        if (stored != null) {
+            hits.incrementAndGet();
+            return stored;
+        }
+        misses.incrementAndGet();
+        RenderResult result = loader.load();
+        put(key, result);
+        return result;
+    }
+
+    /**
+     * Open a stored entry for streaming without copying it onto the heap
+     * @return entry to stream and close, or null if the key is not stored
+     */
+    public Entry openEntry(String key) {
+        if (!isOpen()) {
+            return null;
+        }
+        Location location;
+        Path file;
+        synchronized (this) {
+            location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            file = segmentFile(location.segment);
+        }
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            hits.incrementAndGet();
+            return new Entry(channel, location);
+        } catch (IOException e) {
+            // Segment evicted between lookup and open
+            return null;
+        }
+    }
+
+    private synchronized boolean isOpen() {
+        return open;
+    }
+
+    private RenderResult read(String key) {
+        Location location;
+        FileChannel channel;
+        synchronized (this) {
+            location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            channel = segments.get(location.segment).channel;
+        }
+        try {
+            // Positional reads share the segment channel without touching its position
+            byte[] data = new byte[location.length];
+            readFully(channel, ByteBuffer.wrap(data), location.offset);
+            return new RenderResult(data, location.format, location.description,
+                                    location.diagramType, location.renderMillis).asCached();
+        } catch (IOException e) {
+            // Closed by a concurrent eviction, or unreadable; render again
+            logger.debug("Disk cache read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void put(String key, RenderResult result) {
+        if (!open || index.containsKey(key)) {
+            return;
+        }
+        try {
+            byte[] header = header(key, result);
+            long recordBytes = (long) RECORD_PREFIX_BYTES + header.length + result.getSize();
+            if (recordBytes > segmentBytes) {
+                return;
+            }
+
+            Segment active = segments.lastEntry().getValue();
+            if (active.size + recordBytes > segmentBytes) {
+                active = createSegment(active.id + 1);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(header);
+            crc.update(result.getData());
+
+            ByteBuffer record = ByteBuffer.allocate((int) recordBytes);
+            record.putInt(RECORD_MAGIC).putInt(header.length).putInt(result.getSize()).putInt((int) crc.getValue());
+            record.put(header).put(result.getData());
+            record.flip();
+
+            long position = active.size;
+            while (record.hasRemaining()) {
+                active.channel.write(record, position + record.position());
+            }
+            active.size += recordBytes;
+            totalBytes += recordBytes;
+            index.put(key, new Location(active.id, position + RECORD_PREFIX_BYTES + header.length,
+                                        result.getSize(), result.getFormat(), result.getDiagramType(),
+                                        result.getDescription(), result.getRenderMillis()));
+            writes.incrementAndGet();
+            evict();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            logger.warn("Disk cache write failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drop oldest segments until the cache fits its budget
+     */
+    private void evict() {
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.pollFirstEntry().getValue();
+            index.values().removeIf(location -> location.segment == oldest.id);
+            totalBytes -= oldest.size;
+            oldest.closeQuietly();
+            try {
+                Files.deleteIfExists(segmentFile(oldest.id));
+            } catch (IOException e) {
+                // Still mapped or streaming on some platforms; removed on next startup
+                logger.debug("Could not delete segment {}: {}", oldest.id, e.getMessage());
+            }
+            evictedSegments.incrementAndGet();
+        }
+    }
+
+    private static byte[] header(String key, RenderResult result) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeEntry(out, key, result.getFormat(), result.getDiagramType(),
+                       result.getDescription(), result.getRenderMillis());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeEntry(DataOutputStream out, String key, String format, String diagramType,
+                                   String description, long renderMillis) throws IOException {
+        out.writeUTF(key);
+        out.writeUTF(format);
+        out.writeUTF(diagramType != null ? diagramType : "");
+        String text = description != null ? description : "";
+        out.writeUTF(text.length() > MAX_DESCRIPTION_CHARS ? text.substring(0, MAX_DESCRIPTION_CHARS) : text);
+        out.writeLong(renderMillis);
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        FileChannel channel = FileChannel.open(segmentFile(id),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, channel, channel.size());
+        segments.put(id, segment);
+        totalBytes += segment.size;
+        return segment;
+    }
+
+    private Path segmentFile(int id) {
+        return directory.resolve(String.format("segment-%06d.dat", id));
+    }
+
+    private static int segmentId(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("segment-") || !name.endsWith(".dat")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(8, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Take the exclusive lock of a cache directory
+     * @return the open lock channel, or null if another process (or this one) holds it
+     */
+    private static FileChannel lock(Path dir) throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() != null) {
+                return channel;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Held by another cache instance in this JVM
+        }
+        channel.close();
+        return null;
+    }
+
+    private void unlock() {
+        if (lockChannel == null) {
+            return;
+        }
+        try {
+            lockChannel.close();
+        } catch (IOException e) {
+            logger.debug("Could not release disk cache lock: {}", e.getMessage());
+        }
+        lockChannel = null;
+    }
+
+    /**
+     * Delete cache directories of other renderer versions
+     * Only directories carrying the version marker are touched, and only when no other server holds them
+     */
+    private static void deleteOtherVersions(Path root, String version) throws IOException {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path child : children) {
+                if (child.getFileName().toString().equals(version) || !Files.isRegularFile(child.resolve(VERSION_FILE))) {
+                    continue;
+                }
+                FileChannel childLock = lock(child);
+                if (childLock == null) {
+                    logger.info("Keeping disk cache of another renderer version, still in use: {}", child);
+                    continue;
+                }
+                try (childLock) {
+                    logger.info("Removing disk cache for another renderer version: {}", child);
+                    deleteRecursively(child);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.debug("Could not delete {}: {}", file, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.debug("Could not delete {}: {}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * Load the index written at the last clean shutdown, then delete it so a crash forces a rescan
+     * @return false if there is no usable index
+     */
+    private boolean loadIndex() throws IOException {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return false;
+            }
+            int segmentCount = in.readInt();
+            Map<Integer, Long> sizes = new HashMap<>();
+            for (int i = 0; i < segmentCount; i++) {
+                sizes.put(in.readInt(), in.readLong());
+            }
+            for (Map.Entry<Integer, Long> size : sizes.entrySet()) {
+                Path file = segmentFile(size.getKey());
+                if (!Files.exists(file) || Files.size(file) != size.getValue()) {
+                    resetIndex();
+                    return false;
+                }
+                createSegment(size.getKey());
+            }
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                int segment = in.readInt();
+                long offset = in.readLong();
+                int length = in.readInt();
+                String key = in.readUTF();
+                String format = in.readUTF();
+                String diagramType = in.readUTF();
+                String description = in.readUTF();
+                long renderMillis = in.readLong();
+                if (segments.containsKey(segment)) {
+                    index.put(key, new Location(segment, offset, length, format, diagramType, description, renderMillis));
+                }
+            }
+            deleteUnindexedSegments();
+            return true;
+        } catch (IOException e) {
+            logger.warn("Disk cache index unreadable, rescanning segments: {}", e.getMessage());
+            resetIndex();
+            return false;
+        } finally {
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    private void resetIndex() {
+        closeSegments();
+        index.clear();
+        totalBytes = 0;
+    }
+
+    private void deleteUnindexedSegments() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path file : files) {
+                if (!segments.containsKey(segmentId(file))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuild the index from segment records, truncating each segment at its first torn or corrupt record
+     */
+    private void scanSegments() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path file : files) {
+                int id = segmentId(file);
+                if (id > 0) {
+                    ids.add(id);
+                }
+            }
+        }
+        ids.sort(null);
+
+        ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+        for (int id : ids) {
+            Segment segment = createSegment(id);
+            long position = 0;
+            String damage = "incomplete record";
+            ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_BYTES);
+            while (position + RECORD_PREFIX_BYTES <= segment.size) {
+                prefix.clear();
+                segment.channel.read(prefix, position);
+                prefix.flip();
+                int magic = prefix.getInt();
+                int headerLength = prefix.getInt();
+                int dataLength = prefix.getInt();
+                int checksum = prefix.getInt();
+                long end = position + RECORD_PREFIX_BYTES + headerLength + (long) dataLength;
+                if (magic != RECORD_MAGIC || headerLength <= 0 || dataLength < 0 || end > segment.size) {
+                    break;
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(headerLength);
+                readFully(segment.channel, header, position + RECORD_PREFIX_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(header.array());
+                for (long offset = position + RECORD_PREFIX_BYTES + headerLength; offset < end; ) {
+                    scanBuffer.clear().limit((int) Math.min(SCAN_BUFFER_BYTES, end - offset));
+                    readFully(segment.channel, scanBuffer, offset);
+                    scanBuffer.flip();
+                    offset += scanBuffer.remaining();
+                    crc.update(scanBuffer);
+                }
+                if ((int) crc.getValue() != checksum) {
+                    damage = "checksum mismatch";
+                    break;
+                }
+                try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()))) {
+                    String key = in.readUTF();
+                    index.put(key, new Location(id, position + RECORD_PREFIX_BYTES + headerLength, dataLength,
+                                                in.readUTF(), in.readUTF(), in.readUTF(), in.readLong()));
+                }
+                position = end;
+            }
+            if (position < segment.size) {
+                logger.info("Truncating disk cache segment {} at {} ({})", id, position, damage);
+                segment.channel.truncate(position);
+                totalBytes -= segment.size - position;
+                segment.size = position;
+            }
+        }
+        evict();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Disk cache segment ended inside a record");
+            }
+            offset += read;
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(segments.size());
+            for (Segment segment : segments.values()) {
+                segment.channel.force(false);
+                out.writeInt(segment.id);
+                out.writeLong(segment.size);
+            }
+            out.writeInt(index.size());
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                out.writeInt(location.segment);
+                out.writeLong(location.offset);
+                out.writeInt(location.length);
+                writeEntry(out, entry.getKey(), location.format, location.diagramType,
+                           location.description, location.renderMillis);
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments.values()) {
+            segment.closeQuietly();
+        }
+        segments.clear();
+    }
+
+    public synchronized DiskStats getStats() {
+        return new DiskStats(
+            open,
+            index.size(),
+            totalBytes,
+            maxBytes,
+            segments.size(),
+            hits.get(),
+            misses.get(),
+            writes.get(),
+            evictedSegments.get(),
+            errors.get()
+        );
+    }
+
+    /**
+     * Stored entry opened for zero-copy streaming
+     */
+    public static class Entry implements Closeable {
+        private final FileChannel channel;
+        private final Location location;
+
+        Entry(FileChannel channel, Location location) {
+            this.channel = channel;
+            this.location = location;
+        }
+
+        public int getSize() { return location.length; }
+        public long getRenderMillis() { return location.renderMillis; }
+
+        /**
+         * Stream the stored bytes with FileChannel.transferTo, then close the entry
+         */
+        public void transferTo(OutputStream out) throws IOException {
+            try {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = location.offset;
+                long remaining = location.length;
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        throw new IOException("Disk cache entry truncated");
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            } finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Position and metadata of a stored render
+     */
+    private static class Location {
+        final int segment;
+        final long offset;
+        final int length;
+        final String format;
+        final String diagramType;
+        final String description;
+        final long renderMillis;
+
+        Location(int segment, long offset, int length, String format, String diagramType,
+                 String description, long renderMillis) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.format = format;
+            this.diagramType = diagramType;
+            this.description = description;
+            this.renderMillis = renderMillis;
+        }
+    }
+
+    /**
+     * One append-only segment file
+     */
+    private static class Segment {
+        final int id;
+        final FileChannel channel;
+        long size;
+
+        Segment(int id, FileChannel channel, long size) {
+            this.id = id;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Could not close segment {}: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Disk cache statistics snapshot
+     */
+    public static class DiskStats {
+        private final boolean enabled;
+        private final int entries;
+        private final long bytes;
+        private final long maxBytes;
+        private final int segments;
+        private final long hits;
+        private final long misses;
+        private final long writes;
+        private final long evictedSegments;
+        private final long errors;
+
+        public DiskStats(boolean enabled, int entries, long bytes, long maxBytes, int segments,
+                         long hits, long misses, long writes, long evictedSegments, long errors) {
+            this.enabled = enabled;
+            this.entries = entries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.segments = segments;
+            this.hits = hits;
+            this.misses = misses;
+            this.writes = writes;
+            this.evictedSegments = evictedSegments;
+            this.errors = errors;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public int getEntries() { return entries; }
+        public long getBytes() { return bytes; }
+        public long getMaxBytes() { return maxBytes; }
+        public int getSegments() { return segments; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getWrites() { return writes; }
+        public long getEvictedSegments() { return evictedSegments; }
+        public long getErrors() { return errors; }
+    }
+}
@@ -0,0 +1,404 @@
+package com.plantuml.server.service;
+
+import net.sourceforge.plantuml.core.Diagram;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Graphviz layout engine selection
+ * dot     - external Graphviz process per layout (PlantUML default)
+ * smetana - PlantUML's in-JVM Graphviz port, no process fork
+ * auto    - smetana for small graphs or when dot is missing, dot otherwise
+ * External dot layouts run in a fixed number of slots so concurrent renders
+ * cannot fork more dot processes than the machine can run
+ *
+ * Each slot records the JVM's child processes when it is taken, so a cancelled render's
+ * dot process can be told apart from the others and killed. When that is ambiguous
+ * (another slot taken earlier is still busy) the process is left to PlantUML's own timeout.
+ */
+@Component
+public class GraphvizLayoutEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphvizLayoutEngine.class);
+
+    // Diagram types PlantUML lays out with Graphviz
+    private static final Set<String> GRAPHVIZ_DIAGRAMS = Set.of(
+        "ClassDiagram",
+        "DescriptionDiagram",
+        "StateDiagram",
+        "ObjectDiagram",
+        "ActivityDiagram"
+    );
+
+    private static final String SMETANA_PRAGMA = "!pragma layout smetana";
+
+    public enum Mode { DOT, SMETANA, AUTO }
+
+    @Value("${plantuml.graphviz.layout:dot}")
+    private String layout;
+
+    @Value("${plantuml.graphviz.max-processes:0}")
+    private int maxProcesses;
+
+    @Value("${plantuml.graphviz.smetana-max-lines:40}")
+    private int smetanaMaxLines;
+
+    // Kill the dot process of a cancelled or timed-out render
+    @Value("${plantuml.graphviz.kill-on-cancel:true}")
+    private boolean killOnCancel;
+
+    private Mode mode = Mode.DOT;
+    private final List<DotSlot> slots = new ArrayList<>();
+    private BlockingQueue<DotSlot> freeSlots;
+
+    private final AtomicLong smetanaLayouts = new AtomicLong();
+    private final AtomicLong smetanaNanos = new AtomicLong();
+    private final AtomicLong killed = new AtomicLong();
+    private final AtomicLong acquisitions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        try {
+            mode = Mode.valueOf(layout.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown plantuml.graphviz.layout '{}', using dot", layout);
+            mode = Mode.DOT;
+        }
+
+        int slotCount = maxProcesses > 0 ? maxProcesses : Runtime.getRuntime().availableProcessors();
+        freeSlots = new ArrayBlockingQueue<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            DotSlot slot = new DotSlot(i);
+            slots.add(slot);
+            freeSlots.add(slot);
+        }
+        logger.info("Graphviz layout mode: {}, {} dot slots", mode.name().toLowerCase(Locale.ROOT), slotCount);
+    }
+
+    /**
+     * Check whether a parsed diagram is laid out by Graphviz
+     */
+    public static boolean needsGraphviz(Diagram diagram) {
+        return diagram != null && GRAPHVIZ_DIAGRAMS.contains(diagram.getClass().getSimpleName());
+    }
+
+    /**
+     * Check whether the source picks its own layout engine
+     */
+    public static boolean hasLayoutPragma(String source) {
+        return source.contains("!pragma layout");
+    }
+
+    /**
+     * Decide whether a Graphviz-bound diagram should use the in-JVM smetana engine
+     * @param source PlantUML markup
+     * @param dotAvailable whether a dot executable is configured
+     */
+    public boolean useSmetana(String source, boolean dotAvailable) {
+        switch (mode) {
+            case SMETANA:
+                return true;
+            case AUTO:
+                return !dotAvailable || lineCount(source) <= smetanaMaxLines;
+            default:
+                return false;
+        }
+    }
+
+    private static int lineCount(String source) {
+        int lines = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Add the smetana layout pragma after the first @start line
+     */
+    public static String withSmetana(String source) {
+        int start = source.indexOf("@start");
+        if (start < 0) {
+            return source;
+        }
+        int lineEnd = source.indexOf('\n', start);
+        if (lineEnd < 0) {
+            return source + "\n" + SMETANA_PRAGMA;
+        }
+        return source.substring(0, lineEnd + 1) + SMETANA_PRAGMA + "\n" + source.substring(lineEnd + 1);
+    }
+
+    /**
+     * Run a layout with an external dot process, holding one dot slot for its duration
+     */
+    public <T> T runWithDot(Callable<T> layoutTask) throws IOException {
+        DotSlot slot;
+        try {
+            slot = freeSlots.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a Graphviz slot", e);
+        }
+
+        slot.acquire(acquisitions.incrementAndGet(), killOnCancel ? childPids() : Collections.emptySet());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = layoutTask.call();
+            failed = false;
+            return result;
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            slot.record(System.nanoTime() - start, failed);
+            slot.release();
+            freeSlots.add(slot);
+        }
+    }
+
+    /**
+     * Kill the dot process started by a render thread's current layout, if it can be identified
+     * @param worker render thread being cancelled
+     * @return number of processes killed
+     */
+    public int killLayout(Thread worker) {
+        if (!killOnCancel) {
+            return 0;
+        }
+        DotSlot mine = null;
+        for (DotSlot slot : slots) {
+            if (slot.owner == worker) {
+                mine = slot;
+            }
+        }
+        if (mine == null) {
+            return 0;
+        }
+
+        // Processes that existed before a later slot was taken cannot belong to that slot
+        Set<Long> candidates = childPids();
+        candidates.removeAll(mine.knownChildren);
+        for (DotSlot other : slots) {
+            if (other == mine || other.owner == null) {
+                continue;
+            }
+            if (other.sequence < mine.sequence) {
+                logger.debug("Not killing dot for {}: slot {} taken earlier is still busy", worker.getName(), other.id);
+                return 0;
+            }
+            candidates.retainAll(other.knownChildren);
+        }
+
+        int count = 0;
+        for (long pid : candidates) {
+            ProcessHandle process = ProcessHandle.of(pid).orElse(null);
+            if (process != null && isDot(process)) {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                if (process.destroyForcibly()) {
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            killed.addAndGet(count);
+            logger.info("Killed {} dot process(es) of cancelled render on {}", count, worker.getName());
+        }
+        return count;
+    }
+
+    private static Set<Long> childPids() {
+        return ProcessHandle.current().children()
+            .map(ProcessHandle::pid)
+            .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static boolean isDot(ProcessHandle process) {
+        // Only kill what is positively identified as dot; an unreadable command line is left alone
+        return process.info().command()
+            .map(command -> {
+                String name = command.substring(Math.max(command.lastIndexOf('/'), command.lastIndexOf('\\')) + 1)
+                    .toLowerCase(Locale.ROOT);
+                return name.equals("dot") || name.equals("dot.exe");
+            })
+            .orElse(false);
+    }
+
+    /**
+     * Run a layout with the in-JVM smetana engine
+     */
+    public <T> T runWithSmetana(Callable<T> layoutTask) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return layoutTask.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            smetanaLayouts.incrementAndGet();
+            smetanaNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getBusySlots() {
+        return slots.size() - freeSlots.size();
+    }
+
+    public long getKilledCount() {
+        return killed.get();
+    }
+
+    public LayoutStats getStats() {
+        List<SlotStats> slotStats = new ArrayList<>();
+        for (DotSlot slot : slots) {
+            slotStats.add(slot.snapshot());
+        }
+        long layouts = smetanaLayouts.get();
+        return new LayoutStats(
+            mode.name().toLowerCase(Locale.ROOT),
+            slots.size(),
+            getBusySlots(),
+            layouts,
+            layouts == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(smetanaNanos.get() / layouts),
+            killed.get(),
+            slotStats
+        );
+    }
+
+    /**
+     * One concurrent dot process allowance with its latency history
+     */
+    private static class DotSlot {
+        private final int id;
+        // Render thread holding the slot, acquisition order and child processes at acquisition
+        private volatile Thread owner;
+        private volatile long sequence;
+        private volatile Set<Long> knownChildren = Collections.emptySet();
+        private long jobs;
+        private long failures;
+        private long totalNanos;
+        private long maxNanos;
+        private long lastNanos;
+
+        DotSlot(int id) {
+            this.id = id;
+        }
+
+        void acquire(long sequence, Set<Long> children) {
+            this.knownChildren = children;
+            this.sequence = sequence;
+            this.owner = Thread.currentThread();
+        }
+
+        void release() {
+            owner = null;
+        }
+
+        synchronized void record(long nanos, boolean failed) {
+            jobs++;
+            if (failed) {
+                failures++;
+            }
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            lastNanos = nanos;
+        }
+
+        synchronized SlotStats snapshot() {
+            return new SlotStats(
+                id,
+                jobs,
+                failures,
+                jobs == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / jobs),
+                TimeUnit.NANOSECONDS.toMillis(maxNanos),
+                TimeUnit.NANOSECONDS.toMillis(lastNanos)
+            );
+        }
+    }
+
+    /**
+     * Layout engine statistics snapshot
+     */
+    public static class LayoutStats {
+        private final String mode;
+        private final int dotSlots;
+        private final int dotBusy;
+        private final long smetanaLayouts;
+        private final long smetanaAvgMillis;
+        private final long dotKilled;
+        private final List<SlotStats> slots;
+
+        public LayoutStats(String mode, int dotSlots, int dotBusy, long smetanaLayouts,
+                           long smetanaAvgMillis, long dotKilled, List<SlotStats> slots) {
+            this.mode = mode;
+            this.dotSlots = dotSlots;
+            this.dotBusy = dotBusy;
+            this.smetanaLayouts = smetanaLayouts;
+            this.smetanaAvgMillis = smetanaAvgMillis;
+            this.dotKilled = dotKilled;
+            this.slots = slots;
+        }
+
+        public String getMode() { return mode; }
+        public int getDotSlots() { return dotSlots; }
+        public int getDotBusy() { return dotBusy; }
+        public long getSmetanaLayouts() { return smetanaLayouts; }
+        public long getSmetanaAvgMillis() { return smetanaAvgMillis; }
+        public long getDotKilled() { return dotKilled; }
+        public List<SlotStats> getSlots() { return slots; }
+    }
+
+    /**
+     * Per dot slot latency snapshot
+     */
+    public static class SlotStats {
+        private final int id;
+        private final long jobs;
+        private final long failures;
+        private final long avgMillis;
+        private final long maxMillis;
+        private final long lastMillis;
+
+        public SlotStats(int id, long jobs, long failures, long avgMillis, long maxMillis, long lastMillis) {
+            this.id = id;
+            this.jobs = jobs;
+            this.failures = failures;
+            this.avgMillis = avgMillis;
+            this.maxMillis = maxMillis;
+            this.lastMillis = lastMillis;
+        }
+
+        public int getId() { return id; }
+        public long getJobs() { return jobs; }
+        public long getFailures() { return failures; }
+        public long getAvgMillis() { return avgMillis; }
+        public long getMaxMillis() { return maxMillis; }
+        public long getLastMillis() { return lastMillis; }
+    }
+}
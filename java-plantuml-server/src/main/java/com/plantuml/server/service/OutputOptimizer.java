@@ -0,0 +1,181 @@
+package com.plantuml.server.service;
+
+import net.sourceforge.plantuml.FileFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output post-processing between render and cache
+ * On the render thread: optional SVG minification and PNG re-encoding, so the cached and stored
+ * bytes are already small. When an SVG enters the memory cache its gzip encoding is computed once
+ * at maximum compression and served as-is, instead of server.compression gzipping every response.
+ */
+@Component
+public class OutputOptimizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputOptimizer.class);
+
+    @Value("${plantuml.output.svg.minify:false}")
+    private boolean minifySvg;
+
+    // Decimals kept in SVG coordinates when minifying
+    @Value("${plantuml.output.svg.precision:2}")
+    private int svgPrecision;
+
+    // 0-9 re-encodes PNGs at that deflate level, -1 keeps PlantUML's PNG
+    @Value("${plantuml.output.png.compression-level:-1}")
+    private int pngCompressionLevel;
+
+    @Value("${plantuml.output.png.palette:false}")
+    private boolean pngPalette;
+
+    @Value("${plantuml.output.precompress:true}")
+    private boolean precompress;
+
+    @Value("${plantuml.output.precompress.min-bytes:1024}")
+    private int precompressMinBytes;
+
+    private final AtomicLong svgBytesIn = new AtomicLong();
+    private final AtomicLong svgBytesOut = new AtomicLong();
+    private final AtomicLong pngBytesIn = new AtomicLong();
+    private final AtomicLong pngBytesOut = new AtomicLong();
+    private final AtomicLong gzipEncoded = new AtomicLong();
+    private final AtomicLong gzipServed = new AtomicLong();
+
+    /**
+     * Output settings that change rendered bytes, part of every cache key
+     */
+    public String fingerprint() {
+        return "svg:" + (minifySvg ? "min" + svgPrecision : "raw")
+            + ",png:" + (isRecompressingPng() ? pngCompressionLevel + (pngPalette ? "p" : "") : "raw");
+    }
+
+    private boolean isRecompressingPng() {
+        return pngCompressionLevel >= 0 || pngPalette;
+    }
+
+    /**
+     * Shrink freshly rendered output
+     * Failures fall back to the original bytes; an unoptimized diagram beats a failed render
+     */
+    public byte[] optimize(byte[] content, FileFormat format) {
+        try {
+            if (format == FileFormat.SVG && minifySvg) {
+                byte[] minified = SvgMinifier.minify(new String(content, StandardCharsets.UTF_8), svgPrecision)
+                    .getBytes(StandardCharsets.UTF_8);
+                svgBytesIn.addAndGet(content.length);
+                svgBytesOut.addAndGet(minified.length);
+                return minified;
+            }
+            if (format == FileFormat.PNG && isRecompressingPng()) {
+                byte[] recompressed = PngRecompressor.recompress(content, pngCompressionLevel, pngPalette);
+                pngBytesIn.addAndGet(content.length);
+                pngBytesOut.addAndGet(recompressed.length);
+                return recompressed;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Output optimization of {} failed, keeping PlantUML output: {}", format.name(), e.getMessage());
+        }
+        return content;
+    }
+
+    /**
+     * Attach the gzip encoding to an SVG entering the memory cache
+     * PNG is deflate-compressed already and small SVGs are not worth the Content-Encoding
+     */
+    public RenderResult precompress(RenderResult result) {
+        if (!precompress || result.hasGzip() || !FileFormat.SVG.name().equals(result.getFormat())
+                || result.getSize() < precompressMinBytes) {
+            return result;
+        }
+        byte[] gzipped = gzip(result.getData());
+        if (gzipped.length >= result.getSize()) {
+            return result;
+        }
+        gzipEncoded.incrementAndGet();
+        return result.withGzip(gzipped);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(data);
+        } catch (IOException e) {
+            // In-memory streams do not fail
+            throw new IllegalStateException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Count a response served from the precomputed gzip encoding
+     */
+    public void recordGzipServed() {
+        gzipServed.incrementAndGet();
+    }
+
+    public long getSvgSavedBytes() { return svgBytesIn.get() - svgBytesOut.get(); }
+    public long getPngSavedBytes() { return pngBytesIn.get() - pngBytesOut.get(); }
+    public long getGzipServedCount() { return gzipServed.get(); }
+
+    public OutputStats getStats() {
+        return new OutputStats(minifySvg, pngCompressionLevel, pngPalette, precompress,
+                               svgBytesIn.get(), svgBytesOut.get(), pngBytesIn.get(), pngBytesOut.get(),
+                               gzipEncoded.get(), gzipServed.get());
+    }
+
+    /**
+     * Output optimization statistics
+     */
+    public static class OutputStats {
+        private final boolean svgMinify;
+        private final int pngCompressionLevel;
+        private final boolean pngPalette;
+        private final boolean precompress;
+        private final long svgBytesIn;
+        private final long svgBytesOut;
+        private final long pngBytesIn;
+        private final long pngBytesOut;
+        private final long gzipEncoded;
+        private final long gzipServed;
+
+        public OutputStats(boolean svgMinify, int pngCompressionLevel, boolean pngPalette, boolean precompress,
+                           long svgBytesIn, long svgBytesOut, long pngBytesIn, long pngBytesOut,
+                           long gzipEncoded, long gzipServed) {
+            this.svgMinify = svgMinify;
+            this.pngCompressionLevel = pngCompressionLevel;
+            this.pngPalette = pngPalette;
+            this.precompress = precompress;
+            this.svgBytesIn = svgBytesIn;
+            this.svgBytesOut = svgBytesOut;
+            this.pngBytesIn = pngBytesIn;
+            this.pngBytesOut = pngBytesOut;
+            this.gzipEncoded = gzipEncoded;
+            this.gzipServed = gzipServed;
+        }
+
+        public boolean isSvgMinify() { return svgMinify; }
+        public int getPngCompressionLevel() { return pngCompressionLevel; }
+        public boolean isPngPalette() { return pngPalette; }
+        public boolean isPrecompress() { return precompress; }
+        public long getSvgBytesIn() { return svgBytesIn; }
+        public long getSvgBytesOut() { return svgBytesOut; }
+        public long getPngBytesIn() { return pngBytesIn; }
+        public long getPngBytesOut() { return pngBytesOut; }
+        public long getGzipEncoded() { return gzipEncoded; }
+        public long getGzipServed() { return gzipServed; }
+    }
+}
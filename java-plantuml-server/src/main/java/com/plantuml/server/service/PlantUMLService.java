@@ -1,25 +1,35 @@
 package com.plantuml.server.service;
 
+import com.plantuml.server.cluster.ClusterRouter;
+import net.sourceforge.plantuml.BlockUml;
 import net.sourceforge.plantuml.SourceStringReader;
 import net.sourceforge.plantuml.FileFormat;
 import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.code.TranscoderUtil;
+import net.sourceforge.plantuml.core.Diagram;
 import net.sourceforge.plantuml.core.DiagramDescription;
+import net.sourceforge.plantuml.core.ImageData;
+import net.sourceforge.plantuml.error.PSystemError;
 
 import org.springframework.stereotype.Service;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
-import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * High-Performance PlantUML Service
@@ -35,18 +45,48 @@ public class PlantUMLService {
     // Pre-configured format options for better performance
     private static final FileFormatOption SVG_FORMAT = new FileFormatOption(FileFormat.SVG);
     private static final FileFormatOption PNG_FORMAT = new FileFormatOption(FileFormat.PNG);
-    
-    // Thread pool for concurrent diagram generation
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
 
     @Value("${plantuml.graphviz.path:}")
     private String graphvizPath;
 
+    @Autowired
+    private RenderCache renderCache;
+
+    @Autowired
+    private DiskRenderCache diskCache;
+
+    // Bounded pool that every render runs on
+    @Autowired
+    private RenderScheduler renderScheduler;
+
+    @Autowired
+    private GraphvizLayoutEngine layoutEngine;
+
+    @Autowired
+    private RenderMetrics renderMetrics;
+
+    @Autowired
+    private OutputOptimizer outputOptimizer;
+
+    @Autowired
+    private ClusterRouter clusterRouter;
+
+    @Autowired
+    private RenderMemoryBudget memoryBudget;
+
+    // PlantUML + Graphviz versions, layout mode and output settings, part of every cache key
+    private volatile String renderFingerprint = "unknown";
+
     @PostConstruct
     public void init() {
         configureGraphviz();
+        renderFingerprint = getPlantUMLVersion() + "|" + detectGraphvizVersion() + "|" + layoutEngine.getMode()
+            + "|" + outputOptimizer.fingerprint() + "|" + memoryBudget.fingerprint();
         logger.info("PlantUML Service initialized");
         logger.info("PlantUML Version: {}", getPlantUMLVersion());
+        logger.info("Render fingerprint: {}", renderFingerprint);
+        diskCache.open(renderFingerprint);
+        clusterRouter.start(renderFingerprint);
         testGraphvizConnection();
     }
 
@@ -110,6 +150,30 @@ public class PlantUMLService {
         }
     }
 
+    /**
+     * Read the configured Graphviz version so cached renders are invalidated on upgrade
+     * @return output of dot -V, or "none" if Graphviz is not available
+     */
+    private String detectGraphvizVersion() {
+        String dot = System.getProperty("GRAPHVIZ_DOT");
+        if (dot == null || !Files.exists(Paths.get(dot))) {
+            return "none";
+        }
+        try {
+            Process process = new ProcessBuilder(dot, "-V").redirectErrorStream(true).start();
+            try (InputStream in = process.getInputStream()) {
+                String version = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+                return version.isEmpty() ? dot : version;
+            }
+        } catch (Exception e) {
+            logger.debug("Could not read Graphviz version: {}", e.getMessage());
+            return dot;
+        }
+    }
+
     /**
      * Test Graphviz connection with a simple state diagram
      */
@@ -150,26 +214,7 @@ public class PlantUMLService {
      * @throws IOException if generation fails
      */
     public String generateSVG(String plantumlText) throws IOException {
-        logger.debug("Generating SVG diagram, text length: {}", plantumlText.length());
-        long startTime = System.currentTimeMillis();
-        
-        try {
-            SourceStringReader reader = new SourceStringReader(plantumlText);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            
-            // Generate diagram
-            DiagramDescription description = reader.outputImage(outputStream, SVG_FORMAT);
-            String svgContent = outputStream.toString(StandardCharsets.UTF_8.name());
-            
-            long duration = System.currentTimeMillis() - startTime;
-            logger.info("SVG generated successfully in {}ms, description: {}", duration, description.getDescription());
-            
-            return svgContent;
-            
-        } catch (Exception e) {
-            logger.error("Failed to generate SVG diagram", e);
-            throw new IOException("Failed to generate SVG diagram: " + e.getMessage(), e);
-        }
+        return render(plantumlText, FileFormat.SVG).asText();
     }
 
     /**
@@ -179,29 +224,294 @@ public class PlantUMLService {
      * @throws IOException if generation fails
      */
     public byte[] generatePNG(String plantumlText) throws IOException {
-        logger.debug("Generating PNG diagram, text length: {}", plantumlText.length());
+        return render(plantumlText, FileFormat.PNG).getData();
+    }
+
+    /**
+     * Render a diagram through the memory and disk render caches
+     * @param plantumlText PlantUML markup
+     * @param format SVG or PNG
+     * @return rendered output with render metadata
+     * @throws IOException if generation fails
+     */
+    public RenderResult render(String plantumlText, FileFormat format) throws IOException {
+        return render(plantumlText, format, RenderOptions.EXPORT);
+    }
+
+    /**
+     * Render a diagram through the memory and disk render caches with scheduling options
+     * @param plantumlText PlantUML markup
+     * @param format SVG or PNG
+     * @param options scheduler lane, superseding client and cancel token for a render on cache miss
+     * @return rendered output with render metadata
+     * @throws IOException if generation fails; RenderCancelledException if cancelled or superseded
+     */
+    public RenderResult render(String plantumlText, FileFormat format, RenderOptions options) throws IOException {
+        return render(plantumlText, format, options, true);
+    }
+
+    /**
+     * Render for a cluster peer that routed this key here
+     * Never forwarded again, so nodes with diverging peer lists cannot bounce a request between them
+     * @param plantumlText PlantUML markup
+     * @param format SVG or PNG
+     * @param options scheduler lane
+     * @return rendered output with render metadata
+     * @throws IOException if generation fails
+     */
+    public RenderResult renderForPeer(String plantumlText, FileFormat format, RenderOptions options) throws IOException {
+        return render(plantumlText, format, options, false);
+    }
+
+    private RenderResult render(String plantumlText, FileFormat format, RenderOptions options,
+                                boolean forward) throws IOException {
+        String key = cacheKey(plantumlText, format);
+        RenderResult result = renderCache.get(key,
+            () -> outputOptimizer.precompress(diskCache.get(key,
+                () -> renderOwned(key, plantumlText, format, options, forward))));
+        if (result.isCached()) {
+            logger.debug("{} served from cache, size: {} bytes", format.name(), result.getSize());
+        }
+        return result;
+    }
+
+    /**
+     * Produce a cache miss: fetched from the owning peer in cluster mode, rendered locally when this
+     * node owns the key or the owner is down or slow
+     */
+    private RenderResult renderOwned(String key, String plantumlText, FileFormat format, RenderOptions options,
+                                     boolean forward) throws IOException {
+        String owner = forward ? clusterRouter.remoteOwner(key) : null;
+        if (owner != null) {
+            RenderResult remote = clusterRouter.fetch(owner, plantumlText, format, options.getPriority());
+            if (remote != null) {
+                return remote;
+            }
+        }
+        return renderScheduler.execute(() -> renderDiagram(plantumlText, format), options,
+                                       renderEstimate(plantumlText, format));
+    }
+
+    /**
+     * Large PNG export encoded straight to the response
+     * PlantUML's PNG encoder writes compressed output as it goes, so the encoded image is never held
+     * in memory, only the raster; the output bypasses the render caches and PNG re-encoding.
+     * Once bytes are written a failed render can only abort the response.
+     * @param plantumlText PlantUML markup
+     * @param options scheduler lane and cancel token
+     * @return body writer, or null when the PNG is cached or small enough for the buffered path
+     * @throws RenderTooLargeException if even the streamed render exceeds the per-render memory limit
+     */
+    public RenderStream openPngStream(String plantumlText, RenderOptions options) throws RenderTooLargeException {
+        if (renderCache.contains(cacheKey(plantumlText, FileFormat.PNG))) {
+            return null;
+        }
+        String sizeKey = cacheKey(plantumlText, FileFormat.SVG);
+        if (!memoryBudget.shouldStream(memoryBudget.estimate(sizeKey, plantumlText, FileFormat.PNG, false))) {
+            return null;
+        }
+        long estimate = memoryBudget.estimate(sizeKey, plantumlText, FileFormat.PNG, true);
+        memoryBudget.checkLimit(estimate);
+        return output -> renderScheduler.execute(() -> {
+            streamPng(plantumlText, output, sizeKey);
+            return null;
+        }, options, estimate);
+    }
+
+    /**
+     * Writes a rendered diagram to a response body
+     */
+    public interface RenderStream {
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    private void streamPng(String plantumlText, OutputStream output, String sizeKey) throws IOException {
+        long startNanos = System.nanoTime();
+        CountingOutputStream counted = new CountingOutputStream(output);
+        Export export = new Export();
+        boolean success = false;
+        try {
+            exportDiagram(plantumlText, counted, PNG_FORMAT, export);
+            success = true;
+            memoryBudget.recordSize(sizeKey, export.width, export.height);
+            memoryBudget.recordStreamed();
+            logger.info("PNG streamed in {}ms, {} bytes, {}x{} px", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                        counted.count, export.width, export.height);
+        } catch (Exception e) {
+            logger.error("Failed to stream PNG diagram", e);
+            throw new IOException("Failed to generate PNG diagram: " + e.getMessage(), e);
+        } finally {
+            renderMetrics.recordRender(FileFormat.PNG.name(), export.diagramType, export.layout, success,
+                                       System.nanoTime() - startNanos, plantumlText.length(),
+                                       success ? counted.count : -1);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Open a disk-cached render for zero-copy streaming
+     * Only used when the memory cache does not already hold the render
+     * @param plantumlText PlantUML markup
+     * @param format SVG or PNG
+     * @return stored entry to stream and close, or null
+     */
+    public DiskRenderCache.Entry openStored(String plantumlText, FileFormat format) {
+        String key = cacheKey(plantumlText, format);
+        return renderCache.contains(key) ? null : diskCache.openEntry(key);
+    }
+
+    /**
+     * Render a diagram on the render pool, bypassing the cache
+     * Used where the render itself matters, e.g. warm-up
+     * @param plantumlText PlantUML markup
+     * @param format SVG or PNG
+     * @return freshly rendered output
+     * @throws IOException if generation fails
+     */
+    public RenderResult renderUncached(String plantumlText, FileFormat format) throws IOException {
+        return renderScheduler.execute(() -> renderDiagram(plantumlText, format), RenderOptions.EXPORT,
+                                       renderEstimate(plantumlText, format));
+    }
+
+    /**
+     * Estimated peak heap of a buffered render, reserved by the scheduler before the render is queued
+     */
+    private long renderEstimate(String plantumlText, FileFormat format) {
+        return memoryBudget.estimate(cacheKey(plantumlText, FileFormat.SVG), plantumlText, format, false);
+    }
+
+    /**
+     * Render a diagram with PlantUML, bypassing the cache
+     * Runs under the memory reservation its render job took when it was admitted
+     */
+    private RenderResult renderDiagram(String plantumlText, FileFormat format) throws IOException {
+        return renderBuffered(plantumlText, format, cacheKey(plantumlText, FileFormat.SVG));
+    }
+
+    private RenderResult renderBuffered(String plantumlText, FileFormat format, String sizeKey) throws IOException {
+        logger.debug("Generating {} diagram, text length: {}", format.name(), plantumlText.length());
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         
+        RenderBuffer outputStream = RenderBuffer.acquire();
+        Export export = new Export();
+        boolean success = false;
         try {
-            SourceStringReader reader = new SourceStringReader(plantumlText);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            
             // Generate diagram
-            DiagramDescription description = reader.outputImage(outputStream, PNG_FORMAT);
-            byte[] pngContent = outputStream.toByteArray();
+            exportDiagram(plantumlText, outputStream, formatOption(format), export);
+            byte[] content = outputOptimizer.optimize(outputStream.toByteArray(), format);
+            success = true;
+            memoryBudget.recordSize(sizeKey, export.width, export.height);
             
             long duration = System.currentTimeMillis() - startTime;
+            DiagramDescription description = export.description;
             String descriptionText = (description != null && description.getDescription() != null) 
                 ? description.getDescription() 
                 : "No description available";
-            logger.info("PNG generated successfully in {}ms, size: {} bytes, description: {}", 
-                       duration, pngContent.length, descriptionText);
+            logger.info("{} generated successfully in {}ms, size: {} bytes, description: {}", 
+                       format.name(), duration, content.length, descriptionText);
             
-            return pngContent;
+            return new RenderResult(content, format.name(), descriptionText, export.diagramType, duration);
             
         } catch (Exception e) {
-            logger.error("Failed to generate PNG diagram", e);
-            throw new IOException("Failed to generate PNG diagram: " + e.getMessage(), e);
+            logger.error("Failed to generate {} diagram", format.name(), e);
+            throw new IOException("Failed to generate " + format.name() + " diagram: " + e.getMessage(), e);
+        } finally {
+            renderMetrics.recordRender(format.name(), export.diagramType, export.layout, success,
+                                       System.nanoTime() - startNanos, plantumlText.length(),
+                                       success ? outputStream.size() : -1);
+            outputStream.release();
+        }
+    }
+
+    /**
+     * What a single export did, for logging and metrics
+     */
+    private static class Export {
+        DiagramDescription description;
+        String diagramType = "unknown";
+        // dot, smetana or none
+        String layout = "none";
+        // Pixel size reported by PlantUML, 0 when unknown
+        int width;
+        int height;
+
+        void size(ImageData imageData) {
+            if (imageData != null) {
+                width = imageData.getWidth();
+                height = imageData.getHeight();
+            }
+        }
+    }
+
+    /**
+     * Parse the first diagram and export it, picking dot or smetana layout for Graphviz diagrams
+     */
+    private void exportDiagram(String plantumlText, OutputStream outputStream,
+                               FileFormatOption formatOption, Export export) throws IOException {
+        SourceStringReader reader = new SourceStringReader(plantumlText);
+        List<BlockUml> blocks = reader.getBlocks();
+        if (blocks.isEmpty()) {
+            // Let PlantUML produce its own "no diagram found" image
+            export.description = reader.outputImage(outputStream, formatOption);
+            export.diagramType = "none";
+            return;
+        }
+
+        Diagram diagram = blocks.get(0).getDiagram();
+        export.diagramType = diagramType(diagram);
+        if (!GraphvizLayoutEngine.needsGraphviz(diagram) || GraphvizLayoutEngine.hasLayoutPragma(plantumlText)) {
+            export.size(diagram.exportDiagram(outputStream, 0, formatOption));
+            export.description = diagram.getDescription();
+            return;
+        }
+
+        if (layoutEngine.useSmetana(plantumlText, isGraphvizAvailable())) {
+            export.layout = "smetana";
+            Diagram smetanaDiagram = new SourceStringReader(GraphvizLayoutEngine.withSmetana(plantumlText))
+                .getBlocks().get(0).getDiagram();
+            export.size(layoutEngine.runWithSmetana(() -> smetanaDiagram.exportDiagram(outputStream, 0, formatOption)));
+            export.description = smetanaDiagram.getDescription();
+            return;
+        }
+
+        export.layout = "dot";
+        export.size(layoutEngine.runWithDot(() -> diagram.exportDiagram(outputStream, 0, formatOption)));
+        export.description = diagram.getDescription();
+    }
+
+    private static boolean isGraphvizAvailable() {
+        String dot = System.getProperty("GRAPHVIZ_DOT");
+        return dot != null && Files.exists(Paths.get(dot));
+    }
+
+    private static FileFormatOption formatOption(FileFormat format) {
+        switch (format) {
+            case SVG:
+                return SVG_FORMAT;
+            case PNG:
+                return PNG_FORMAT;
+            default:
+                return new FileFormatOption(format);
         }
     }
 
@@ -211,13 +521,120 @@ public class PlantUMLService {
      * @return CompletableFuture with SVG content
      */
     public CompletableFuture<String> generateSVGAsync(String plantumlText) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return generateSVG(plantumlText);
-            } catch (IOException e) {
-                throw new RuntimeException("Async SVG generation failed", e);
-            }
-        }, executorService);
+        return renderAsync(plantumlText, FileFormat.SVG).thenApply(RenderResult::asText);
+    }
+
+    /**
+     * Render a diagram on the render pool without blocking the caller
+     * Cache hits complete immediately
+     * @param plantumlText PlantUML markup
+     * @param format SVG or PNG
+     * @return future with the rendered output; fails with RenderRejectedException when saturated
+     */
+    public CompletableFuture<RenderResult> renderAsync(String plantumlText, FileFormat format) {
+        return renderAsync(plantumlText, format, RenderOptions.EXPORT);
+    }
+
+    /**
+     * Render a diagram with scheduling options without blocking the caller
+     * @param plantumlText PlantUML markup
+     * @param format SVG or PNG
+     * @param options scheduler lane and cancel token
+     * @return future with the rendered output; fails with RenderRejectedException when saturated
+     */
+    public CompletableFuture<RenderResult> renderAsync(String plantumlText, FileFormat format, RenderOptions options) {
+        String key = cacheKey(plantumlText, format);
+        RenderResult cached = renderCache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        String owner = clusterRouter.remoteOwner(key);
+        if (owner != null) {
+            // Wait for the peer without holding a render thread
+            return clusterRouter.fetchAsync(owner, plantumlText, format, options.getPriority())
+                .thenCompose(remote -> remote != null
+                    ? remember(key, remote)
+                    : submitLocal(plantumlText, format, options));
+        }
+        return submitLocal(plantumlText, format, options);
+    }
+
+    /**
+     * Render on this node's pool, through the caches but without forwarding
+     */
+    private CompletableFuture<RenderResult> submitLocal(String plantumlText, FileFormat format, RenderOptions options) {
+        try {
+            // Reserved up front: a miss renders inline on the worker under this reservation
+            return renderScheduler.submit(() -> render(plantumlText, format, options, false), options,
+                                          renderEstimate(plantumlText, format));
+        } catch (RenderRejectedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Cache a render fetched from a peer in the memory and disk tiers
+     */
+    private CompletableFuture<RenderResult> remember(String key, RenderResult remote) {
+        try {
+            return CompletableFuture.completedFuture(
+                renderCache.get(key, () -> outputOptimizer.precompress(diskCache.get(key, () -> remote))));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Cancel a queued or running render by its client cancel token
+     * @return true if a render was cancelled
+     */
+    public boolean cancel(String cancelToken) {
+        return renderScheduler.cancel(cancelToken);
+    }
+
+    /**
+     * Render every @start...@end block of a document independently and in parallel
+     * Each block is cached under its own content hash, so after an edit only changed blocks re-render
+     * @param plantumlText PlantUML document with one or more diagrams
+     * @param format SVG or PNG
+     * @param priority scheduler lane
+     * @return one future per block, in document order
+     */
+    public List<CompletableFuture<RenderResult>> renderBlocks(String plantumlText, FileFormat format,
+                                                               RenderPriority priority) {
+        List<CompletableFuture<RenderResult>> results = new ArrayList<>();
+        for (String block : DiagramBlocks.split(plantumlText)) {
+            results.add(renderAsync(block, format, RenderOptions.of(priority)));
+        }
+        return results;
+    }
+
+    /**
+     * Decode PlantUML's standard URL text encoding (deflate + PlantUML base64)
+     * Sources without an @start line are wrapped in @startuml/@enduml like the PlantUML server does
+     * @param encoded encoded diagram text
+     * @return PlantUML markup
+     * @throws IOException if the text cannot be decoded
+     */
+    public String decodeSource(String encoded) throws IOException {
+        String source;
+        try {
+            source = TranscoderUtil.getDefaultTranscoder().decode(encoded);
+        } catch (Exception e) {
+            throw new IOException("Invalid encoded diagram: " + e.getMessage(), e);
+        }
+        if (!source.trim().startsWith("@start")) {
+            source = "@startuml\n" + source + "\n@enduml";
+        }
+        return source;
+    }
+
+    /**
+     * Cache key of a diagram for the current PlantUML/Graphviz setup
+     */
+    public String cacheKey(String plantumlText, FileFormat format) {
+        return RenderCache.key(plantumlText, format.name(), renderFingerprint);
     }
 
     /**
@@ -227,16 +644,59 @@ public class PlantUMLService {
      */
     public boolean validateSyntax(String plantumlText) {
         try {
-            SourceStringReader reader = new SourceStringReader(plantumlText);
-            ByteArrayOutputStream dummyStream = new ByteArrayOutputStream();
-            reader.outputImage(dummyStream, SVG_FORMAT);
-            return true;
+            return validate(plantumlText).isValid();
         } catch (Exception e) {
             logger.debug("Syntax validation failed: {}", e.getMessage());
             return false;
         }
     }
 
+    /**
+     * Validate PlantUML syntax with PlantUML's parser only - no layout, no image output
+     * @param plantumlText PlantUML markup
+     * @return diagram types and syntax diagnostics
+     * @throws IOException if the render pool rejects the request
+     */
+    public ValidationResult validate(String plantumlText) throws IOException {
+        // Parse-only and driven by typing, so it always takes the interactive lane
+        return renderScheduler.execute(() -> {
+            long startTime = System.currentTimeMillis();
+            List<String> diagramTypes = new ArrayList<>();
+            List<ValidationResult.Diagnostic> diagnostics = new ArrayList<>();
+
+            List<BlockUml> blocks = new SourceStringReader(plantumlText).getBlocks();
+            if (blocks.isEmpty()) {
+                diagnostics.add(new ValidationResult.Diagnostic(0, null, "No @startuml/@enduml block found"));
+            }
+
+            for (int i = 0; i < blocks.size(); i++) {
+                Diagram diagram = blocks.get(i).getDiagram();
+                if (diagram instanceof PSystemError) {
+                    diagramTypes.add("error");
+                    for (var error : ((PSystemError) diagram).getErrorsUml()) {
+                        var location = error.getLineLocation();
+                        diagnostics.add(new ValidationResult.Diagnostic(
+                            i,
+                            location != null ? location.getPosition() + 1 : null,
+                            error.getError()
+                        ));
+                    }
+                } else {
+                    diagramTypes.add(diagramType(diagram));
+                }
+            }
+
+            return new ValidationResult(diagramTypes, diagnostics, System.currentTimeMillis() - startTime);
+        }, RenderOptions.of(RenderPriority.INTERACTIVE));
+    }
+
+    /**
+     * Short diagram type name, e.g. SequenceDiagram or ClassDiagram
+     */
+    static String diagramType(Diagram diagram) {
+        return diagram == null ? "unknown" : diagram.getClass().getSimpleName();
+    }
+
     /**
      * Get PlantUML version information
      * @return version string
@@ -250,13 +710,15 @@ public class PlantUMLService {
     }
 
     /**
-     * Health check - test basic functionality
+     * Health check - end-to-end render, bypassing the cache
+     * Expensive: called by RenderHealthMonitor on its own schedule, not per request
      * @return true if service is healthy
      */
     public boolean healthCheck() {
         try {
-            String testUML = "@startuml\nAlice -> Bob: Test\n@enduml";
-            generateSVG(testUML);
+            // Class diagram so the check goes through the Graphviz layout path
+            String testUML = "@startuml\nclass Alice\nclass Bob\nAlice --> Bob\n@enduml";
+            renderUncached(testUML, FileFormat.SVG);
             return true;
         } catch (Exception e) {
             logger.error("Health check failed", e);
@@ -270,15 +732,20 @@ public class PlantUMLService {
      */
     public ServiceStats getStats() {
         String graphvizPath = System.getProperty("GRAPHVIZ_DOT");
-        boolean graphvizAvailable = graphvizPath != null && Files.exists(Paths.get(graphvizPath));
+        boolean graphvizAvailable = isGraphvizAvailable();
         
         return new ServiceStats(
             getPlantUMLVersion(),
             "MIT License",
             true, // commercial use allowed
-            executorService.toString(),
+            renderScheduler.getStats().toString(),
             graphvizPath,
-            graphvizAvailable
+            graphvizAvailable,
+            renderCache.getStats(),
+            diskCache.getStats(),
+            renderScheduler.getStats(),
+            layoutEngine.getStats(),
+            outputOptimizer.getStats()
         );
     }
 
@@ -292,15 +759,29 @@ public class PlantUMLService {
         private final String threadPoolInfo;
         private final String graphvizPath;
         private final boolean graphvizAvailable;
+        private final RenderCache.CacheStats cacheStats;
+        private final DiskRenderCache.DiskStats diskCacheStats;
+        private final RenderScheduler.SchedulerStats schedulerStats;
+        private final GraphvizLayoutEngine.LayoutStats layoutStats;
+        private final OutputOptimizer.OutputStats outputStats;
 
         public ServiceStats(String plantUMLVersion, String license, boolean commercialUse, 
-                          String threadPoolInfo, String graphvizPath, boolean graphvizAvailable) {
+                          String threadPoolInfo, String graphvizPath, boolean graphvizAvailable,
+                          RenderCache.CacheStats cacheStats, DiskRenderCache.DiskStats diskCacheStats,
+                          RenderScheduler.SchedulerStats schedulerStats,
+                          GraphvizLayoutEngine.LayoutStats layoutStats,
+                          OutputOptimizer.OutputStats outputStats) {
             this.plantUMLVersion = plantUMLVersion;
             this.license = license;
             this.commercialUse = commercialUse;
             this.threadPoolInfo = threadPoolInfo;
             this.graphvizPath = graphvizPath;
             this.graphvizAvailable = graphvizAvailable;
+            this.cacheStats = cacheStats;
+            this.diskCacheStats = diskCacheStats;
+            this.schedulerStats = schedulerStats;
+            this.layoutStats = layoutStats;
+            this.outputStats = outputStats;
         }
 
         public String getPlantUMLVersion() { return plantUMLVersion; }
@@ -309,5 +790,10 @@ public class PlantUMLService {
         public String getThreadPoolInfo() { return threadPoolInfo; }
         public String getGraphvizPath() { return graphvizPath; }
         public boolean isGraphvizAvailable() { return graphvizAvailable; }
+        public RenderCache.CacheStats getCacheStats() { return cacheStats; }
+        public DiskRenderCache.DiskStats getDiskCacheStats() { return diskCacheStats; }
+        public RenderScheduler.SchedulerStats getSchedulerStats() { return schedulerStats; }
+        public GraphvizLayoutEngine.LayoutStats getLayoutStats() { return layoutStats; }
+        public OutputOptimizer.OutputStats getOutputStats() { return outputStats; }
     }
 }
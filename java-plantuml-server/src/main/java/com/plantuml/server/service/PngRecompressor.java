@@ -0,0 +1,155 @@
+package com.plantuml.server.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Re-encodes PlantUML PNGs with a chosen deflate level and, when the image has at most 256 colors,
+ * an exact palette instead of RGBA
+ * PlantUML's text chunks (the embedded diagram source) are carried over unchanged.
+ * The original bytes are returned whenever re-encoding does not make the image smaller.
+ */
+public final class PngRecompressor {
+
+    private static final int SIGNATURE_BYTES = 8;
+    // Signature plus the IHDR chunk, which is always first
+    private static final int IHDR_END = SIGNATURE_BYTES + 4 + 4 + 13 + 4;
+
+    private PngRecompressor() {
+    }
+
+    /**
+     * @param png PNG bytes
+     * @param level deflate level 0-9, or -1 for the encoder default
+     * @param palette convert images with at most 256 distinct colors to an indexed palette
+     * @return the smaller of the original and the re-encoded PNG
+     * @throws IOException if the PNG cannot be decoded or encoded
+     */
+    public static byte[] recompress(byte[] png, int level, boolean palette) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            return png;
+        }
+        if (palette) {
+            BufferedImage indexed = toPalette(image);
+            if (indexed != null) {
+                image = indexed;
+            }
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        if (!writers.hasNext()) {
+            return png;
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(png.length);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(encoded)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (level >= 0 && param.canWriteCompressed()) {
+                // The JDK encoder maps quality q to deflate level (int) (9 * (1 - q))
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Math.max(0f, 1f - (Math.min(level, 9) + 0.5f) / 9f));
+            }
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        byte[] recompressed = withTextChunks(encoded.toByteArray(), png);
+        return recompressed.length < png.length ? recompressed : png;
+    }
+
+    /**
+     * Exact palette for images with at most 256 distinct ARGB values, null otherwise
+     */
+    private static BufferedImage toPalette(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Map<Integer, Integer> colors = new HashMap<>();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int argb : row) {
+                if (!colors.containsKey(argb)) {
+                    if (colors.size() == 256) {
+                        return null;
+                    }
+                    colors.put(argb, colors.size());
+                }
+            }
+        }
+
+        int size = colors.size();
+        byte[] red = new byte[size];
+        byte[] green = new byte[size];
+        byte[] blue = new byte[size];
+        byte[] alpha = new byte[size];
+        for (Map.Entry<Integer, Integer> color : colors.entrySet()) {
+            int argb = color.getKey();
+            int index = color.getValue();
+            alpha[index] = (byte) (argb >>> 24);
+            red[index] = (byte) (argb >>> 16);
+            green[index] = (byte) (argb >>> 8);
+            blue[index] = (byte) argb;
+        }
+
+        int bits = size <= 2 ? 1 : size <= 4 ? 2 : size <= 16 ? 4 : 8;
+        IndexColorModel model = new IndexColorModel(bits, size, red, green, blue, alpha);
+        BufferedImage indexed = new BufferedImage(width, height,
+            bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY, model);
+        WritableRaster raster = indexed.getRaster();
+        int[] indices = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                indices[x] = colors.get(row[x]);
+            }
+            raster.setPixels(0, y, width, 1, indices);
+        }
+        return indexed;
+    }
+
+    /**
+     * Copy tEXt, zTXt and iTXt chunks of the original PNG into the re-encoded one, right after IHDR
+     */
+    private static byte[] withTextChunks(byte[] encoded, byte[] original) {
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.wrap(original);
+        int position = SIGNATURE_BYTES;
+        while (position + 8 <= original.length) {
+            int length = buffer.getInt(position);
+            if (length < 0 || position + 12L + length > original.length) {
+                break;
+            }
+            String type = new String(original, position + 4, 4, StandardCharsets.US_ASCII);
+            if (type.equals("tEXt") || type.equals("zTXt") || type.equals("iTXt")) {
+                chunks.write(original, position, 12 + length);
+            }
+            position += 12 + length;
+        }
+        if (chunks.size() == 0 || encoded.length < IHDR_END) {
+            return encoded;
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream(encoded.length + chunks.size());
+        result.write(encoded, 0, IHDR_END);
+        result.write(chunks.toByteArray(), 0, chunks.size());
+        result.write(encoded, IHDR_END, encoded.length - IHDR_END);
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,41 @@
+package com.plantuml.server.service;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Reusable per-thread output buffer for rendering
+ * Render threads are long-lived, so each keeps its grown buffer between renders
+ * instead of re-growing a fresh ByteArrayOutputStream for every diagram
+ */
+public final class RenderBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    // Buffers grown past this are dropped after use so one huge diagram doesn't pin memory
+    private static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+    private static final ThreadLocal<RenderBuffer> BUFFERS = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private RenderBuffer() {
+        super(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Get this thread's buffer, emptied
+     */
+    public static RenderBuffer acquire() {
+        RenderBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Return the buffer after its content has been copied out
+     */
+    public void release() {
+        reset();
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            BUFFERS.remove();
+        }
+    }
+}
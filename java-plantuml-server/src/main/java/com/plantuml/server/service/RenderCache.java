@@ -0,0 +1,295 @@
+package com.plantuml.server.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed render cache
+ * Bounded by total bytes with LRU eviction; concurrent requests for the same key
+ * share a single render (single-flight)
+ */
+@Component
+public class RenderCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderCache.class);
+
+    // Rough per-entry bookkeeping cost (map node, key string, result object)
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    @Value("${plantuml.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${plantuml.cache.max-bytes:134217728}")
+    private long maxBytes;
+
+    @Value("${plantuml.cache.max-entry-bytes:8388608}")
+    private long maxEntryBytes;
+
+    // Longest a request waits for an identical render in progress: the render deadline
+    @Value("${plantuml.render.timeout-ms:30000}")
+    private long waitMillis;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, RenderResult> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<RenderResult>> inFlight = new ConcurrentHashMap<>();
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Loads a render result on cache miss
+     */
+    @FunctionalInterface
+    public interface Loader {
+        RenderResult load() throws IOException;
+    }
+
+    /**
+     * Build a cache key from the diagram source, output format and renderer fingerprint
+     * @param source PlantUML markup
+     * @param format output format name
+     * @param fingerprint PlantUML/Graphviz version string
+     * @return hex SHA-256 key
+     */
+    public static String key(String source, String format, String fingerprint) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(normalize(source).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(format.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Normalize line endings and trailing whitespace so that cosmetic differences share an entry
+     */
+    static String normalize(String source) {
+        return source.replace("\r\n", "\n").replace('\r', '\n').stripTrailing();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Get a cached result or render it once, sharing the render with concurrent callers
+     * @param key cache key from {@link #key}
+     * @param loader renders the diagram on miss
+     * @return render result, flagged as cached on hit
+     * @throws IOException if rendering fails
+     */
+    public RenderResult get(String key, Loader loader) throws IOException {
+        if (!enabled) {
+            return loader.load();
+        }
+
+        RenderResult cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.asCached();
+        }
+
+        CompletableFuture<RenderResult> promise = new CompletableFuture<>();
+        CompletableFuture<RenderResult> leader = inFlight.putIfAbsent(key, promise);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            try {
+                return await(leader).asCached();
+            } catch (RenderCancelledException e) {
+                // The leader's client cancelled or moved on; this caller still wants the render
+                return get(key, loader);
+            }
+        }
+
+        try {
+            // Another leader may have finished between lookup and putIfAbsent
+            cached = lookup(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                promise.complete(cached);
+                return cached.asCached();
+            }
+
+            misses.incrementAndGet();
+            RenderResult result = loader.load();
+            put(key, result);
+            promise.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            promise.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, promise);
+        }
+    }
+
+    /**
+     * Look up a result without rendering
+     * @return cached result or null
+     */
+    public RenderResult getIfPresent(String key) {
+        if (!enabled) {
+            return null;
+        }
+        RenderResult cached = lookup(key);
+        if (cached == null) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.asCached();
+    }
+
+    /**
+     * Check whether a result is held, without counting a lookup
+     */
+    public synchronized boolean contains(String key) {
+        return enabled && entries.containsKey(key);
+    }
+
+    private synchronized RenderResult lookup(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, RenderResult result) {
+        long weight = weigh(key, result);
+        if (weight > maxEntryBytes || weight > maxBytes) {
+            logger.debug("Not caching {} bytes render, exceeds entry limit", result.getSize());
+            return;
+        }
+
+        RenderResult previous = entries.put(key, result);
+        if (previous != null) {
+            currentBytes -= weigh(key, previous);
+        }
+        currentBytes += weight;
+
+        Iterator<Map.Entry<String, RenderResult>> eldest = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, RenderResult> entry = eldest.next();
+            currentBytes -= weigh(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static long weigh(String key, RenderResult result) {
+        return result.getRetainedSize() + key.length() * 2L + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Wait for the leader's render, no longer than the caller's own deadline
+     * A follower on a render thread may be holding the slot the leader is queued for, so it gives up
+     * when its own render would be aborted rather than parking the thread beyond that
+     */
+    private RenderResult await(CompletableFuture<RenderResult> future) throws IOException {
+        long remaining = RenderScheduler.remainingMillis();
+        long timeout = remaining >= 0 ? remaining : waitMillis;
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RenderTimeoutException("Identical render still running after " + timeout + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for render", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Render failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Drop all cached entries
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(
+            enabled,
+            entries.size(),
+            currentBytes,
+            maxBytes,
+            hits.get(),
+            misses.get(),
+            evictions.get(),
+            coalesced.get()
+        );
+    }
+
+    /**
+     * Cache statistics snapshot
+     */
+    public static class CacheStats {
+        private final boolean enabled;
+        private final int entries;
+        private final long bytes;
+        private final long maxBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long coalesced;
+
+        public CacheStats(boolean enabled, int entries, long bytes, long maxBytes,
+                          long hits, long misses, long evictions, long coalesced) {
+            this.enabled = enabled;
+            this.entries = entries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.coalesced = coalesced;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public int getEntries() { return entries; }
+        public long getBytes() { return bytes; }
+        public long getMaxBytes() { return maxBytes; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getCoalesced() { return coalesced; }
+
+        public double getHitRatio() {
+            long lookups = hits + misses + coalesced;
+            return lookups == 0 ? 0.0 : (double) (hits + coalesced) / lookups;
+        }
+    }
+}
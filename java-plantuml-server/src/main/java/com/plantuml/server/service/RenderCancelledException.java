@@ -0,0 +1,13 @@
+package com.plantuml.server.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a render is cancelled before it finishes, by its client or by a newer request
+ */
+public class RenderCancelledException extends IOException {
+
+    public RenderCancelledException(String message) {
+        super(message);
+    }
+}
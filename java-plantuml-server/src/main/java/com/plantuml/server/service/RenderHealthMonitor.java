@@ -0,0 +1,149 @@
+package com.plantuml.server.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background render health check
+ * Runs the end-to-end render check on a fixed interval instead of on every probe,
+ * and skips it while the render queue is backed up so health checks never compete with users.
+ * Probes and /health read the last result and the render pool progress tracked here.
+ */
+@Component
+public class RenderHealthMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderHealthMonitor.class);
+
+    @Autowired
+    private PlantUMLService plantUMLService;
+
+    @Autowired
+    private RenderScheduler renderScheduler;
+
+    @Value("${plantuml.health.check-interval-ms:30000}")
+    private long checkIntervalMillis;
+
+    // Consecutive failed checks before liveness reports DOWN
+    @Value("${plantuml.health.failure-threshold:3}")
+    private int failureThreshold;
+
+    // Busy render pool without a single completed render for this long counts as stalled
+    @Value("${plantuml.health.stall-ms:120000}")
+    private long stallMillis;
+
+    private ScheduledExecutorService checker;
+
+    private volatile boolean lastCheckOk = true;
+    private volatile long lastCheckAt;
+    private volatile long lastCheckMillis = -1;
+    private volatile int consecutiveFailures;
+    private volatile long skippedChecks;
+
+    private volatile long lastCompleted;
+    private volatile long lastProgressAt = System.currentTimeMillis();
+
+    @PostConstruct
+    public void init() {
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plantuml-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::check, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checker.shutdownNow();
+    }
+
+    private void check() {
+        trackProgress();
+
+        // A queued backlog already proves renders are flowing or will be caught by stall detection
+        if (renderScheduler.getQueueDepth() > 0) {
+            skippedChecks++;
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        boolean ok = plantUMLService.healthCheck();
+        lastCheckMillis = System.currentTimeMillis() - startTime;
+        lastCheckAt = System.currentTimeMillis();
+        lastCheckOk = ok;
+        consecutiveFailures = ok ? 0 : consecutiveFailures + 1;
+        if (!ok) {
+            logger.warn("Background render check failed ({} in a row)", consecutiveFailures);
+        }
+    }
+
+    private void trackProgress() {
+        long completed = renderScheduler.getCompletedCount();
+        if (completed != lastCompleted || renderScheduler.getActiveRenders() == 0) {
+            lastCompleted = completed;
+            lastProgressAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Render pool busy without completing anything for longer than the stall threshold
+     */
+    public boolean isStalled() {
+        trackProgress();
+        return System.currentTimeMillis() - lastProgressAt > stallMillis;
+    }
+
+    /**
+     * Whether the process should be restarted: stalled pool or repeated failed checks
+     */
+    public boolean isLive() {
+        return !isStalled() && consecutiveFailures < failureThreshold;
+    }
+
+    public boolean isLastCheckOk() {
+        return lastCheckOk;
+    }
+
+    public CheckStats getStats() {
+        return new CheckStats(lastCheckOk, lastCheckAt, lastCheckMillis, consecutiveFailures,
+                              skippedChecks, isStalled());
+    }
+
+    /**
+     * Background check snapshot
+     */
+    public static class CheckStats {
+        private final boolean ok;
+        private final long checkedAt;
+        private final long durationMillis;
+        private final int consecutiveFailures;
+        private final long skipped;
+        private final boolean stalled;
+
+        public CheckStats(boolean ok, long checkedAt, long durationMillis, int consecutiveFailures,
+                          long skipped, boolean stalled) {
+            this.ok = ok;
+            this.checkedAt = checkedAt;
+            this.durationMillis = durationMillis;
+            this.consecutiveFailures = consecutiveFailures;
+            this.skipped = skipped;
+            this.stalled = stalled;
+        }
+
+        public boolean isOk() { return ok; }
+        public long getCheckedAt() { return checkedAt; }
+        public long getDurationMillis() { return durationMillis; }
+        public int getConsecutiveFailures() { return consecutiveFailures; }
+        public long getSkipped() { return skipped; }
+        public boolean isStalled() { return stalled; }
+    }
+}
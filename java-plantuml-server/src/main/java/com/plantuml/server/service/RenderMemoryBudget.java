@@ -0,0 +1,390 @@
+package com.plantuml.server.service;
+
+import net.sourceforge.plantuml.FileFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Heap budget for renders in flight
+ * Every render reserves its estimated peak heap before it starts. A render above max-render-bytes is
+ * refused outright; others wait, in arrival order, until the global budget has room, and give up with
+ * a retryable rejection after wait-ms. Estimates use the pixel size of an earlier render of the same
+ * source when one is known (usually the SVG preview before a PNG export), otherwise the source length.
+ * PNG dimensions are capped at PLANTUML_LIMIT_SIZE, which PlantUML also applies when rasterizing.
+ *
+ * The render scheduler reserves asynchronously when it admits a job, so renders waiting for memory
+ * hold no render thread; the job is queued once its reservation is granted.
+ */
+@Component
+public class RenderMemoryBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderMemoryBudget.class);
+
+    // Parser, layout and diagram model of a small diagram
+    private static final long BASE_RENDER_BYTES = 2L * 1024 * 1024;
+    // Rough area per source line when the size is unknown: one 200x200 element
+    private static final long PIXELS_PER_SOURCE_LINE = 40_000;
+    // SVG markup and its copies per source line
+    private static final long SVG_BYTES_PER_SOURCE_LINE = 8 * 1024;
+    // ARGB raster PlantUML draws into
+    private static final int RASTER_BYTES_PER_PIXEL = 4;
+    private static final int MAX_KNOWN_SIZES = 10_000;
+
+    // 0 = 40% of the maximum heap
+    @Value("${plantuml.memory.budget-bytes:0}")
+    private long budgetBytes;
+
+    // 0 = half the budget
+    @Value("${plantuml.memory.max-render-bytes:0}")
+    private long maxRenderBytes;
+
+    @Value("${plantuml.memory.wait-ms:10000}")
+    private long waitMillis;
+
+    // PNGs estimated above this are encoded straight to the response instead of buffered and cached
+    @Value("${plantuml.memory.stream-png-bytes:33554432}")
+    private long streamPngBytes;
+
+    @Value("${plantuml.memory.png-limit-size:${PLANTUML_LIMIT_SIZE:4096}}")
+    private int pngLimitSize;
+
+    @Value("${plantuml.render.retry-after-seconds:2}")
+    private int retryAfterSeconds;
+
+    // Budget in KiB so budgets beyond 2 GiB fit in an int; free KiB and waiters guarded by the deque
+    private int totalKib;
+    private long freeKib;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private ScheduledExecutorService timer;
+
+    // Pixel size of recent diagrams by SVG cache key, access ordered
+    private final Map<String, long[]> knownSizes = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > MAX_KNOWN_SIZES;
+        }
+    };
+
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong peakReservedBytes = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong tooLarge = new AtomicLong();
+    private final AtomicLong streamed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (budgetBytes <= 0) {
+            budgetBytes = Runtime.getRuntime().maxMemory() / 10 * 4;
+        }
+        if (maxRenderBytes <= 0 || maxRenderBytes > budgetBytes) {
+            maxRenderBytes = budgetBytes / 2;
+        }
+        totalKib = (int) Math.min(Integer.MAX_VALUE, budgetBytes / 1024);
+        freeKib = totalKib;
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plantuml-memory-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Read by PlantUML when it rasterizes; larger diagrams are cropped to this many pixels per side
+        System.setProperty("PLANTUML_LIMIT_SIZE", String.valueOf(pngLimitSize));
+        logger.info("Render memory budget {} MiB, at most {} MiB per render, PNG limit {}px",
+                    budgetBytes >> 20, maxRenderBytes >> 20, pngLimitSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Settings that change rendered bytes, part of every cache key
+     */
+    public String fingerprint() {
+        return "limit:" + pngLimitSize;
+    }
+
+    /**
+     * Estimated peak heap of rendering a diagram
+     * @param sizeKey SVG cache key of the source, under which earlier renders recorded their size
+     * @param source PlantUML markup
+     * @param format SVG or PNG
+     * @param streamed PNG encoded straight to the client, so the encoded image is never buffered
+     */
+    public long estimate(String sizeKey, String source, FileFormat format, boolean streamed) {
+        long lines = countLines(source);
+        if (format != FileFormat.PNG) {
+            return BASE_RENDER_BYTES + lines * SVG_BYTES_PER_SOURCE_LINE;
+        }
+        long pixels = pixels(sizeKey, lines);
+        long raster = pixels * RASTER_BYTES_PER_PIXEL;
+        // Buffered PNGs sit in the render buffer and are copied once into the result
+        long encoded = streamed ? 0 : pixels;
+        return BASE_RENDER_BYTES + raster + encoded;
+    }
+
+    private long pixels(String sizeKey, long lines) {
+        long[] known;
+        synchronized (knownSizes) {
+            known = knownSizes.get(sizeKey);
+        }
+        long limit = pngLimitSize;
+        if (known != null) {
+            return Math.min(known[0], limit) * Math.min(known[1], limit);
+        }
+        return Math.min(lines * PIXELS_PER_SOURCE_LINE, limit * limit);
+    }
+
+    private static long countLines(String source) {
+        long lines = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Remember the pixel size of a rendered diagram for later estimates
+     */
+    public void recordSize(String sizeKey, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        synchronized (knownSizes) {
+            knownSizes.put(sizeKey, new long[] {width, height});
+        }
+    }
+
+    /**
+     * Whether a PNG with this estimate should be streamed to the client
+     */
+    public boolean shouldStream(long estimatedBytes) {
+        return estimatedBytes >= streamPngBytes;
+    }
+
+    public void recordStreamed() {
+        streamed.incrementAndGet();
+    }
+
+    /**
+     * Fail fast for a render that could never fit
+     * @throws RenderTooLargeException if the estimate exceeds max-render-bytes
+     */
+    public void checkLimit(long estimatedBytes) throws RenderTooLargeException {
+        if (estimatedBytes > maxRenderBytes) {
+            tooLarge.incrementAndGet();
+            throw new RenderTooLargeException("Diagram needs an estimated " + (estimatedBytes >> 20)
+                + " MiB to render, limit is " + (maxRenderBytes >> 20) + " MiB");
+        }
+    }
+
+    /**
+     * Reserve heap for one render, waiting behind earlier reservations while the budget is full
+     * Blocks the calling thread; renders queued through the scheduler use {@link #reserveAsync(long)}
+     * @return reservation to close when the render is done
+     * @throws RenderTooLargeException if the estimate exceeds max-render-bytes
+     * @throws RenderRejectedException if the budget stays full for wait-ms
+     * @throws RenderCancelledException if the thread is interrupted while waiting
+     */
+    public Reservation reserve(long estimatedBytes) throws IOException {
+        CompletableFuture<Reservation> pending = reserveAsync(estimatedBytes);
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            // Granted in the meantime: hand the memory straight back
+            pending.cancel(false);
+            pending.thenAccept(Reservation::close);
+            Thread.currentThread().interrupt();
+            throw new RenderCancelledException("Render cancelled while waiting for memory");
+        } catch (ExecutionException e) {
+            throw RenderScheduler.unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Reserve heap for one render without blocking
+     * Reservations are granted strictly in arrival order; a later small one never overtakes an earlier large one.
+     * Cancelling the returned future withdraws the request.
+     * @return future completed with the reservation, or exceptionally with RenderTooLargeException,
+     *         or RenderRejectedException once the budget stays full for wait-ms
+     */
+    public CompletableFuture<Reservation> reserveAsync(long estimatedBytes) {
+        try {
+            checkLimit(estimatedBytes);
+        } catch (RenderTooLargeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        int kib = (int) Math.min(totalKib, Math.max(1, (estimatedBytes + 1023) / 1024));
+        Waiter waiter = new Waiter(kib);
+        synchronized (waiters) {
+            if (waiters.isEmpty() && freeKib >= kib) {
+                freeKib -= kib;
+                return CompletableFuture.completedFuture(new Reservation(kib));
+            }
+            waiters.addLast(waiter);
+        }
+        waited.incrementAndGet();
+        ScheduledFuture<?> expiry = timer.schedule(() -> {
+            if (waiter.future.completeExceptionally(
+                    new RenderRejectedException("Render memory budget exhausted", retryAfterSeconds))) {
+                rejected.incrementAndGet();
+            }
+        }, waitMillis, TimeUnit.MILLISECONDS);
+        waiter.future.whenComplete((reservation, failure) -> {
+            expiry.cancel(false);
+            if (failure != null) {
+                withdraw(waiter);
+            }
+        });
+        return waiter.future;
+    }
+
+    private void withdraw(Waiter waiter) {
+        boolean wasHead;
+        synchronized (waiters) {
+            wasHead = waiters.peekFirst() == waiter;
+            waiters.remove(waiter);
+        }
+        // Waiters behind a withdrawn head may fit now
+        if (wasHead) {
+            grantWaiters();
+        }
+    }
+
+    /**
+     * Grant waiting reservations from the head of the queue while they fit
+     */
+    private void grantWaiters() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (waiters) {
+            while (!waiters.isEmpty() && freeKib >= waiters.peekFirst().kib) {
+                Waiter waiter = waiters.pollFirst();
+                freeKib -= waiter.kib;
+                granted.add(waiter);
+            }
+        }
+        // Completed outside the lock: a waiter's continuation queues its render
+        for (Waiter waiter : granted) {
+            Reservation reservation = new Reservation(waiter.kib);
+            if (!waiter.future.complete(reservation)) {
+                // Expired or withdrawn after it was taken off the queue
+                reservation.close();
+            }
+        }
+    }
+
+    private static class Waiter {
+        private final int kib;
+        private final CompletableFuture<Reservation> future = new CompletableFuture<>();
+
+        Waiter(int kib) {
+            this.kib = kib;
+        }
+    }
+
+    public long getReservedBytes() { return reservedBytes.get(); }
+    public long getRejectedCount() { return rejected.get(); }
+    public long getTooLargeCount() { return tooLarge.get(); }
+    public long getStreamedCount() { return streamed.get(); }
+
+    public MemoryStats getStats() {
+        return new MemoryStats(budgetBytes, maxRenderBytes, reservedBytes.get(), peakReservedBytes.get(),
+                               waiting(), waited.get(), rejected.get(), tooLarge.get(),
+                               streamed.get(), pngLimitSize);
+    }
+
+    private int waiting() {
+        synchronized (waiters) {
+            return waiters.size();
+        }
+    }
+
+    /**
+     * Heap reserved by one render
+     */
+    public class Reservation implements AutoCloseable {
+        private final int kib;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(int kib) {
+            this.kib = kib;
+            peakReservedBytes.accumulateAndGet(reservedBytes.addAndGet(kib * 1024L), Math::max);
+        }
+
+        @Override
+        public void close() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            reservedBytes.addAndGet(-kib * 1024L);
+            synchronized (waiters) {
+                freeKib += kib;
+            }
+            grantWaiters();
+        }
+    }
+
+    /**
+     * Render memory budget statistics
+     */
+    public static class MemoryStats {
+        private final long budgetBytes;
+        private final long maxRenderBytes;
+        private final long reservedBytes;
+        private final long peakReservedBytes;
+        private final int waiting;
+        private final long waited;
+        private final long rejected;
+        private final long tooLarge;
+        private final long streamed;
+        private final int pngLimitSize;
+
+        public MemoryStats(long budgetBytes, long maxRenderBytes, long reservedBytes, long peakReservedBytes,
+                           int waiting, long waited, long rejected, long tooLarge, long streamed, int pngLimitSize) {
+            this.budgetBytes = budgetBytes;
+            this.maxRenderBytes = maxRenderBytes;
+            this.reservedBytes = reservedBytes;
+            this.peakReservedBytes = peakReservedBytes;
+            this.waiting = waiting;
+            this.waited = waited;
+            this.rejected = rejected;
+            this.tooLarge = tooLarge;
+            this.streamed = streamed;
+            this.pngLimitSize = pngLimitSize;
+        }
+
+        public long getBudgetBytes() { return budgetBytes; }
+        public long getMaxRenderBytes() { return maxRenderBytes; }
+        public long getReservedBytes() { return reservedBytes; }
+        public long getPeakReservedBytes() { return peakReservedBytes; }
+        public int getWaiting() { return waiting; }
+        public long getWaited() { return waited; }
+        public long getRejected() { return rejected; }
+        public long getTooLarge() { return tooLarge; }
+        public long getStreamed() { return streamed; }
+        public int getPngLimitSize() { return pngLimitSize; }
+    }
+}
@@ -0,0 +1,212 @@
+package com.plantuml.server.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import com.plantuml.server.cluster.ClusterRouter;
+import com.plantuml.server.recording.RequestRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer render metrics, published through /actuator/metrics and /actuator/prometheus
+ *
+ * plantuml.render               timer by format, diagram type, outcome and layout (dot/smetana/none)
+ * plantuml.render.output.size   rendered bytes by format
+ * plantuml.render.source.length source characters by format
+ * plantuml.render.queue.*       scheduler queue depth, wait time, active renders, rejections
+ * plantuml.render.cancelled     renders cancelled by client, token or supersession
+ * plantuml.cache.*              render cache size and hit/miss/eviction counts
+ * plantuml.cache.disk.*         disk render cache size and hit/miss counts
+ * plantuml.output.*            bytes saved by SVG minification / PNG re-encoding, precompressed gzip responses
+ * plantuml.cluster.*           peer fetches by outcome (remote hit/render, local fallback) and renders served for peers
+ * plantuml.memory.*            heap reserved by renders in flight, refused renders by reason, streamed PNG exports
+ * plantuml.jobs.*              export job queue, submissions and outcomes (registered by ExportJobManager)
+ * plantuml.live.*               live preview sessions and patch/full traffic (registered by LivePreviewHandler)
+ * plantuml.recording.*         request shapes written or dropped by the opt-in request recorder
+ */
+@Component
+public class RenderMetrics {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private RenderScheduler renderScheduler;
+
+    @Autowired
+    private RenderCache renderCache;
+
+    @Autowired
+    private DiskRenderCache diskCache;
+
+    @Autowired
+    private GraphvizLayoutEngine layoutEngine;
+
+    @Autowired
+    private OutputOptimizer outputOptimizer;
+
+    @Autowired
+    private ClusterRouter clusterRouter;
+
+    @Autowired
+    private RenderMemoryBudget memoryBudget;
+
+    @Autowired
+    private RequestRecorder requestRecorder;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("plantuml.render.queue.depth", renderScheduler, RenderScheduler::getQueueDepth)
+            .description("Renders waiting for a render thread")
+            .register(registry);
+        Gauge.builder("plantuml.render.active", renderScheduler, RenderScheduler::getActiveRenders)
+            .description("Renders currently running")
+            .register(registry);
+        FunctionTimer.builder("plantuml.render.queue.wait", renderScheduler,
+                              RenderScheduler::getCompletedCount,
+                              RenderScheduler::getTotalWaitNanos,
+                              TimeUnit.NANOSECONDS)
+            .description("Time renders spent queued before starting")
+            .register(registry);
+        FunctionCounter.builder("plantuml.render.rejected", renderScheduler, RenderScheduler::getRejectedCount)
+            .description("Renders rejected because the queue was full")
+            .register(registry);
+        FunctionCounter.builder("plantuml.render.timeouts", renderScheduler, RenderScheduler::getTimedOutCount)
+            .description("Renders aborted at the render deadline")
+            .register(registry);
+        FunctionCounter.builder("plantuml.render.cancelled", renderScheduler, RenderScheduler::getCancelledCount)
+            .description("Renders cancelled by their client or superseded by a newer request")
+            .register(registry);
+        FunctionCounter.builder("plantuml.render.superseded", renderScheduler, RenderScheduler::getSupersededCount)
+            .description("Interactive renders replaced by a newer request from the same client")
+            .register(registry);
+
+        Gauge.builder("plantuml.graphviz.busy", layoutEngine, GraphvizLayoutEngine::getBusySlots)
+            .description("dot slots currently running a layout")
+            .register(registry);
+        FunctionCounter.builder("plantuml.graphviz.killed", layoutEngine, GraphvizLayoutEngine::getKilledCount)
+            .description("dot processes killed for cancelled or timed-out renders")
+            .register(registry);
+
+        FunctionCounter.builder("plantuml.output.saved", outputOptimizer, OutputOptimizer::getSvgSavedBytes)
+            .tag("format", "SVG")
+            .baseUnit("bytes")
+            .description("Bytes removed by output optimization")
+            .register(registry);
+        FunctionCounter.builder("plantuml.output.saved", outputOptimizer, OutputOptimizer::getPngSavedBytes)
+            .tag("format", "PNG")
+            .baseUnit("bytes")
+            .description("Bytes removed by output optimization")
+            .register(registry);
+        FunctionCounter.builder("plantuml.output.gzip.served", outputOptimizer, OutputOptimizer::getGzipServedCount)
+            .description("Responses served from the precomputed gzip encoding")
+            .register(registry);
+
+        FunctionCounter.builder("plantuml.cluster.fetches", clusterRouter, ClusterRouter::getRemoteHitCount)
+            .tag("outcome", "remote_hit")
+            .description("Cache misses routed to the owning peer, by outcome")
+            .register(registry);
+        FunctionCounter.builder("plantuml.cluster.fetches", clusterRouter, ClusterRouter::getRemoteRenderCount)
+            .tag("outcome", "remote_render")
+            .description("Cache misses routed to the owning peer, by outcome")
+            .register(registry);
+        FunctionCounter.builder("plantuml.cluster.fetches", clusterRouter, ClusterRouter::getFallbackCount)
+            .tag("outcome", "fallback")
+            .description("Cache misses routed to the owning peer, by outcome")
+            .register(registry);
+        FunctionCounter.builder("plantuml.cluster.served", clusterRouter, ClusterRouter::getServedCount)
+            .description("Renders served to peers for keys this node owns")
+            .register(registry);
+
+        Gauge.builder("plantuml.memory.reserved", memoryBudget, RenderMemoryBudget::getReservedBytes)
+            .baseUnit("bytes")
+            .description("Estimated heap reserved by renders in flight")
+            .register(registry);
+        FunctionCounter.builder("plantuml.memory.refused", memoryBudget, RenderMemoryBudget::getRejectedCount)
+            .tag("reason", "budget")
+            .description("Renders refused for memory")
+            .register(registry);
+        FunctionCounter.builder("plantuml.memory.refused", memoryBudget, RenderMemoryBudget::getTooLargeCount)
+            .tag("reason", "too_large")
+            .description("Renders refused for memory")
+            .register(registry);
+        FunctionCounter.builder("plantuml.memory.streamed", memoryBudget, RenderMemoryBudget::getStreamedCount)
+            .description("Large PNG exports encoded straight to the response")
+            .register(registry);
+
+        FunctionCounter.builder("plantuml.recording.records", requestRecorder, RequestRecorder::getRecordedCount)
+            .tag("outcome", "written")
+            .description("Request shapes handled by the request recorder")
+            .register(registry);
+        FunctionCounter.builder("plantuml.recording.records", requestRecorder, RequestRecorder::getDroppedCount)
+            .tag("outcome", "dropped")
+            .description("Request shapes handled by the request recorder")
+            .register(registry);
+
+        Gauge.builder("plantuml.cache.size", renderCache, cache -> cache.getStats().getBytes())
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("plantuml.cache.entries", renderCache, cache -> cache.getStats().getEntries())
+            .register(registry);
+        FunctionCounter.builder("plantuml.cache.hits", renderCache, cache -> cache.getStats().getHits())
+            .register(registry);
+        FunctionCounter.builder("plantuml.cache.misses", renderCache, cache -> cache.getStats().getMisses())
+            .register(registry);
+        FunctionCounter.builder("plantuml.cache.evictions", renderCache, cache -> cache.getStats().getEvictions())
+            .register(registry);
+
+        Gauge.builder("plantuml.cache.disk.size", diskCache, cache -> cache.getStats().getBytes())
+            .baseUnit("bytes")
+            .register(registry);
+        FunctionCounter.builder("plantuml.cache.disk.hits", diskCache, cache -> cache.getStats().getHits())
+            .register(registry);
+        FunctionCounter.builder("plantuml.cache.disk.misses", diskCache, cache -> cache.getStats().getMisses())
+            .register(registry);
+    }
+
+    /**
+     * Record one render attempt
+     * @param format SVG or PNG
+     * @param diagramType diagram class name, e.g. SequenceDiagram
+     * @param layout dot, smetana or none
+     * @param success whether output was produced
+     * @param nanos render duration
+     * @param sourceLength source characters
+     * @param outputBytes output size, negative when the render failed
+     */
+    public void recordRender(String format, String diagramType, String layout, boolean success,
+                             long nanos, int sourceLength, long outputBytes) {
+        Timer.builder("plantuml.render")
+            .description("Diagram render latency")
+            .tag("format", format)
+            .tag("type", diagramType)
+            .tag("outcome", success ? "success" : "failure")
+            .tag("layout", layout)
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+
+        DistributionSummary.builder("plantuml.render.source.length")
+            .baseUnit("characters")
+            .tag("format", format)
+            .register(registry)
+            .record(sourceLength);
+
+        if (outputBytes >= 0) {
+            DistributionSummary.builder("plantuml.render.output.size")
+                .baseUnit("bytes")
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(outputBytes);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.plantuml.server.service;
+
+/**
+ * How a render is scheduled and how it can be cancelled
+ * priority    - scheduler lane
+ * clientId    - interactive renders from the same client supersede each other
+ * cancelToken - client-chosen token for explicit cancellation; may be null
+ */
+public class RenderOptions {
+
+    public static final RenderOptions EXPORT = new RenderOptions(RenderPriority.EXPORT, null, null);
+    public static final RenderOptions BULK = new RenderOptions(RenderPriority.BULK, null, null);
+
+    private final RenderPriority priority;
+    private final String clientId;
+    private final String cancelToken;
+
+    public RenderOptions(RenderPriority priority, String clientId, String cancelToken) {
+        this.priority = priority;
+        this.clientId = clientId;
+        this.cancelToken = cancelToken;
+    }
+
+    public static RenderOptions of(RenderPriority priority) {
+        return new RenderOptions(priority, null, null);
+    }
+
+    public RenderPriority getPriority() { return priority; }
+    public String getClientId() { return clientId; }
+    public String getCancelToken() { return cancelToken; }
+}
@@ -0,0 +1,35 @@
+package com.plantuml.server.service;
+
+import java.util.Locale;
+
+/**
+ * Render request classes, each with its own lane in the render scheduler
+ * interactive - live editor preview, latency first
+ * export      - single downloads (PNG, encoded URLs)
+ * bulk        - batch jobs and background work
+ */
+public enum RenderPriority {
+    INTERACTIVE,
+    EXPORT,
+    BULK;
+
+    /**
+     * Parse a priority header value
+     * @param value header value, may be null
+     * @param fallback priority used when the value is missing or unknown
+     */
+    public static RenderPriority parse(String value, RenderPriority fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,23 @@
+package com.plantuml.server.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the render scheduler is saturated and refuses new work
+ */
+public class RenderRejectedException extends IOException {
+
+    private final int retryAfterSeconds;
+
+    public RenderRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Suggested client back-off, sent as the Retry-After header
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,64 @@
+package com.plantuml.server.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rendered diagram output
+ * Immutable, shared between the render cache and all callers - never modify getData()
+ */
+public class RenderResult {
+
+    private final byte[] data;
+    private final String format;
+    private final String description;
+    private final String diagramType;
+    private final long renderMillis;
+    private final boolean cached;
+    // Precomputed gzip encoding of data, or null
+    private final byte[] gzipData;
+
+    public RenderResult(byte[] data, String format, String description, String diagramType, long renderMillis) {
+        this(data, format, description, diagramType, renderMillis, false, null);
+    }
+
+    private RenderResult(byte[] data, String format, String description, String diagramType,
+                         long renderMillis, boolean cached, byte[] gzipData) {
+        this.data = data;
+        this.format = format;
+        this.description = description;
+        this.diagramType = diagramType;
+        this.renderMillis = renderMillis;
+        this.cached = cached;
+        this.gzipData = gzipData;
+    }
+
+    /**
+     * Same output, flagged as served from cache
+     */
+    public RenderResult asCached() {
+        return cached ? this : new RenderResult(data, format, description, diagramType, renderMillis, true, gzipData);
+    }
+
+    /**
+     * Same output carrying its gzip encoding, served as-is to clients that accept gzip
+     */
+    public RenderResult withGzip(byte[] gzipData) {
+        return new RenderResult(data, format, description, diagramType, renderMillis, cached, gzipData);
+    }
+
+    public String asText() {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    public byte[] getData() { return data; }
+    public int getSize() { return data.length; }
+    public byte[] getGzipData() { return gzipData; }
+    public boolean hasGzip() { return gzipData != null; }
+    // Heap held by the output, including the gzip encoding
+    public long getRetainedSize() { return (long) data.length + (gzipData != null ? gzipData.length : 0); }
+    public String getFormat() { return format; }
+    public String getDescription() { return description; }
+    public String getDiagramType() { return diagramType; }
+    public long getRenderMillis() { return renderMillis; }
+    public boolean isCached() { return cached; }
+}
@@ -0,0 +1,695 @@
+package com.plantuml.server.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded render scheduler
+ * All diagram rendering runs on a core-sized pool with a bounded queue;
+ * work beyond the queue is rejected immediately and runaway renders are
+ * aborted after the configured deadline
+ *
+ * Queued renders are ordered by weighted fair queuing across the priority lanes:
+ * each job gets a virtual finish tag of max(virtual time, lane's last tag) + 1/weight
+ * and the lowest tag runs next, so interactive renders overtake exports and bulk work
+ * without starving them. Part of the queue is reserved for interactive renders.
+ *
+ * Renders can be cancelled while queued or running: by cancel token, or by a newer
+ * interactive render from the same client. A running render is interrupted and its
+ * dot process killed, the same as at the deadline.
+ *
+ * Renders submitted with a memory estimate reserve it from the render memory budget once admitted
+ * and join the queue only when it is granted, so no render thread sits waiting for memory.
+ */
+@Component
+public class RenderScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderScheduler.class);
+
+    // Marks pool threads so nested render calls run inline instead of re-queueing
+    private static final ThreadLocal<Boolean> RENDER_THREAD = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    // System.nanoTime() at which the render running on this thread is aborted
+    private static final ThreadLocal<Long> RENDER_DEADLINE = new ThreadLocal<>();
+    // Set while the render running on this thread holds a memory reservation
+    private static final ThreadLocal<Boolean> RENDER_RESERVED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    @Autowired
+    private GraphvizLayoutEngine layoutEngine;
+
+    @Autowired
+    private RenderMemoryBudget memoryBudget;
+
+    @Value("${plantuml.render.threads:0}")
+    private int threads;
+
+    @Value("${plantuml.render.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${plantuml.render.timeout-ms:30000}")
+    private long timeoutMillis;
+
+    @Value("${plantuml.render.retry-after-seconds:2}")
+    private int retryAfterSeconds;
+
+    @Value("${plantuml.render.weight.interactive:8}")
+    private int interactiveWeight;
+
+    @Value("${plantuml.render.weight.export:3}")
+    private int exportWeight;
+
+    @Value("${plantuml.render.weight.bulk:1}")
+    private int bulkWeight;
+
+    // Share of the queue that only interactive renders may fill
+    @Value("${plantuml.render.interactive-reserve:0.25}")
+    private double interactiveReserve;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService watchdog;
+
+    private final AtomicInteger activeRenders = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    // Admitted renders waiting for their memory reservation, counted against the queue bound
+    private final AtomicInteger awaitingMemory = new AtomicInteger();
+
+    // Guards virtual time, lane tags and admission
+    private final Object fairness = new Object();
+    private double virtualTime;
+    private long sequence;
+    private final Lane[] lanes = new Lane[RenderPriority.values().length];
+
+    // Latest interactive render per client, cancelled when a newer revision arrives
+    private final Map<String, RenderJob<?>> latestByClient = new ConcurrentHashMap<>();
+    // Queued or running renders by client cancel token
+    private final Map<String, RenderJob<?>> byToken = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        lanes[RenderPriority.INTERACTIVE.ordinal()] = new Lane(RenderPriority.INTERACTIVE, interactiveWeight);
+        lanes[RenderPriority.EXPORT.ordinal()] = new Lane(RenderPriority.EXPORT, exportWeight);
+        lanes[RenderPriority.BULK.ordinal()] = new Lane(RenderPriority.BULK, bulkWeight);
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+            poolSize, poolSize,
+            0L, TimeUnit.MILLISECONDS,
+            // Bounded by admission in submit(); ordered by virtual finish tag
+            new PriorityBlockingQueue<>(Math.max(1, queueCapacity)),
+            runnable -> {
+                Thread thread = new Thread(() -> {
+                    RENDER_THREAD.set(Boolean.TRUE);
+                    runnable.run();
+                }, "plantuml-render-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.prestartAllCoreThreads();
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plantuml-render-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        logger.info("Render scheduler started: {} threads, queue capacity {}, deadline {}ms, lane weights {}/{}/{}",
+                    poolSize, queueCapacity, timeoutMillis, interactiveWeight, exportWeight, bulkWeight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Queue a render task in the export lane
+     * @param task render work
+     * @return future completed with the task result, or exceptionally on failure or deadline
+     * @throws RenderRejectedException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) throws RenderRejectedException {
+        return submit(task, RenderOptions.EXPORT);
+    }
+
+    /**
+     * Queue a render task
+     * @param task render work
+     * @param options lane, client for superseding interactive renders, cancel token
+     * @return future completed with the task result, or exceptionally on failure, deadline or cancellation
+     * @throws RenderRejectedException if the lane's share of the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, RenderOptions options) throws RenderRejectedException {
+        return submit(task, options, 0);
+    }
+
+    /**
+     * Queue a render task that needs heap from the render memory budget
+     * The job is admitted now but queued only once its reservation is granted; it holds the
+     * reservation until the task finishes.
+     * @param task render work
+     * @param options lane, client for superseding interactive renders, cancel token
+     * @param memoryBytes estimated peak heap of the task, 0 for none
+     * @return future completed with the task result, or exceptionally on failure, deadline or cancellation;
+     *         fails with RenderRejectedException when memory stays short for wait-ms, or RenderTooLargeException
+     * @throws RenderRejectedException if the lane's share of the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, RenderOptions options, long memoryBytes)
+            throws RenderRejectedException {
+        RenderPriority priority = options.getPriority();
+        Lane lane = lanes[priority.ordinal()];
+        RenderJob<T> job = new RenderJob<>(task, lane);
+        if (options.getClientId() != null && priority == RenderPriority.INTERACTIVE) {
+            job.clientId = options.getClientId();
+        }
+        job.cancelToken = options.getCancelToken();
+
+        RenderJob<?> previous = null;
+        // Admission and enqueue under one lock, so concurrent submitters cannot overrun the queue bound
+        synchronized (fairness) {
+            int limit = priority == RenderPriority.INTERACTIVE
+                ? queueCapacity
+                : (int) Math.ceil(queueCapacity * (1.0 - interactiveReserve));
+            if (executor.getQueue().size() + awaitingMemory.get() >= Math.max(1, limit)) {
+                rejected.incrementAndGet();
+                throw new RenderRejectedException("Render queue is full, try again later", retryAfterSeconds);
+            }
+
+            // Registered before execute: a render that starts at once unregisters itself when done
+            if (job.clientId != null) {
+                previous = latestByClient.put(job.clientId, job);
+            }
+            if (job.cancelToken != null) {
+                byToken.put(job.cancelToken, job);
+            }
+            if (memoryBytes <= 0) {
+                try {
+                    enqueue(job);
+                } catch (RejectedExecutionException e) {
+                    job.unregister();
+                    rejected.incrementAndGet();
+                    throw new RenderRejectedException("Render scheduler is shut down", retryAfterSeconds);
+                }
+            } else {
+                awaitingMemory.incrementAndGet();
+                job.memory = memoryBudget.reserveAsync(memoryBytes);
+            }
+        }
+        if (job.memory != null) {
+            job.memory.whenComplete((reservation, failure) -> queueReserved(job, reservation, failure));
+        }
+
+        // Only once the newer render is admitted, so a rejected request never costs the client its previous one
+        if (previous != null && cancel(previous,
+                new RenderSupersededException("Render superseded by a newer request from the same client"))) {
+            superseded.incrementAndGet();
+        }
+        return job.result;
+    }
+
+    /**
+     * Stamp a job's fair-queuing tags and hand it to the pool; caller holds the fairness lock
+     * @throws RejectedExecutionException if the pool is shut down
+     */
+    private void enqueue(RenderJob<?> job) {
+        Lane lane = job.lane;
+        job.startTag = Math.max(virtualTime, lane.lastTag);
+        job.finishTag = job.startTag + 1.0 / lane.weight;
+        job.sequence = sequence++;
+        lane.queued.incrementAndGet();
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            lane.queued.decrementAndGet();
+            throw e;
+        }
+        lane.lastTag = job.finishTag;
+    }
+
+    /**
+     * Queue a job once its memory reservation is settled
+     * Runs on the thread that granted, expired or withdrew the reservation
+     */
+    private void queueReserved(RenderJob<?> job, RenderMemoryBudget.Reservation reservation, Throwable failure) {
+        awaitingMemory.decrementAndGet();
+        if (failure != null) {
+            // Cancellation already failed the job; expiry and oversize fail it here
+            job.result.completeExceptionally(unwrap(failure));
+            job.unregister();
+            return;
+        }
+        job.reservation = reservation;
+        synchronized (fairness) {
+            if (job.result.isDone()) {
+                job.release();
+                job.unregister();
+                return;
+            }
+            try {
+                enqueue(job);
+            } catch (RejectedExecutionException e) {
+                job.release();
+                job.unregister();
+                job.result.completeExceptionally(
+                    new RenderRejectedException("Render scheduler is shut down", retryAfterSeconds));
+            }
+        }
+    }
+
+    /**
+     * Time left before the render running on the calling thread hits its deadline
+     * @return remaining milliseconds (0 once passed), or -1 when not called from a render
+     */
+    public static long remainingMillis() {
+        Long deadline = RENDER_DEADLINE.get();
+        if (deadline == null) {
+            return -1;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /**
+     * Run a render task in the export lane and wait for it
+     * Runs inline when already called from a render thread
+     * @param task render work
+     * @return task result
+     * @throws IOException if the task fails, is rejected or exceeds its deadline
+     */
+    public <T> T execute(Callable<T> task) throws IOException {
+        return execute(task, RenderOptions.EXPORT);
+    }
+
+    /**
+     * Run a render task on the pool and wait for it
+     * Runs inline when already called from a render thread
+     * @param task render work
+     * @param options see {@link #submit(Callable, RenderOptions)}
+     * @return task result
+     * @throws IOException if the task fails, is rejected, cancelled or exceeds its deadline
+     */
+    public <T> T execute(Callable<T> task, RenderOptions options) throws IOException {
+        return execute(task, options, 0);
+    }
+
+    /**
+     * Run a render task that needs heap from the render memory budget and wait for it
+     * Runs inline when already called from a render thread, under the enclosing render's reservation
+     * @param task render work
+     * @param options see {@link #submit(Callable, RenderOptions, long)}
+     * @param memoryBytes estimated peak heap of the task, 0 for none
+     * @return task result
+     * @throws IOException if the task fails, is rejected, cancelled or exceeds its deadline
+     */
+    public <T> T execute(Callable<T> task, RenderOptions options, long memoryBytes) throws IOException {
+        if (RENDER_THREAD.get()) {
+            if (memoryBytes <= 0 || RENDER_RESERVED.get()) {
+                return call(task);
+            }
+            // Enclosing render was queued without an estimate
+            try (RenderMemoryBudget.Reservation reservation = memoryBudget.reserve(memoryBytes)) {
+                return call(task);
+            }
+        }
+
+        CompletableFuture<T> future = submit(task, options, memoryBytes);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for render", e);
+        } catch (CancellationException e) {
+            throw new IOException("Render cancelled", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Cancel a queued or running render by its cancel token
+     * @return true if a render was cancelled
+     */
+    public boolean cancel(String cancelToken) {
+        RenderJob<?> job = byToken.get(cancelToken);
+        return job != null && cancel(job, new RenderCancelledException("Render cancelled by client"));
+    }
+
+    private boolean cancel(RenderJob<?> job, RenderCancelledException reason) {
+        if (!job.cancel(reason)) {
+            return false;
+        }
+        if (job.memory != null) {
+            // Still waiting for memory: leave the budget's queue
+            job.memory.cancel(false);
+        }
+        if (executor.remove(job)) {
+            job.lane.queued.decrementAndGet();
+            job.release();
+            job.unregister();
+        }
+        cancelled.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Convert a task failure into the IOException callers expect
+     */
+    public static IOException unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause.getMessage(), cause);
+    }
+
+    private static <T> T call(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Per-priority queue lane
+     */
+    private static class Lane {
+        private final RenderPriority priority;
+        private final int weight;
+        private double lastTag;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+
+        Lane(RenderPriority priority, int weight) {
+            this.priority = priority;
+            this.weight = Math.max(1, weight);
+        }
+    }
+
+    /**
+     * Queued task with its result future and deadline handling
+     */
+    private class RenderJob<T> implements Runnable, Comparable<RenderJob<?>> {
+
+        private final Callable<T> task;
+        private final Lane lane;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+        private double startTag;
+        private double finishTag;
+        private long sequence;
+        private String clientId;
+        private String cancelToken;
+        private Thread worker;
+        private volatile CompletableFuture<RenderMemoryBudget.Reservation> memory;
+        private RenderMemoryBudget.Reservation reservation;
+
+        RenderJob(Callable<T> task, Lane lane) {
+            this.task = task;
+            this.lane = lane;
+        }
+
+        @Override
+        public int compareTo(RenderJob<?> other) {
+            int byTag = Double.compare(finishTag, other.finishTag);
+            return byTag != 0 ? byTag : Long.compare(sequence, other.sequence);
+        }
+
+        /**
+         * Fail the job; a running job's thread is interrupted and its dot process killed
+         * Holding the job lock keeps the worker on this job while its layout is killed
+         * @return false if the job already finished
+         */
+        synchronized boolean cancel(RenderCancelledException reason) {
+            if (!result.completeExceptionally(reason)) {
+                return false;
+            }
+            if (worker != null) {
+                logger.debug("Cancelling render on {}: {}", worker.getName(), reason.getMessage());
+                worker.interrupt();
+                layoutEngine.killLayout(worker);
+            }
+            return true;
+        }
+
+        void release() {
+            if (reservation != null) {
+                reservation.close();
+            }
+        }
+
+        void unregister() {
+            if (clientId != null) {
+                latestByClient.remove(clientId, this);
+            }
+            if (cancelToken != null) {
+                byToken.remove(cancelToken, this);
+            }
+        }
+
+        @Override
+        public void run() {
+            lane.queued.decrementAndGet();
+            try {
+                runTask();
+            } finally {
+                release();
+                unregister();
+            }
+        }
+
+        private void runTask() {
+            synchronized (this) {
+                // Abandoned or cancelled while queued
+                if (result.isDone()) {
+                    return;
+                }
+                worker = Thread.currentThread();
+            }
+            synchronized (fairness) {
+                virtualTime = Math.max(virtualTime, startTag);
+            }
+
+            long waitNanos = System.nanoTime() - enqueuedAt;
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            lane.started.incrementAndGet();
+            lane.waitNanos.addAndGet(waitNanos);
+
+            ScheduledFuture<?> deadline = watchdog.schedule(this::abort, timeoutMillis, TimeUnit.MILLISECONDS);
+            RENDER_DEADLINE.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+            RENDER_RESERVED.set(reservation != null);
+            activeRenders.incrementAndGet();
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                deadline.cancel(false);
+                RENDER_DEADLINE.remove();
+                RENDER_RESERVED.remove();
+                activeRenders.decrementAndGet();
+                completed.incrementAndGet();
+                synchronized (this) {
+                    worker = null;
+                    // Clear an interrupt aimed at this job before the thread takes the next one
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        private synchronized void abort() {
+            if (worker != null && result.completeExceptionally(
+                    new RenderTimeoutException("Render exceeded deadline of " + timeoutMillis + "ms"))) {
+                timedOut.incrementAndGet();
+                logger.warn("Aborting render on {} after {}ms", worker.getName(), timeoutMillis);
+                worker.interrupt();
+                layoutEngine.killLayout(worker);
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveRenders() {
+        return activeRenders.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public long getSupersededCount() {
+        return superseded.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    public SchedulerStats getStats() {
+        long done = completed.get();
+        List<LaneStats> laneStats = new ArrayList<>();
+        for (Lane lane : lanes) {
+            long started = lane.started.get();
+            laneStats.add(new LaneStats(
+                lane.priority.label(),
+                lane.weight,
+                lane.queued.get(),
+                started,
+                started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(lane.waitNanos.get() / started)
+            ));
+        }
+        return new SchedulerStats(
+            executor.getCorePoolSize(),
+            activeRenders.get(),
+            executor.getQueue().size(),
+            queueCapacity,
+            done,
+            rejected.get(),
+            timedOut.get(),
+            done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / done),
+            TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+            superseded.get(),
+            cancelled.get(),
+            laneStats
+        );
+    }
+
+    /**
+     * Scheduler statistics snapshot
+     */
+    public static class SchedulerStats {
+        private final int threads;
+        private final int active;
+        private final int queued;
+        private final int queueCapacity;
+        private final long completed;
+        private final long rejected;
+        private final long timedOut;
+        private final long avgWaitMillis;
+        private final long maxWaitMillis;
+        private final long superseded;
+        private final long cancelled;
+        private final List<LaneStats> lanes;
+
+        public SchedulerStats(int threads, int active, int queued, int queueCapacity, long completed,
+                              long rejected, long timedOut, long avgWaitMillis, long maxWaitMillis,
+                              long superseded, long cancelled, List<LaneStats> lanes) {
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.queueCapacity = queueCapacity;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.avgWaitMillis = avgWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.superseded = superseded;
+            this.cancelled = cancelled;
+            this.lanes = lanes;
+        }
+
+        public int getThreads() { return threads; }
+        public int getActive() { return active; }
+        public int getQueued() { return queued; }
+        public int getQueueCapacity() { return queueCapacity; }
+        public long getCompleted() { return completed; }
+        public long getRejected() { return rejected; }
+        public long getTimedOut() { return timedOut; }
+        public long getAvgWaitMillis() { return avgWaitMillis; }
+        public long getMaxWaitMillis() { return maxWaitMillis; }
+        public long getSuperseded() { return superseded; }
+        public long getCancelled() { return cancelled; }
+        public List<LaneStats> getLanes() { return lanes; }
+
+        @Override
+        public String toString() {
+            return "RenderScheduler[threads=" + threads + ", active=" + active
+                + ", queued=" + queued + "/" + queueCapacity + ", completed=" + completed + "]";
+        }
+    }
+
+    /**
+     * Per-lane scheduling snapshot
+     */
+    public static class LaneStats {
+        private final String name;
+        private final int weight;
+        private final int queued;
+        private final long started;
+        private final long avgWaitMillis;
+
+        public LaneStats(String name, int weight, int queued, long started, long avgWaitMillis) {
+            this.name = name;
+            this.weight = weight;
+            this.queued = queued;
+            this.started = started;
+            this.avgWaitMillis = avgWaitMillis;
+        }
+
+        public String getName() { return name; }
+        public int getWeight() { return weight; }
+        public int getQueued() { return queued; }
+        public long getStarted() { return started; }
+        public long getAvgWaitMillis() { return avgWaitMillis; }
+    }
+}
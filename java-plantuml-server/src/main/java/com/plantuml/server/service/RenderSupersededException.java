@@ -0,0 +1,11 @@
+package com.plantuml.server.service;
+
+/**
+ * Thrown when an interactive render is replaced by a newer one from the same client
+ */
+public class RenderSupersededException extends RenderCancelledException {
+
+    public RenderSupersededException(String message) {
+        super(message);
+    }
+}
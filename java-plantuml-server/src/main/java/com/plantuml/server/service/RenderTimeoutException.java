@@ -0,0 +1,13 @@
+package com.plantuml.server.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a render exceeds its deadline and is aborted
+ */
+public class RenderTimeoutException extends IOException {
+
+    public RenderTimeoutException(String message) {
+        super(message);
+    }
+}
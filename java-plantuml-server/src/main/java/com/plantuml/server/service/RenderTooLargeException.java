@@ -0,0 +1,14 @@
+package com.plantuml.server.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a diagram's estimated render memory exceeds the per-render limit
+ * Not retryable: the same diagram is refused again
+ */
+public class RenderTooLargeException extends IOException {
+
+    public RenderTooLargeException(String message) {
+        super(message);
+    }
+}
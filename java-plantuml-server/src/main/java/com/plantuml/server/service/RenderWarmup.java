@@ -0,0 +1,186 @@
+package com.plantuml.server.service;
+
+import net.sourceforge.plantuml.FileFormat;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Startup warm-up
+ * Renders a corpus covering every common diagram type in SVG and PNG on several threads before
+ * the application reports ready, so classes, fonts, Graphviz and the JIT are warm for the first user.
+ * Runs as an ApplicationRunner: Spring Boot only switches readiness to ACCEPTING_TRAFFIC after it returns.
+ *
+ * With plantuml.warmup.exit-after=true the JVM exits once warm-up finishes, which turns a run into
+ * an AppCDS training run (-XX:ArchiveClassesAtExit=plantuml.jsa).
+ */
+@Component
+public class RenderWarmup implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderWarmup.class);
+
+    // One representative diagram per type
+    static final List<String> CORPUS = List.of(
+        "@startuml\nactor User\nparticipant Web\ndatabase DB\nUser -> Web: request\nactivate Web\nWeb -> DB: query\nDB --> Web: rows\nWeb --> User: response\ndeactivate Web\n@enduml",
+        "@startuml\npackage model {\nclass Order {\n-id: long\n+total(): double\n}\nclass Line\ninterface Priced\n}\nOrder *-- Line\nPriced <|.. Line\n@enduml",
+        "@startuml\nactor Customer\nrectangle Shop {\nusecase Browse\nusecase Checkout\n}\nCustomer --> Browse\nCustomer --> Checkout\n@enduml",
+        "@startuml\nstart\n:Read input;\nif (valid?) then (yes)\n:Process;\nelse (no)\n:Reject;\nendif\nstop\n@enduml",
+        "@startuml\n[*] --> Idle\nIdle --> Busy : start\nBusy --> Idle : done\nBusy --> [*] : fail\n@enduml",
+        "@startuml\ncomponent API\ncomponent Worker\ndatabase Store\nAPI --> Worker\nWorker --> Store\n@enduml",
+        "@startuml\nnode Server {\nartifact app.jar\n}\ncloud CDN\nCDN --> Server\n@enduml",
+        "@startuml\nobject user {\nname = \"Alice\"\n}\nobject account\nuser --> account\n@enduml",
+        "@startuml\nrobust \"Web\" as WB\nconcise \"Client\" as C\n@0\nWB is Idle\nC is Waiting\n@100\nWB is Processing\n@300\nWB is Idle\nC is Done\n@enduml",
+        "@startmindmap\n* Root\n** Branch A\n*** Leaf\n** Branch B\n@endmindmap",
+        "@startgantt\n[Design] lasts 5 days\n[Build] lasts 10 days\n[Build] starts at [Design]'s end\n@endgantt"
+    );
+
+    @Autowired
+    private PlantUMLService plantUMLService;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${plantuml.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${plantuml.warmup.iterations:3}")
+    private int iterations;
+
+    @Value("${plantuml.warmup.threads:0}")
+    private int threads;
+
+    @Value("${plantuml.warmup.exit-after:false}")
+    private boolean exitAfter;
+
+    private volatile String status = "pending";
+    private volatile long firstRenderMillis = -1;
+    private volatile long lastIterationAvgMillis = -1;
+    private volatile long durationMillis = -1;
+    private volatile long startupToReadyMillis = -1;
+    private final AtomicInteger rendered = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!enabled) {
+            status = "disabled";
+            startupToReadyMillis = sinceJvmStart();
+            return;
+        }
+
+        status = "running";
+        long startTime = System.currentTimeMillis();
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        logger.info("Warming up: {} diagrams x 2 formats x {} iterations on {} threads",
+                    CORPUS.size(), iterations, poolSize);
+
+        // Cold first render, measured alone
+        long firstStart = System.currentTimeMillis();
+        renderQuietly(CORPUS.get(0), FileFormat.SVG);
+        firstRenderMillis = System.currentTimeMillis() - firstStart;
+
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "plantuml-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                long iterationStart = System.currentTimeMillis();
+                List<Future<?>> tasks = new ArrayList<>();
+                for (String source : CORPUS) {
+                    tasks.add(pool.submit(() -> renderQuietly(source, FileFormat.SVG)));
+                    tasks.add(pool.submit(() -> renderQuietly(source, FileFormat.PNG)));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+                lastIterationAvgMillis = (System.currentTimeMillis() - iterationStart) * poolSize / tasks.size();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        durationMillis = System.currentTimeMillis() - startTime;
+        startupToReadyMillis = sinceJvmStart();
+        status = "done";
+        logger.info("Warm-up finished in {}ms: {} renders, {} failed, first render {}ms, warm render ~{}ms, startup to ready {}ms",
+                    durationMillis, rendered.get(), failed.get(), firstRenderMillis, lastIterationAvgMillis,
+                    startupToReadyMillis);
+
+        if (exitAfter) {
+            logger.info("plantuml.warmup.exit-after is set, exiting after warm-up");
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+    }
+
+    private void renderQuietly(String source, FileFormat format) {
+        try {
+            plantUMLService.renderUncached(source, format);
+            rendered.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logger.debug("Warm-up render failed: {}", e.getMessage());
+        }
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+    public boolean isComplete() {
+        return "done".equals(status) || "disabled".equals(status);
+    }
+
+    public WarmupStats getStats() {
+        return new WarmupStats(status, rendered.get(), failed.get(), firstRenderMillis,
+                               lastIterationAvgMillis, durationMillis, startupToReadyMillis);
+    }
+
+    /**
+     * Warm-up statistics snapshot
+     */
+    public static class WarmupStats {
+        private final String status;
+        private final int rendered;
+        private final int failed;
+        private final long firstRenderMillis;
+        private final long warmRenderMillis;
+        private final long durationMillis;
+        private final long startupToReadyMillis;
+
+        public WarmupStats(String status, int rendered, int failed, long firstRenderMillis,
+                           long warmRenderMillis, long durationMillis, long startupToReadyMillis) {
+            this.status = status;
+            this.rendered = rendered;
+            this.failed = failed;
+            this.firstRenderMillis = firstRenderMillis;
+            this.warmRenderMillis = warmRenderMillis;
+            this.durationMillis = durationMillis;
+            this.startupToReadyMillis = startupToReadyMillis;
+        }
+
+        public String getStatus() { return status; }
+        public int getRendered() { return rendered; }
+        public int getFailed() { return failed; }
+        public long getFirstRenderMillis() { return firstRenderMillis; }
+        public long getWarmRenderMillis() { return warmRenderMillis; }
+        public long getDurationMillis() { return durationMillis; }
+        public long getStartupToReadyMillis() { return startupToReadyMillis; }
+    }
+}
@@ -0,0 +1,122 @@
+package com.plantuml.server.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Lossless-looking SVG size reduction for PlantUML output
+ * Strips comments and line breaks between tags, rounds geometry to a fixed number of decimals and
+ * moves inline styles that repeat into one CSS rule each. Class names carry a per-document prefix
+ * so several minified diagrams inlined into one page never share rules.
+ * Processing instructions (PlantUML embeds its source in one) are kept.
+ */
+public final class SvgMinifier {
+
+    private static final Pattern COMMENT = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+    private static final Pattern LINE_BREAK_BETWEEN_TAGS = Pattern.compile(">\\s*[\\r\\n]\\s*<");
+    private static final Pattern TAG = Pattern.compile("<[a-zA-Z][^>]*>");
+    private static final Pattern ROOT = Pattern.compile("<svg\\b[^>]*[^/]>");
+    private static final Pattern GEOMETRY = Pattern.compile(
+        "(\\s(?:x|y|x1|x2|y1|y2|cx|cy|r|rx|ry|width|height|points|d|textLength|font-size|stroke-width|transform|viewBox)=\")([^\"]*)\"");
+    private static final Pattern DECIMAL = Pattern.compile("-?\\d+\\.\\d+");
+    private static final Pattern STYLE = Pattern.compile(" style=\"([^\"]+)\"");
+
+    // Shorter styles cost less inline than as class="..." plus a rule
+    private static final int MIN_SHARED_STYLE_LENGTH = 16;
+
+    private SvgMinifier() {
+    }
+
+    /**
+     * Minify a PlantUML SVG document
+     * @param svg SVG markup
+     * @param precision decimals kept in coordinates and sizes
+     * @return minified SVG
+     */
+    public static String minify(String svg, int precision) {
+        String stripped = LINE_BREAK_BETWEEN_TAGS.matcher(COMMENT.matcher(svg).replaceAll("")).replaceAll("><");
+
+        // Styles used more than once by tags without their own class attribute
+        Map<String, Integer> styleUses = new LinkedHashMap<>();
+        Matcher tags = TAG.matcher(stripped);
+        while (tags.find()) {
+            String tag = tags.group();
+            Matcher style = STYLE.matcher(tag);
+            if (!tag.contains(" class=\"") && style.find() && style.group(1).length() >= MIN_SHARED_STYLE_LENGTH) {
+                styleUses.merge(style.group(1), 1, Integer::sum);
+            }
+        }
+        String prefix = classPrefix(svg);
+        Map<String, String> classes = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> use : styleUses.entrySet()) {
+            if (use.getValue() > 1) {
+                classes.put(use.getKey(), prefix + Integer.toString(classes.size(), 36));
+            }
+        }
+
+        StringBuilder result = new StringBuilder(stripped.length());
+        tags = TAG.matcher(stripped);
+        while (tags.find()) {
+            String tag = round(tags.group(), precision);
+            if (!classes.isEmpty() && !tag.contains(" class=\"")) {
+                Matcher style = STYLE.matcher(tag);
+                if (style.find() && classes.containsKey(style.group(1))) {
+                    tag = tag.substring(0, style.start()) + " class=\"" + classes.get(style.group(1)) + "\""
+                        + tag.substring(style.end());
+                }
+            }
+            tags.appendReplacement(result, Matcher.quoteReplacement(tag));
+        }
+        tags.appendTail(result);
+
+        if (!classes.isEmpty()) {
+            Matcher root = ROOT.matcher(result);
+            if (root.find()) {
+                StringBuilder rules = new StringBuilder("<style>");
+                for (Map.Entry<String, String> rule : classes.entrySet()) {
+                    rules.append('.').append(rule.getValue()).append('{').append(rule.getKey()).append('}');
+                }
+                result.insert(root.end(), rules.append("</style>"));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Round every decimal inside geometry attributes of one tag
+     */
+    private static String round(String tag, int precision) {
+        Matcher attribute = GEOMETRY.matcher(tag);
+        if (!attribute.find()) {
+            return tag;
+        }
+        StringBuilder result = new StringBuilder(tag.length());
+        do {
+            Matcher number = DECIMAL.matcher(attribute.group(2));
+            StringBuilder value = new StringBuilder();
+            while (number.find()) {
+                number.appendReplacement(value, roundNumber(number.group(), precision));
+            }
+            number.appendTail(value);
+            attribute.appendReplacement(result, Matcher.quoteReplacement(attribute.group(1) + value + "\""));
+        } while (attribute.find());
+        attribute.appendTail(result);
+        return result.toString();
+    }
+
+    private static String roundNumber(String number, int precision) {
+        return new BigDecimal(number).setScale(precision, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    private static String classPrefix(String svg) {
+        CRC32 crc = new CRC32();
+        crc.update(svg.getBytes(StandardCharsets.UTF_8));
+        return "p" + Long.toString(crc.getValue(), 36) + "-";
+    }
+}
@@ -0,0 +1,45 @@
+package com.plantuml.server.service;
+
+import java.util.List;
+
+/**
+ * Parse-only validation outcome with per-line diagnostics
+ */
+public class ValidationResult {
+
+    private final List<String> diagramTypes;
+    private final List<Diagnostic> diagnostics;
+    private final long durationMillis;
+
+    public ValidationResult(List<String> diagramTypes, List<Diagnostic> diagnostics, long durationMillis) {
+        this.diagramTypes = diagramTypes;
+        this.diagnostics = diagnostics;
+        this.durationMillis = durationMillis;
+    }
+
+    public boolean isValid() { return diagnostics.isEmpty(); }
+    public List<String> getDiagramTypes() { return diagramTypes; }
+    public List<Diagnostic> getDiagnostics() { return diagnostics; }
+    public long getDurationMillis() { return durationMillis; }
+
+    /**
+     * Single syntax problem
+     */
+    public static class Diagnostic {
+        private final int block;
+        private final Integer line;
+        private final String message;
+
+        public Diagnostic(int block, Integer line, String message) {
+            this.block = block;
+            this.line = line;
+            this.message = message;
+        }
+
+        // Index of the @start...@end block the problem is in
+        public int getBlock() { return block; }
+        // 1-based source line, null when PlantUML reports no location
+        public Integer getLine() { return line; }
+        public String getMessage() { return message; }
+    }
+}
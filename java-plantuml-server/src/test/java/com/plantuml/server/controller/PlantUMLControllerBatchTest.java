@@ -0,0 +1,58 @@
+package com.plantuml.server.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batch rendering over a real HTTP connection, so a closed response stream shows up as missing lines
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = {"plantuml.warmup.enabled=false", "plantuml.cache.disk.enabled=false"})
+class PlantUMLControllerBatchTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void batchStreamsOneLinePerItemAndSummary() throws Exception {
+        List<Map<String, String>> items = new ArrayList<>();
+        items.add(Map.of("id", "a", "plantumlText", "@startuml\nAlice -> Bob: hello\n@enduml"));
+        items.add(Map.of("id", "b", "plantumlText", "@startuml\nclass Order\n@enduml"));
+        items.add(Map.of("id", "c", "plantumlText", "@startuml\n[*] --> Idle\n@enduml"));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate.postForEntity(
+            "/api/plantuml/batch", new HttpEntity<>(Map.of("items", items), headers), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String[] lines = response.getBody().trim().split("\n");
+        assertEquals(items.size() + 1, lines.length);
+        for (int i = 0; i < items.size(); i++) {
+            assertTrue(objectMapper.readTree(lines[i]).has("index"));
+        }
+        JsonNode summary = objectMapper.readTree(lines[items.size()]);
+        assertTrue(summary.path("done").asBoolean());
+        assertEquals(items.size(), summary.path("items").asInt());
+        assertEquals(0, summary.path("failed").asInt());
+    }
+}